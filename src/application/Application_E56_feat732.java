@@ -75,8 +75,8 @@ public class Application_E56_feat732 {
 		System.out.println( "***                          --------\n" +
 				"value of accepted orders:" + orderValueStr.toString() );
 
-		// sortedBy 1: byPrice; 2: byValue; 3: byUnits; 4: byDescription; 5: bySKU; else: unsorted
-//		inventory = im.printInventory( 2, true );
+		// sortedBy BY_PRICE, BY_VALUE, BY_UNITS, BY_DESCRIPTION, BY_SKU; null: unsorted
+//		inventory = im.printInventory( InventoryManager.SortedBy.BY_VALUE, true, 10 );
 		inventory = im.printInventory();
 		System.out.println( "\ninventory after orders:\n" + inventory.toString() );
 
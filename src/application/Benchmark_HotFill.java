@@ -0,0 +1,101 @@
+package application;
+
+import static system.RTE.Configuration.JSON_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE_ARTICLE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.InventoryManager;
+import system.RTE;
+import system.RTE.Runtime;
+
+
+/**
+ * Benchmark of fill throughput on a single hot article (flash sale) with
+ * 1, 2, 4, ... threads filling one-article orders. The inventory promotes the
+ * article to striped sub-counters once its lock stripe is contended, fill
+ * throughput is then expected to scale with the number of cores.
+ *
+ * Usage: {@code Benchmark_HotFill [seconds-per-run] [max-threads]}
+ *
+ * @since "0.1.2"
+ * @author fkate
+ *
+ */
+
+public class Benchmark_HotFill {
+
+
+	/**
+	 * main() function.
+	 *
+	 * @param args optional duration of each run in seconds and maximum number of threads
+	 * @throws InterruptedException if interrupted while waiting for threads
+	 */
+	public static void main( String[] args ) throws InterruptedException {
+		//
+		int seconds = args.length > 0? Integer.parseInt( args[0] ) : 2;
+		int maxThreads = args.length > 1? Integer.parseInt( args[1] ) :
+			java.lang.Runtime.getRuntime().availableProcessors();
+
+		Runtime runtime = RTE.getInstance()
+			.create( config -> {
+				config.put( KEY_DATASOURCE, JSON_DATASOURCE );
+				config.put( KEY_DATASOURCE_ARTICLE, "src/data/articles_871.json" );
+			})
+			.launch( (config, rt) -> {
+				rt.loadData();
+			});
+		//
+		InventoryManager im = runtime.getInventoryManager();
+		Article hot = im.findAll().iterator().next();
+		Customer customer = new Customer( "Flash Sale" ).setId( 1 );
+		//
+		System.out.println( "threads |   fills/s (total) | fills/s (per thread)" );
+		for( int threads = 1; threads <= maxThreads; threads *= 2 ) {
+			run( im, hot, customer, threads, seconds );
+		}
+		runtime.shutdown( null );
+	}
+
+
+	private static void run( InventoryManager im, Article hot, Customer customer,
+			int threads, int seconds ) throws InterruptedException
+	{
+		im.update( hot.getId(), Integer.MAX_VALUE / 2 );
+		AtomicBoolean running = new AtomicBoolean( true );
+		AtomicLong fills = new AtomicLong();
+		CountDownLatch done = new CountDownLatch( threads );
+		//
+		List<Thread> workers = new ArrayList<Thread>();
+		for( int t = 0; t < threads; t++ ) {
+			workers.add( new Thread( () -> {
+				Order order = new Order( customer ).addItem( hot, 1 );
+				long f = 0;
+				while( running.get() ) {
+					if( im.fill( order ) ) {
+						f++;
+					}
+				}
+				fills.addAndGet( f );
+				done.countDown();
+			}));
+		}
+		workers.forEach( Thread::start );
+		Thread.sleep( seconds * 1000L );
+		running.set( false );
+		done.await();
+		//
+		System.out.println( String.format( "%7d | %17d | %20d", threads,
+				fills.get() / seconds, fills.get() / seconds / threads ) );
+	}
+
+}
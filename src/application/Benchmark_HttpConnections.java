@@ -0,0 +1,157 @@
+package application;
+
+import static system.RTE.Configuration.JSON_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE_ARTICLE;
+import static system.RTE.Configuration.KEY_DATASOURCE_CUSTOMER;
+import static system.RTE.Configuration.KEY_HTTP_PORT;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import datamodel.Article;
+import datamodel.Customer;
+import system.RTE;
+import system.RTE.Runtime;
+
+
+/**
+ * Load test of the embedded HTTP endpoint on localhost: opens many keep-alive
+ * connections, holds them open and posts one order per connection and round
+ * (all requests are written before responses are read). Reports the number of
+ * live threads while connections are held and order throughput.
+ *
+ * Usage: {@code Benchmark_HttpConnections [connections] [rounds] [port]}
+ *
+ * Sets the JDK server properties for many keep-alive connections before the
+ * server is created (they are read once, when its classes are loaded), unless
+ * they are given as JVM flags.
+ *
+ * @since "0.1.2"
+ * @author fkate
+ *
+ */
+
+public class Benchmark_HttpConnections {
+
+
+	/**
+	 * main() function.
+	 *
+	 * @param args optional number of connections, rounds and port
+	 * @throws IOException if connections fail
+	 */
+	public static void main( String[] args ) throws IOException {
+		//
+		int connections = args.length > 0? Integer.parseInt( args[0] ) : 2000;
+		int rounds = args.length > 1? Integer.parseInt( args[1] ) : 5;
+		int port = args.length > 2? Integer.parseInt( args[2] ) : 8080;
+		setDefault( "sun.net.httpserver.nodelay", "true" );
+		setDefault( "sun.net.httpserver.maxIdleConnections", Integer.toString( connections + 1024 ) );
+
+		Runtime runtime = RTE.getInstance()
+			.create( config -> {
+				config.put( KEY_DATASOURCE, JSON_DATASOURCE );
+				config.put( KEY_DATASOURCE_CUSTOMER, "src/data/customers_10.json" );
+				config.put( KEY_DATASOURCE_ARTICLE, "src/data/articles_871.json" );
+				config.put( KEY_HTTP_PORT, Integer.toString( port ) );
+			})
+			.launch( (config, rt) -> {
+				rt.loadData();
+			});
+		//
+		Customer customer = runtime.getCustomerRepository().findAll().iterator().next();
+		List<Article> articles = new ArrayList<Article>();
+		runtime.getInventoryManager().findAll().forEach( a -> {
+			articles.add( a );
+			runtime.getInventoryManager().update( a.getId(), 1_000_000 );
+		});
+		int threadsBefore = Thread.getAllStackTraces().size();
+		//
+		List<Socket> sockets = new ArrayList<Socket>( connections );
+		for( int c = 0; c < connections; c++ ) {
+			Socket socket = new Socket( "localhost", port );
+			socket.setTcpNoDelay( true );
+			sockets.add( socket );
+		}
+		System.out.println( "connections held: " + connections + ", live threads: " + threadsBefore +
+				" before, " + Thread.getAllStackTraces().size() + " with open connections" );
+		//
+		long start = System.nanoTime();
+		int peakThreads = 0;
+		long filled = 0;
+		for( int r = 0; r < rounds; r++ ) {
+			for( int c = 0; c < connections; c++ ) {
+				Article article = articles.get( ( r * connections + c ) % articles.size() );
+				String body = "{\"id\": \"L" + r + "-" + c + "\", \"customer\": " + customer.getId() +
+					", \"items\": [{\"article\": \"" + article.getId() + "\", \"units\": 1}]}";
+				post( sockets.get( c ), body );
+			}
+			peakThreads = Math.max( peakThreads, Thread.getAllStackTraces().size() );
+			for( Socket socket : sockets ) {
+				if( readStatus( socket ) == 201 ) {
+					filled++;
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		//
+		System.out.println( String.format( "orders: %d, filled: %d, %.0f orders/s, peak live threads: %d",
+				(long)rounds * connections, filled, rounds * connections * 1e9 / elapsed, peakThreads ) );
+		for( Socket socket : sockets ) {
+			socket.close();
+		}
+		runtime.shutdown( null );
+	}
+
+
+	private static void setDefault( String property, String value ) {
+		if( System.getProperty( property ) == null ) {
+			System.setProperty( property, value );
+		}
+	}
+
+
+	private static void post( Socket socket, String body ) throws IOException {
+		byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+		OutputStream out = socket.getOutputStream();
+		out.write( ( "POST /orders HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n" +
+				"Content-Length: " + bytes.length + "\r\n\r\n" + body ).getBytes( StandardCharsets.UTF_8 ) );	// one segment
+		out.flush();
+	}
+
+
+	/*
+	 * Read one response (status line, headers, body of Content-Length), return status.
+	 */
+	private static int readStatus( Socket socket ) throws IOException {
+		InputStream in = new BufferedInputStream( socket.getInputStream(), 1 );	// no read-ahead into the next response
+		String status = readLine( in );
+		int length = 0;
+		for( String header = readLine( in ); header.length() > 0; header = readLine( in ) ) {
+			if( header.toLowerCase().startsWith( "content-length:" ) ) {
+				length = Integer.parseInt( header.substring( 15 ).trim() );
+			}
+		}
+		in.readNBytes( length );
+		return Integer.parseInt( status.split( " " )[1] );
+	}
+
+
+	private static String readLine( InputStream in ) throws IOException {
+		StringBuilder line = new StringBuilder();
+		for( int b = in.read(); b >= 0 && b != '\n'; b = in.read() ) {
+			if( b != '\r' ) {
+				line.append( (char) b );
+			}
+		}
+		return line.toString();
+	}
+
+}
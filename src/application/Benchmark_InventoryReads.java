@@ -0,0 +1,128 @@
+package application;
+
+import static system.RTE.Configuration.JSON_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE_ARTICLE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.InventoryManager;
+import system.RTE;
+import system.RTE.Runtime;
+
+
+/**
+ * Benchmark of inventory read throughput (getUnitsInStock(), isFillable())
+ * with 1, 2, 4, ... reader threads while one writer thread keeps filling
+ * orders and updating stock. Read throughput is expected to scale with the
+ * number of cores since readers do not write shared lock state.
+ *
+ * Usage: {@code Benchmark_InventoryReads [seconds-per-run] [max-readers]}
+ *
+ * @since "0.1.2"
+ * @author fkate
+ *
+ */
+
+public class Benchmark_InventoryReads {
+
+
+	/**
+	 * main() function.
+	 *
+	 * @param args optional duration of each run in seconds and maximum number of reader threads
+	 * @throws InterruptedException if interrupted while waiting for threads
+	 */
+	public static void main( String[] args ) throws InterruptedException {
+		//
+		int seconds = args.length > 0? Integer.parseInt( args[0] ) : 2;
+		int maxReaders = args.length > 1? Integer.parseInt( args[1] ) :
+			java.lang.Runtime.getRuntime().availableProcessors();
+
+		Runtime runtime = RTE.getInstance()
+			.create( config -> {
+				config.put( KEY_DATASOURCE, JSON_DATASOURCE );
+				config.put( KEY_DATASOURCE_ARTICLE, "src/data/articles_871.json" );
+			})
+			.launch( (config, rt) -> {
+				rt.loadData();
+			});
+		//
+		InventoryManager im = runtime.getInventoryManager();
+		List<Article> articles = new ArrayList<Article>();
+		im.findAll().forEach( a -> {
+			articles.add( a );
+			im.update( a.getId(), 1_000_000 );
+		});
+		Customer customer = new Customer( "Bench Mark" ).setId( 1 );
+		//
+		System.out.println( "readers |  reads/s (total) | reads/s (per reader) | writes/s" );
+		for( int readers = 1; readers <= maxReaders; readers *= 2 ) {
+			run( im, articles, customer, readers, seconds );
+		}
+		runtime.shutdown( null );
+	}
+
+
+	private static void run( InventoryManager im, List<Article> articles, Customer customer,
+			int readers, int seconds ) throws InterruptedException
+	{
+		AtomicBoolean running = new AtomicBoolean( true );
+		AtomicLong reads = new AtomicLong();
+		AtomicLong writes = new AtomicLong();
+		CountDownLatch done = new CountDownLatch( readers + 1 );
+		int n = articles.size();
+		//
+		Thread writer = new Thread( () -> {
+			long w = 0;
+			for( int i = 0; running.get(); i++ ) {
+				Article a = articles.get( i % n );
+				Order order = new Order( customer ).addItem( a, 1 ).addItem( articles.get( ( i * 7 ) % n ), 1 );
+				if( ! im.fill( order ) ) {
+					im.update( a.getId(), 1_000_000 );
+				}
+				w++;
+			}
+			writes.addAndGet( w );
+			done.countDown();
+		});
+		//
+		List<Thread> threads = new ArrayList<Thread>();
+		for( int t = 0; t < readers; t++ ) {
+			final int seed = t;
+			threads.add( new Thread( () -> {
+				// orders are prepared up front so the benchmark measures reads only
+				Order[] orders = new Order[64];
+				for( int i = 0; i < orders.length; i++ ) {
+					orders[i] = new Order( customer )
+						.addItem( articles.get( ( seed * 31 + i ) % n ), 1 )
+						.addItem( articles.get( ( seed * 17 + i * 3 ) % n ), 2 );
+				}
+				long r = 0;
+				for( int i = 0; running.get(); i++ ) {
+					im.getUnitsInStock( articles.get( ( seed + i ) % n ).getId() );
+					im.isFillable( orders[i & 63] );
+					r += 2;
+				}
+				reads.addAndGet( r );
+				done.countDown();
+			}));
+		}
+		writer.start();
+		threads.forEach( Thread::start );
+		Thread.sleep( seconds * 1000L );
+		running.set( false );
+		done.await();
+		//
+		System.out.println( String.format( "%7d | %16d | %20d | %8d", readers,
+				reads.get() / seconds, reads.get() / seconds / readers, writes.get() / seconds ) );
+	}
+
+}
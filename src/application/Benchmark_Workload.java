@@ -0,0 +1,248 @@
+package application;
+
+import static system.RTE.Configuration.JSON_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE;
+import static system.RTE.Configuration.KEY_DATASOURCE_ARTICLE;
+import static system.RTE.Configuration.KEY_DATASOURCE_CUSTOMER;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.InventoryManager;
+import system.OrderBuilder;
+import system.RTE;
+import system.RTE.Runtime;
+
+
+/**
+ * Load test that replays an order stream against a runtime and reports
+ * sustained throughput and latency percentiles (p50, p99, p99.9, max) of
+ * OrderBuilder.accept(), OrderBuilder.submit() (until the future completes)
+ * or InventoryManager.fill().
+ * <p>
+ * The stream is generated from a seed (see {@link Workload}) or replayed from
+ * a file recorded before. Open loop: orders are started at their arrival
+ * offsets by a pool of threads, latency is measured from the intended start,
+ * so time an order waited behind slow ones is counted (no coordinated
+ * omission), service time is measured from the actual start. Closed loop:
+ * threads send orders back to back, the raw latencies are reported together
+ * with latencies corrected for coordinated omission (expected interval: mean
+ * latency).
+ * <p>
+ * Usage: {@code Benchmark_Workload [key=value ...]} with keys (defaults):
+ * <pre>
+ *  op=accept|submit|fill (accept)   mode=open|closed (open)    threads=4
+ *  orders=100000   warmup=10000     rate=10000 (orders/s)      arrivals=fixed|poisson (fixed)
+ *  seed=1          customers.skew=1.0   articles.skew=1.0      items.max=4   units.max=3
+ *  replay=file     (read stream from file instead of generating)
+ *  record=file     (write generated stream to file)
+ * </pre>
+ *
+ * @since "0.1.2"
+ * @author fkate
+ *
+ */
+
+public class Benchmark_Workload {
+
+
+	/**
+	 * main() function.
+	 *
+	 * @param args key=value settings
+	 * @throws IOException if the workload file cannot be read or written
+	 * @throws InterruptedException if interrupted while waiting for threads
+	 */
+	public static void main( String[] args ) throws IOException, InterruptedException {
+		//
+		Map<String,String> opts = new HashMap<String,String>();
+		for( String arg : args ) {
+			int eq = arg.indexOf( '=' );
+			if( eq < 0 )
+				throw new IllegalArgumentException( "expected key=value: " + arg );
+			opts.put( arg.substring( 0, eq ), arg.substring( eq + 1 ) );
+		}
+		String op = opts.getOrDefault( "op", "accept" );
+		boolean open = opts.getOrDefault( "mode", "open" ).equals( "open" );
+		int threads = Integer.parseInt( opts.getOrDefault( "threads", "4" ) );
+		int warmup = Integer.parseInt( opts.getOrDefault( "warmup", "10000" ) );
+
+		Runtime runtime = RTE.getInstance()
+			.create( config -> {
+				config.put( KEY_DATASOURCE, JSON_DATASOURCE );
+				config.put( KEY_DATASOURCE_CUSTOMER, "src/data/customers_10.json" );
+				config.put( KEY_DATASOURCE_ARTICLE, "src/data/articles_871.json" );
+			})
+			.launch( (config, rt) -> {
+				rt.loadData();
+			});
+		//
+		InventoryManager im = runtime.getInventoryManager();
+		List<Article> articles = new ArrayList<Article>();
+		im.findAll().forEach( a -> {
+			articles.add( a );
+			im.update( a.getId(), Integer.MAX_VALUE / 2 );	// stock does not run out
+		});
+		List<Customer> customers = new ArrayList<Customer>();
+		runtime.getCustomerRepository().findAll().forEach( customers::add );
+		//
+		Workload workload;
+		if( opts.containsKey( "replay" ) ) {
+			workload = Workload.read( Path.of( opts.get( "replay" ) ) );
+		} else {
+			workload = Workload.generate(
+				Long.parseLong( opts.getOrDefault( "seed", "1" ) ),
+				Integer.parseInt( opts.getOrDefault( "orders", "100000" ) ),
+				customers.stream().mapToLong( Customer::getId ).toArray(),
+				articles.stream().map( Article::getId ).toArray( String[]::new ),
+				Double.parseDouble( opts.getOrDefault( "customers.skew", "1.0" ) ),
+				Double.parseDouble( opts.getOrDefault( "articles.skew", "1.0" ) ),
+				Integer.parseInt( opts.getOrDefault( "items.max", "4" ) ),
+				Integer.parseInt( opts.getOrDefault( "units.max", "3" ) ),
+				Double.parseDouble( opts.getOrDefault( "rate", "10000" ) ),
+				opts.getOrDefault( "arrivals", "fixed" ).equals( "poisson" ) );
+			if( opts.containsKey( "record" ) ) {
+				workload.write( Path.of( opts.get( "record" ) ) );
+			}
+		}
+		List<Order> orders = orders( runtime, workload );
+		long[] offsets = workload.entries().stream().mapToLong( e -> e.offsetNanos ).toArray();
+		warmup = Math.min( warmup, orders.size() / 2 );
+		//
+		Operation operation = operation( runtime, op );
+		LatencyHistogram latency = new LatencyHistogram();
+		LatencyHistogram service = new LatencyHistogram();
+		long elapsed = run( operation, orders, offsets, open, threads, warmup, latency, service );
+		//
+		long measured = orders.size() - warmup;
+		System.out.println( String.format( "op=%s mode=%s threads=%d orders=%d (warmup %d)",
+				op, open? "open" : "closed", threads, orders.size(), warmup ) );
+		System.out.println( String.format( "throughput: %.0f orders/s sustained over %.3f s",
+				measured * 1e9 / elapsed, elapsed / 1e9 ) );
+		System.out.println( String.format( "%-22s %10s %10s %10s %10s", "", "p50", "p99", "p99.9", "max" ) );
+		if( open ) {
+			System.out.println( String.format( "%-22s %s", "latency (intended)", latency ) );
+			System.out.println( String.format( "%-22s %s", "service time", service ) );
+		} else {
+			System.out.println( String.format( "%-22s %s", "latency (raw)", latency ) );
+			System.out.println( String.format( "%-22s %s", "latency (corrected)", latency.corrected( latency.mean() ) ) );
+		}
+		runtime.shutdown( null );
+	}
+
+
+	/**
+	 * Operation measured per order.
+	 */
+	@FunctionalInterface
+	private interface Operation {
+		void run( Order order );
+	}
+
+
+	private static Operation operation( Runtime runtime, String op ) {
+		OrderBuilder ob = runtime.getOrderBuilder();
+		InventoryManager im = runtime.getInventoryManager();
+		switch( op ) {
+		case "accept": return ob::accept;
+		case "submit": return order -> ob.submit( order ).join();
+		case "fill": return im::fill;
+		default: throw new IllegalArgumentException( "op must be accept, submit or fill: " + op );
+		}
+	}
+
+
+	/*
+	 * Build orders of a workload, customers and articles resolved from the runtime.
+	 */
+	private static List<Order> orders( Runtime runtime, Workload workload ) {
+		List<Order> orders = new ArrayList<Order>( workload.entries().size() );
+		int i = 0;
+		for( Workload.Entry e : workload.entries() ) {
+			Customer customer = runtime.getCustomerRepository().findById( e.customerId )
+				.orElseThrow( () -> new IllegalArgumentException( "unknown customer: " + e.customerId ) );
+			Order order = new Order( customer ).setId( "W" + ( i++ ) );
+			for( int k = 0; k < e.articleIds.length; k++ ) {
+				String id = e.articleIds[k];
+				order.addItem( runtime.getInventoryManager().findById( id )
+					.orElseThrow( () -> new IllegalArgumentException( "unknown article: " + id ) ), e.units[k] );
+			}
+			orders.add( order );
+		}
+		return orders;
+	}
+
+
+	/*
+	 * Run orders on threads that claim the next order from a shared counter.
+	 * Returns nanoseconds from the end of the warmup to the last completed order.
+	 */
+	private static long run( Operation operation, List<Order> orders, long[] offsets, boolean open,
+			int threads, int warmup, LatencyHistogram latency, LatencyHistogram service ) throws InterruptedException
+	{
+		AtomicInteger next = new AtomicInteger( 0 );
+		CountDownLatch done = new CountDownLatch( threads );
+		long[] measureStart = { 0 };
+		long[] lastEnd = new long[threads];
+		LatencyHistogram[] latencies = new LatencyHistogram[threads];
+		LatencyHistogram[] services = new LatencyHistogram[threads];
+		long t0 = System.nanoTime() + 10_000_000L;	// threads are started meanwhile
+		//
+		for( int t = 0; t < threads; t++ ) {
+			int self = t;
+			latencies[t] = new LatencyHistogram();
+			services[t] = new LatencyHistogram();
+			new Thread( () -> {
+				for( int i = next.getAndIncrement(); i < orders.size(); i = next.getAndIncrement() ) {
+					long intended = open? t0 + offsets[i] : 0;
+					if( open ) {
+						waitUntil( intended );
+					}
+					long start = System.nanoTime();
+					if( i == warmup ) {
+						measureStart[0] = open? intended : start;
+					}
+					operation.run( orders.get( i ) );
+					long end = System.nanoTime();
+					if( i >= warmup ) {
+						latencies[self].record( end - ( open? intended : start ) );
+						services[self].record( end - start );
+					}
+					lastEnd[self] = end;
+				}
+				done.countDown();
+			}, "workload-" + t ).start();
+		}
+		done.await();	// also publishes measureStart and lastEnd
+		//
+		long end = 0;
+		for( int t = 0; t < threads; t++ ) {
+			latency.add( latencies[t] );
+			service.add( services[t] );
+			end = Math.max( end, lastEnd[t] );
+		}
+		return Math.max( 1, end - measureStart[0] );
+	}
+
+
+	private static void waitUntil( long deadline ) {
+		for( long now = System.nanoTime(); now < deadline; now = System.nanoTime() ) {
+			if( deadline - now > 100_000 ) {
+				LockSupport.parkNanos( deadline - now - 50_000 );
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+	}
+
+}
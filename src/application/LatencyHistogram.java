@@ -0,0 +1,184 @@
+package application;
+
+import java.util.Arrays;
+
+
+/**
+ * Histogram of latencies in nanoseconds with log-linear buckets: values below
+ * 128 ns are counted exactly, larger values in 64 buckets per power of two
+ * (relative error below 1.6%), so percentiles of any range from nanoseconds to
+ * hours are kept in a few thousand counters. Not thread-safe, each thread
+ * records into its own histogram, histograms are merged with add().
+ *
+ * @since "0.1.2"
+ * @author fkate
+ *
+ */
+
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 7;
+	private static final int HALF = 1 << ( SUB_BITS - 1 );
+
+	private final long[] counts = new long[( 64 - SUB_BITS + 2 ) * HALF];
+	private long count = 0;
+	private long max = 0;
+
+
+	/**
+	 * Record a latency.
+	 *
+	 * @param nanos latency in nanoseconds, negative values count as 0.
+	 */
+	public void record( long nanos ) {
+		record( Math.max( 0, nanos ), 1 );
+	}
+
+
+	/**
+	 * Add counts of another histogram.
+	 *
+	 * @param other histogram to add.
+	 * @return chainable self-reference.
+	 */
+	public LatencyHistogram add( LatencyHistogram other ) {
+		for( int i = 0; i < counts.length; i++ ) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		max = Math.max( max, other.max );
+		return this;
+	}
+
+
+	/**
+	 * Return copy corrected for coordinated omission of a closed-loop test:
+	 * a latency longer than the expected interval between requests delayed
+	 * requests that were not sent, they are added with latencies decreasing
+	 * by the interval (as if sent on schedule and waiting for the slow one).
+	 *
+	 * @param expectedInterval expected interval between requests in nanoseconds.
+	 * @return corrected histogram.
+	 */
+	public LatencyHistogram corrected( long expectedInterval ) {
+		LatencyHistogram c = new LatencyHistogram();
+		for( int i = 0; i < counts.length; i++ ) {
+			if( counts[i] == 0 )
+				continue;
+			long value = valueOf( i );
+			c.record( value, counts[i] );
+			if( expectedInterval > 0 ) {
+				for( long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval ) {
+					c.record( missing, counts[i] );
+				}
+			}
+		}
+		c.max = max;	// bucket values may exceed the largest recorded latency
+		return c;
+	}
+
+
+	/**
+	 * Return latency at a percentile.
+	 *
+	 * @param percentile percentile, e.g. 99.9.
+	 * @return latency in nanoseconds (bucket value), 0 if empty.
+	 */
+	public long percentile( double percentile ) {
+		if( count == 0 )
+			return 0;
+		long rank = Math.max( 1, (long)Math.ceil( count * percentile / 100.0 ) );
+		long seen = 0;
+		for( int i = 0; i < counts.length; i++ ) {
+			seen += counts[i];
+			if( seen >= rank )
+				return Math.min( valueOf( i ), max );
+		}
+		return max;
+	}
+
+
+	public long count() {
+		return count;
+	}
+
+
+	public long max() {
+		return max;
+	}
+
+
+	/**
+	 * Return mean latency (from bucket values).
+	 *
+	 * @return mean latency in nanoseconds, 0 if empty.
+	 */
+	public long mean() {
+		if( count == 0 )
+			return 0;
+		double sum = 0;
+		for( int i = 0; i < counts.length; i++ ) {
+			sum += (double)counts[i] * valueOf( i );
+		}
+		return (long)( sum / count );
+	}
+
+
+	@Override
+	public String toString() {
+		return String.format( "%10s %10s %10s %10s", micros( percentile( 50 ) ), micros( percentile( 99 ) ),
+				micros( percentile( 99.9 ) ), micros( max ) );
+	}
+
+
+	/**
+	 * Format nanoseconds as microseconds.
+	 *
+	 * @param nanos nanoseconds.
+	 * @return microseconds with one decimal and unit.
+	 */
+	static String micros( long nanos ) {
+		return String.format( "%.1fus", nanos / 1000.0 );
+	}
+
+
+	private void record( long value, long n ) {
+		counts[indexOf( value )] += n;
+		count += n;
+		max = Math.max( max, value );
+	}
+
+
+	/*
+	 * Values below 2 * HALF map to themselves, larger values to HALF buckets per power of two.
+	 */
+	private static int indexOf( long value ) {
+		if( value < 2 * HALF )
+			return (int)value;
+		int shift = 63 - Long.numberOfLeadingZeros( value ) - ( SUB_BITS - 1 );
+		return shift * HALF + (int)( value >>> shift );
+	}
+
+
+	/*
+	 * Middle of the value range of a bucket.
+	 */
+	private static long valueOf( int index ) {
+		if( index < 2 * HALF )
+			return index;
+		int shift = index / HALF - 1;
+		long mantissa = index - shift * HALF;
+		return ( mantissa << shift ) + ( ( 1L << shift ) >>> 1 );
+	}
+
+
+	/**
+	 * Reset all counts.
+	 */
+	public void clear() {
+		Arrays.fill( counts, 0 );
+		count = 0;
+		max = 0;
+	}
+
+}
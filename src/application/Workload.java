@@ -0,0 +1,187 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+
+/**
+ * Order stream of a load test: orders with their arrival offsets, either
+ * generated from a seed (same seed, same stream) or read from a file that
+ * was recorded before. Customers and articles are drawn from Zipf
+ * distributions (rank k is chosen with probability proportional to
+ * {@code 1/k^s}, s = 0: uniform), the number of items per order and units
+ * per item are uniform. Arrivals are spaced at a fixed rate or, for Poisson
+ * arrivals, with exponentially distributed gaps of the same mean.
+ * <p>
+ * File format, one order per line:
+ * {@code offset-micros;customer-id;article-id:units,article-id:units,...}
+ *
+ * @since "0.1.2"
+ * @author fkate
+ *
+ */
+
+public class Workload {
+
+	/**
+	 * Order of the stream: arrival offset from the start, customer and items.
+	 */
+	public static class Entry {
+		final long offsetNanos;
+		final long customerId;
+		final String[] articleIds;
+		final int[] units;
+
+		Entry( long offsetNanos, long customerId, String[] articleIds, int[] units ) {
+			this.offsetNanos = offsetNanos;
+			this.customerId = customerId;
+			this.articleIds = articleIds;
+			this.units = units;
+		}
+	}
+
+
+	private final List<Entry> entries;
+
+
+	private Workload( List<Entry> entries ) {
+		this.entries = entries;
+	}
+
+
+	public List<Entry> entries() {
+		return entries;
+	}
+
+
+	/**
+	 * Generate order stream from a seed.
+	 *
+	 * @param seed random seed.
+	 * @param orders number of orders.
+	 * @param customerIds customers in popularity order (rank 1 first).
+	 * @param articleIds articles in popularity order (rank 1 first).
+	 * @param customerSkew Zipf exponent of customer popularity.
+	 * @param articleSkew Zipf exponent of article popularity.
+	 * @param maxItems maximum number of items per order (uniform 1..maxItems).
+	 * @param maxUnits maximum units per item (uniform 1..maxUnits).
+	 * @param rate arrival rate in orders per second.
+	 * @param poisson true for Poisson arrivals, false for a fixed rate.
+	 * @return generated order stream.
+	 */
+	public static Workload generate( long seed, int orders, long[] customerIds, String[] articleIds,
+			double customerSkew, double articleSkew, int maxItems, int maxUnits, double rate, boolean poisson )
+	{
+		SplittableRandom random = new SplittableRandom( seed );
+		double[] customerCdf = zipf( customerIds.length, customerSkew );
+		double[] articleCdf = zipf( articleIds.length, articleSkew );
+		double gap = 1e9 / rate;
+		double offset = 0;
+		List<Entry> entries = new ArrayList<Entry>( orders );
+		for( int i = 0; i < orders; i++ ) {
+			int items = 1 + random.nextInt( maxItems );
+			String[] articles = new String[items];
+			int[] units = new int[items];
+			for( int k = 0; k < items; k++ ) {
+				articles[k] = articleIds[draw( articleCdf, random )];
+				units[k] = 1 + random.nextInt( maxUnits );
+			}
+			entries.add( new Entry( (long)offset, customerIds[draw( customerCdf, random )], articles, units ) );
+			offset += poisson? - Math.log( 1.0 - random.nextDouble() ) * gap : gap;
+		}
+		return new Workload( entries );
+	}
+
+
+	/**
+	 * Read recorded order stream.
+	 *
+	 * @param file file written by write().
+	 * @return order stream.
+	 * @throws IOException if the file cannot be read.
+	 * @throws IllegalArgumentException if a line is malformed.
+	 */
+	public static Workload read( Path file ) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		try( BufferedReader reader = Files.newBufferedReader( file, StandardCharsets.UTF_8 ) ) {
+			int lineNumber = 0;
+			for( String line = reader.readLine(); line != null; line = reader.readLine() ) {
+				lineNumber++;
+				if( line.isBlank() )
+					continue;
+				try {
+					String[] fields = line.split( ";" );
+					String[] items = fields[2].split( "," );
+					String[] articles = new String[items.length];
+					int[] units = new int[items.length];
+					for( int k = 0; k < items.length; k++ ) {
+						int colon = items[k].lastIndexOf( ':' );
+						articles[k] = items[k].substring( 0, colon );
+						units[k] = Integer.parseInt( items[k].substring( colon + 1 ) );
+					}
+					entries.add( new Entry( Long.parseLong( fields[0] ) * 1000, Long.parseLong( fields[1] ), articles, units ) );
+
+				} catch( RuntimeException e ) {
+					throw new IllegalArgumentException( "malformed workload line " + lineNumber + ": " + line );
+				}
+			}
+		}
+		return new Workload( entries );
+	}
+
+
+	/**
+	 * Record order stream to a file.
+	 *
+	 * @param file file to write.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void write( Path file ) throws IOException {
+		try( BufferedWriter writer = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) ) {
+			StringBuilder line = new StringBuilder();
+			for( Entry e : entries ) {
+				line.setLength( 0 );
+				line.append( e.offsetNanos / 1000 ).append( ';' ).append( e.customerId ).append( ';' );
+				for( int k = 0; k < e.articleIds.length; k++ ) {
+					line.append( k > 0? "," : "" ).append( e.articleIds[k] ).append( ':' ).append( e.units[k] );
+				}
+				writer.write( line.append( '\n' ).toString() );
+			}
+		}
+	}
+
+
+	/*
+	 * Cumulative Zipf distribution of n ranks with exponent s.
+	 */
+	private static double[] zipf( int n, double s ) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for( int k = 0; k < n; k++ ) {
+			sum += 1.0 / Math.pow( k + 1, s );
+			cdf[k] = sum;
+		}
+		for( int k = 0; k < n; k++ ) {
+			cdf[k] /= sum;
+		}
+		return cdf;
+	}
+
+
+	/*
+	 * Draw index from a cumulative distribution by binary search.
+	 */
+	private static int draw( double[] cdf, SplittableRandom random ) {
+		int i = Arrays.binarySearch( cdf, random.nextDouble() );
+		return Math.min( i >= 0? i : - i - 1, cdf.length - 1 );
+	}
+
+}
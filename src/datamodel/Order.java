@@ -42,6 +42,18 @@ public class Order {
         creationDate = new Date( System.currentTimeMillis() );
     }
 
+    /**
+     * Public constructor with customer and creation date, used to restore orders
+     * with their original creation date.
+     * @param customer Customer owning the order, {@code != null}
+     * @param creationDate date as milliseconds since 1970-01-01 (UTC), {@code >= 0}
+     */
+    public Order( Customer customer, long creationDate ) {
+        if( customer == null || creationDate < 0 ) throw new IllegalArgumentException();
+        this.customer = customer;
+        this.creationDate = new Date( creationDate );
+    }
+
     /**
      * Id getter.
      * @return order id, may be invalid {@code = null} if unassigned
@@ -78,17 +90,6 @@ public class Order {
         return this.creationDate;
     }
 
-    /**
-     * creation date setter
-     * @deprecated not working since creation date is set in constructor and final variables can't be set outside of the constructor.
-     * @param dateAsLong date as long
-     * @return chainable self-reference
-     */
-    public Order setCreationDate( long dateAsLong ) {
-        // cannot assign a value to a final variable
-        return this;
-    }
-
     /**
      * get items count
      * @return amount of items in the order
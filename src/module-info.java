@@ -17,4 +17,5 @@ module se1.bestellsystem {
     requires transitive com.fasterxml.jackson.databind;
     requires transitive com.fasterxml.jackson.annotation;
     requires transitive com.fasterxml.jackson.core;
+    requires jdk.httpserver;
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package system;
+
+/**
+ * Public interface of a Repository that keeps recently used entities of a
+ * slower backend Repository in a size-bounded in-memory cache (read-through).
+ * Entities saved through the cache are written to the backend and invalidated
+ * in the cache.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public interface CachedRepository<T> extends Repository<T> {
+
+    /**
+     * Number of findById() lookups served from the cache.
+     *
+     * @return number of cache hits.
+     */
+    long getHitCount();
+
+    /**
+     * Number of findById() lookups that had to be passed to the backend.
+     *
+     * @return number of cache misses.
+     */
+    long getMissCount();
+
+    /**
+     * Number of entities evicted from the cache to keep it within its capacity.
+     *
+     * @return number of evictions.
+     */
+    long getEvictionCount();
+
+    /**
+     * Remove entity with given id from the cache (the backend is not affected).
+     *
+     * @param id identifier of the entity to invalidate.
+     */
+    void invalidate( String id );
+
+    /**
+     * Remove all entities from the cache (the backend is not affected).
+     */
+    void invalidateAll();
+}
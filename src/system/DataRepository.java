@@ -1,5 +1,6 @@
 package system;
 
+import java.util.Collection;
 import java.util.Optional;
 
 import datamodel.Article;
@@ -25,9 +26,11 @@ public interface DataRepository {
 	 */
 	interface CustomerRepository {
 		Optional<Customer> findById( long id );
+		Iterable<Customer> findAllById( Collection<Long> ids );
 		Iterable<Customer> findAll();
 		long count();
 		Customer save( Customer entity );
+		Iterable<Customer> saveAll( Iterable<Customer> entities );
 	}
 
 	/**
@@ -37,9 +40,11 @@ public interface DataRepository {
 
 	interface ArticleRepository {
 		Optional<Article> findById( String id );
+		Iterable<Article> findAllById( Collection<String> ids );
 		Iterable<Article> findAll();
 		long count();
 		Article save( Article entity );
+		Iterable<Article> saveAll( Iterable<Article> entities );
 	}
 
 	/**
@@ -48,9 +53,11 @@ public interface DataRepository {
 	 */
 	interface OrderRepository {
 		Optional<Order> findById( String id );
+		Iterable<Order> findAllById( Collection<String> ids );
 		Iterable<Order> findAll();
 		long count();
 		Order save( Order entity );
+		Iterable<Order> saveAll( Iterable<Order> entities );
 	}
 
 }
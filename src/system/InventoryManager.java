@@ -1,6 +1,18 @@
 package system;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import datamodel.Article;
+import datamodel.Currency;
 import datamodel.Order;
+import datamodel.TAX;
 
 
 /**
@@ -13,9 +25,15 @@ import datamodel.Order;
 
 public interface InventoryManager extends DataRepository.ArticleRepository {
 
+	/**
+	 * name of the warehouse that exists in every inventory, update() and
+	 * updateAll() without warehouse operate on the default warehouse.
+	 */
+	String DEFAULT_WAREHOUSE = "default";
+
 
 	/**
-	 * Return units in stock for given article.
+	 * Return units in stock for given article (in all warehouses).
 	 * 
 	 * @param id article identifier.
 	 * @return units in stock of article.
@@ -25,7 +43,18 @@ public interface InventoryManager extends DataRepository.ArticleRepository {
 
 
 	/**
-	 * Update inventory for article.
+	 * Return units in stock for given article in a warehouse.
+	 * 
+	 * @param id article identifier.
+	 * @param warehouse warehouse name.
+	 * @return units in stock of article in warehouse.
+	 * @throws IllegalArgumentException if id or warehouse is null or does not exist.
+	 */
+	int getUnitsInStock( String id, String warehouse );
+
+
+	/**
+	 * Update inventory for article in the default warehouse.
 	 * 
 	 * @param id article identifier.
 	 * @param updatedUnitsInStock update with number (must be {@code >= 0}).
@@ -34,11 +63,101 @@ public interface InventoryManager extends DataRepository.ArticleRepository {
 	void update( String id, int updatedUnitsInStock );
 
 
+	/**
+	 * Update inventory for article in a warehouse.
+	 * 
+	 * @param id article identifier.
+	 * @param warehouse warehouse name.
+	 * @param updatedUnitsInStock update with number (must be {@code >= 0}).
+	 * @throws IllegalArgumentException if id or warehouse is null or does not exist or unitsInStock is {@code < 0}).
+	 */
+	void update( String id, String warehouse, int updatedUnitsInStock );
+
+
+	/**
+	 * Apply a stock feed (snapshot or delta of many articles) to the default
+	 * warehouse in one atomic step.
+	 * 
+	 * @param unitsInStock units in stock by article id, or changes of units if delta is true.
+	 * @param delta true if values are changes of units in stock (may be negative).
+	 * @return number of articles whose units in stock changed.
+	 * @throws IllegalArgumentException if an id is null or does not exist or units would be {@code < 0}, no units are changed then.
+	 */
+	int updateAll( Map<String,Integer> unitsInStock, boolean delta );
+
+
+	/**
+	 * Apply a stock feed (snapshot or delta of many articles) to a warehouse in
+	 * one atomic step: all entries are validated before units of any article are
+	 * changed, the feed is either applied completely or rejected. Orders waiting
+	 * for replenished articles are re-checked afterwards.
+	 * 
+	 * @param warehouse warehouse name.
+	 * @param unitsInStock units in stock by article id, or changes of units if delta is true.
+	 * @param delta true if values are changes of units in stock (may be negative).
+	 * @return number of articles whose units in stock changed.
+	 * @throws IllegalArgumentException if warehouse or an id is null or does not exist or units would be {@code < 0}, no units are changed then.
+	 */
+	int updateAll( String warehouse, Map<String,Integer> unitsInStock, boolean delta );
+
+
+	/**
+	 * Add a warehouse with its own stock partition (initially no units in stock).
+	 * Stock of different warehouses is locked independently.
+	 * 
+	 * @param warehouse warehouse name.
+	 * @throws IllegalArgumentException if warehouse is null or exists.
+	 */
+	void addWarehouse( String warehouse );
+
+
+	/**
+	 * Return names of warehouses, starting with the default warehouse.
+	 * 
+	 * @return warehouse names in the order they were added.
+	 */
+	List<String> getWarehouses();
+
+
+	/**
+	 * Set cost function that routes fills to warehouses.
+	 * 
+	 * @param cost cost function, null: prefer warehouses in the order they were added.
+	 */
+	void setRoutingCost( RoutingCost cost );
+
+
+	/**
+	 * Fill order from warehouses. The order is shipped from the single
+	 * warehouse with the lowest cost that can fill all items. If no single
+	 * warehouse can, items are split across warehouses, each item is taken
+	 * from warehouses in order of their costs for the item. Inventory remains
+	 * unchanged if the order cannot be filled (all or none).
+	 * 
+	 * @param order order to fill.
+	 * @return units shipped by warehouse and article, empty if the order was not filled.
+	 * @throws IllegalArgumentException if order is null or an article does not exist.
+	 */
+	Optional<Map<String,Map<Article,Integer>>> fillRouted( Order order );
+
+
+	/**
+	 * Return units available for new orders (units in stock minus units reserved
+	 * for pending orders, available-to-promise).
+	 * 
+	 * @param id article identifier.
+	 * @return units available of article.
+	 * @throws IllegalArgumentException if id is null or id does not exist.
+	 */
+	int getUnitsAvailable( String id );
+
+
 	/**
 	 * Test that order is fillable.
 	 * 
 	 * An order is fillable when all order items meet the condition:
-	 * {@code orderItem.unitsOrdered <= inventory(article).unitsInStock}.
+	 * {@code orderItem.unitsOrdered <= inventory(article).unitsAvailable},
+	 * with units available in all warehouses.
 	 * 
 	 * @param order to validate.
 	 * @return true if order is fillable from current inventory.
@@ -51,6 +170,7 @@ public interface InventoryManager extends DataRepository.ArticleRepository {
 	 * Fills order by deducting all order items from the inventory, if the
 	 * order is fillable. If the order is not fillable, inventory remains
 	 * unchanged (transactional behavior: all or none order item is filled).
+	 * With several warehouses, the order is routed as by fillRouted().
 	 * 
 	 * @param order to fill.
 	 * @return true if order has been filled, false otherwise.
@@ -59,6 +179,164 @@ public interface InventoryManager extends DataRepository.ArticleRepository {
 	boolean fill( Order order );
 
 
+	/**
+	 * Fill a batch of orders (e.g. an order backlog). Demand is aggregated per article,
+	 * orders are selected under a policy and filled as in fill() (all or none order
+	 * item of an order), all deductions are applied in one step. With several
+	 * warehouses, orders are filled one by one in policy order and routed as by
+	 * fill(). Orders with articles that do not exist are not filled.
+	 * 
+	 * @param orders orders to fill.
+	 * @param policy policy that decides which orders are filled first when stock is short.
+	 * @return fill outcome (true: filled) for each order in the sequence of orders.
+	 * @throws IllegalArgumentException if orders, an order or policy is null.
+	 */
+	Map<Order,Boolean> fillAll( Iterable<Order> orders, FillPolicy policy );
+
+
+	/**
+	 * Fill order or, if it is not fillable, park it in a wait queue until stock
+	 * of an article it is short of is replenished by update(). Replenishing an
+	 * article re-checks only the orders waiting on it and fills them in the
+	 * order of the backorder policy (orders that are still short are skipped).
+	 * 
+	 * @param order order to fill.
+	 * @param filled callback when the order was filled, by this call or by the thread updating stock.
+	 * @return true if the order was filled at once, false if it waits for stock.
+	 * @throws IllegalArgumentException if order or filled is null or an article does not exist.
+	 */
+	boolean backorder( Order order, Consumer<Order> filled );
+
+
+	/**
+	 * Set policy ordering wait queues of orders parked later, default: FIFO.
+	 * 
+	 * @param policy FIFO: arrival, MAX_ORDERS: fewest units first, MAX_VALUE: highest value first.
+	 * @throws IllegalArgumentException if policy is null.
+	 */
+	void setBackorderPolicy( FillPolicy policy );
+
+
+	/**
+	 * Return number of orders waiting for stock.
+	 * 
+	 * @return number of backorders.
+	 */
+	long countBackorders();
+
+
+	/**
+	 * Reserve units of all order items without deducting them from the inventory
+	 * (all or none order item is reserved). Reserved units are not available for
+	 * other orders until the reservation is committed, released or expires.
+	 * Units are reserved in the warehouses fill() would route the order to.
+	 * 
+	 * @param order order to reserve units for.
+	 * @param ttl time after which the reservation expires and units are released.
+	 * @return reservation or empty if the order is not fillable.
+	 * @throws IllegalArgumentException if order or ttl is null or ttl is negative.
+	 */
+	Optional<Reservation> reserve( Order order, Duration ttl );
+
+
+	/**
+	 * Fill order of a reservation by deducting its reserved units from the inventory.
+	 * 
+	 * @param reservation active reservation.
+	 * @return true if order has been filled, false if the reservation is no longer active
+	 * or stock was updated below the reserved units (the reservation is released).
+	 * @throws IllegalArgumentException if reservation is null.
+	 */
+	boolean commit( Reservation reservation );
+
+
+	/**
+	 * Release reserved units without filling the order.
+	 * 
+	 * @param reservation active reservation.
+	 * @return true if units have been released, false if the reservation is no longer active.
+	 * @throws IllegalArgumentException if reservation is null.
+	 */
+	boolean release( Reservation reservation );
+
+
+	/**
+	 * Find articles by keywords in their descriptions using a full-text index
+	 * that is updated when articles are saved. Keywords are matched
+	 * case-insensitively.
+	 * 
+	 * @param query keywords separated by blanks must all match (AND), groups of keywords
+	 * separated by "OR" match alternatively, keywords ending with '*' match as prefix,
+	 * e.g. {@code "powershot 18-55mm"}, {@code "canon OR nikon"}, {@code "power*"}.
+	 * @return matching articles in the order they were saved.
+	 */
+	Iterable<Article> search( String query );
+
+
+	/**
+	 * Compile the articles into an immutable catalog that answers findById()
+	 * and all lookups of articles by id until it is invalidated by the next
+	 * article saved through the InventoryManager. Calling freeze() again swaps
+	 * in a refreshed catalog.
+	 */
+	void freeze();
+
+
+	/**
+	 * Return value (unit price * units in stock) of all articles priced in a
+	 * currency. The value is maintained incrementally when articles are saved
+	 * and stock changes and is returned in constant time. Price changes of
+	 * articles are included when the article is saved.
+	 * 
+	 * @param currency currency of articles.
+	 * @return inventory value in currency.
+	 * @throws IllegalArgumentException if currency is null.
+	 */
+	long getInventoryValue( Currency currency );
+
+
+	/**
+	 * Return value (unit price * units in stock) of all articles priced in a
+	 * currency with a tax class in constant time.
+	 * 
+	 * @param currency currency of articles.
+	 * @param tax tax class of articles.
+	 * @return inventory value in currency and tax class.
+	 * @throws IllegalArgumentException if currency or tax is null.
+	 */
+	long getInventoryValue( Currency currency, TAX tax );
+
+
+	/**
+	 * Register listener that is notified asynchronously of changes of units in
+	 * stock by update(), fill(), fillAll() and commit(). Changes are delivered
+	 * in batches by a dispatcher thread, never by the thread changing stock.
+	 * 
+	 * @param listener listener to register.
+	 * @throws IllegalArgumentException if listener is null.
+	 */
+	void addStockListener( StockListener listener );
+
+
+	/**
+	 * Unregister listener.
+	 * 
+	 * @param listener listener to remove.
+	 */
+	void removeStockListener( StockListener listener );
+
+
+	/**
+	 * Set low-stock threshold for an article. Listeners receive onLowStock()
+	 * when units in stock drop from above the threshold to or below it.
+	 * 
+	 * @param id article id.
+	 * @param threshold threshold in units, {@code < 0} removes the threshold.
+	 * @throws IllegalArgumentException if id is null or id does not exist.
+	 */
+	void setLowStockThreshold( String id, int threshold );
+
+
 	/**
 	 * Print inventory as table.
 	 * 
@@ -67,15 +345,204 @@ public interface InventoryManager extends DataRepository.ArticleRepository {
 	StringBuffer printInventory();
 
 
+	/**
+	 * Print inventory as table with sorting and limiting criteria. Limited
+	 * queries select the first {@code limit} articles with a bounded heap
+	 * (O(n log limit)) instead of sorting all articles.
+	 * 
+	 * @param sortedBy sorting criteria, null: unsorted
+	 * @param descending true if in descending order
+	 * @param limit upper boundary of articles printed after sorting, null: all articles
+	 * @return printed inventory (as table).
+	 * @throws IllegalArgumentException if limit is {@code < 0}.
+	 */
+	StringBuffer printInventory( SortedBy sortedBy, boolean descending, Integer limit );
+
+
 	/**
 	 * Print inventory as table with sorting and limiting criteria.
 	 * 
 	 * @param sortedBy sorting criteria 1: byPrice; 2: byValue; 3: byUnits; 4: byDescription; 5: bySKU; else: unsorted
 	 * @param descending true if in descending order
-	 * @param limit upper boundary of articles printed after sorting
+	 * @param limit upper boundary of articles printed after sorting, null: all articles
 	 * @return printed inventory (as table).
+	 * @deprecated use {@link #printInventory(SortedBy, boolean, Integer)}.
 	 */
-
+	@Deprecated
 	StringBuffer printInventory( int sortedBy, boolean descending, Integer limit );
 
+
+	/**
+	 * Print inventory table row by row to a Writer in the layout of
+	 * printInventory(), without holding the table in memory. The Writer is
+	 * flushed but not closed.
+	 * 
+	 * @param out Writer the table is written to.
+	 * @param sortedBy sorting criteria, null: unsorted
+	 * @param descending true if in descending order
+	 * @param limit upper boundary of articles printed after sorting, null: all articles
+	 * @throws IOException if writing fails.
+	 * @throws IllegalArgumentException if out is null or limit is {@code < 0}.
+	 */
+	void printInventory( Writer out, SortedBy sortedBy, boolean descending, Integer limit ) throws IOException;
+
+
+	/**
+	 * Print inventory table row by row UTF-8 encoded to a channel, e.g. a FileChannel.
+	 * The channel is not closed.
+	 * 
+	 * @param channel channel the table is written to.
+	 * @param sortedBy sorting criteria, null: unsorted
+	 * @param descending true if in descending order
+	 * @param limit upper boundary of articles printed after sorting, null: all articles
+	 * @throws IOException if writing fails.
+	 * @throws IllegalArgumentException if channel is null or limit is {@code < 0}.
+	 */
+	void printInventory( WritableByteChannel channel, SortedBy sortedBy, boolean descending, Integer limit ) throws IOException;
+
+
+	/**
+	 * Sorting criteria of printInventory().
+	 */
+	enum SortedBy {
+
+		/**
+		 * Sort by unit price.
+		 */
+		BY_PRICE,
+
+		/**
+		 * Sort by value in stock (unit price * units in stock).
+		 */
+		BY_VALUE,
+
+		/**
+		 * Sort by units in stock.
+		 */
+		BY_UNITS,
+
+		/**
+		 * Sort by article description.
+		 */
+		BY_DESCRIPTION,
+
+		/**
+		 * Sort by article id (SKU).
+		 */
+		BY_SKU
+	}
+
+
+	/**
+	 * Policies to select orders in fillAll() when stock is short.
+	 */
+	enum FillPolicy {
+
+		/**
+		 * Fill orders in the sequence they were passed.
+		 */
+		FIFO,
+
+		/**
+		 * Maximize the number of filled orders, orders with fewer units are filled first.
+		 */
+		MAX_ORDERS,
+
+		/**
+		 * Maximize the value of filled orders, orders with higher value are filled first.
+		 */
+		MAX_VALUE
+	}
+
+
+	/**
+	 * Cost of shipping units of an article from a warehouse, used to route fills.
+	 */
+	@FunctionalInterface
+	interface RoutingCost {
+
+		/**
+		 * @param warehouse warehouse name.
+		 * @param article article to ship.
+		 * @param units units to ship.
+		 * @return cost, lower cost is preferred.
+		 */
+		long cost( String warehouse, Article article, int units );
+	}
+
+
+	/**
+	 * Change of units in stock of an article in a warehouse.
+	 */
+	interface StockChange {
+
+		/**
+		 * @return id of changed article.
+		 */
+		String getArticleId();
+
+		/**
+		 * @return name of the warehouse where stock changed.
+		 */
+		String getWarehouse();
+
+		/**
+		 * @return units in stock before the change.
+		 */
+		int getPreviousUnits();
+
+		/**
+		 * @return units in stock after the change.
+		 */
+		int getUnitsInStock();
+	}
+
+
+	/**
+	 * Listener of stock changes, called by the dispatcher thread of the InventoryManager.
+	 * Listeners should return quickly, slow listeners delay the delivery of later changes
+	 * and eventually throttle threads that change stock. Listeners may change stock
+	 * themselves (e.g. restock in onLowStock()), those changes are delivered after the
+	 * current batch.
+	 */
+	interface StockListener {
+
+		/**
+		 * Called with a batch of stock changes in the order they occurred.
+		 * 
+		 * @param changes changes of units in stock.
+		 */
+		void onStockChanged( List<StockChange> changes );
+
+		/**
+		 * Called when units in stock dropped to or below the low-stock threshold of an article.
+		 * 
+		 * @param change change that crossed the threshold.
+		 * @param threshold low-stock threshold of the article.
+		 */
+		default void onLowStock( StockChange change, int threshold ) { }
+	}
+
+
+	/**
+	 * Handle of units reserved for an order.
+	 */
+	interface Reservation {
+
+		/**
+		 * @return order units are reserved for.
+		 */
+		Order getOrder();
+
+		/**
+		 * @return expiry time in milliseconds since 1970-01-01 (UTC).
+		 */
+		long getExpiry();
+
+		/**
+		 * @return true if the reservation was neither committed, released nor has expired.
+		 */
+		boolean isActive();
+	}
+
 }
@@ -1,5 +1,7 @@
 package system;
 
+import java.util.concurrent.CompletableFuture;
+
 import datamodel.Order;
 
 /**
@@ -14,16 +16,69 @@ import datamodel.Order;
 
 public interface OrderBuilder {
     /**
-     * Validate and save order to OrderRepository, if order is accepted.
+     * Fill order from the inventory (deducts units in stock) and save it to
+     * OrderRepository. Orders that cannot be filled wait as backorders and are saved when
+     * they are filled after stock was replenished. Orders with the id of an
+     * order accepted before (redelivered orders) are ignored, orders without
+     * id are assigned an id from the OrderIdGenerator of the Runtime.
      *
      * @param order order to accept.
-     * @return true if order was validated and saved to OrderRepository.
+     * @return true if order was filled and saved to OrderRepository, false
+     * if it waits as backorder or is a duplicate.
      */
     public boolean accept( Order order );
+    /**
+     * Fill orders from the inventory and save all filled orders to
+     * OrderRepository in one batch. Orders that cannot be filled wait as backorders,
+     * duplicates of orders accepted before are ignored.
+     *
+     * @param orders orders to accept.
+     * @return number of orders that were filled and saved to OrderRepository.
+     */
+    public long acceptAll( Iterable<Order> orders );
+    /**
+     * Submit order to the asynchronous intake pipeline that validates orders,
+     * fills them from the inventory (deducts units in stock) and saves them to
+     * OrderRepository in micro-batches on worker threads. Blocks while the
+     * submission queue is full.
+     *
+     * @param order order to submit.
+     * @return future completed with the outcome of the order: filled and saved, waits as
+     * backorder (saved when it is filled later), duplicate or invalid.
+     * @throws IllegalArgumentException if order is null.
+     */
+    public CompletableFuture<Outcome> submit( Order order );
     /**
      * Build orders in OrderRepository.
      *
      * @return chainable self-reference.
      */
     public OrderBuilder build();
+
+
+    /**
+     * Outcomes of submitted orders.
+     */
+    enum Outcome {
+
+        /**
+         * Order was filled from the inventory and saved to OrderRepository.
+         */
+        FILLED,
+
+        /**
+         * Order waits as backorder, it is saved when it is filled after stock was replenished.
+         */
+        BACKORDERED,
+
+        /**
+         * Order has the id of an order accepted before and was ignored.
+         */
+        DUPLICATE,
+
+        /**
+         * Order has no customer, no items, items of unknown articles or without units.
+         */
+        INVALID
+    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package system;
+
+/**
+ * Public interface of a generator of unique order ids. Ids are numeric
+ * strings (decimal digits, like {@code "8592356245"}) composed of a timestamp,
+ * the node id of the generating process and a sequence number, so processes
+ * with different node ids create distinct ids without coordination.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public interface OrderIdGenerator {
+
+    /**
+     * Return the next order id. Ids of one generator are unique and increase
+     * monotonically, also when the system clock is set back.
+     *
+     * @return next order id as numeric string.
+     */
+    String nextId();
+
+    /**
+     * Return the next order id as number.
+     *
+     * @return next order id, positive number.
+     */
+    long next();
+
+    /**
+     * Node id encoded in the ids of this generator.
+     *
+     * @return node id, 0 .. 1023.
+     */
+    int getNodeId();
+}
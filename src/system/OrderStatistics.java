@@ -0,0 +1,70 @@
+package system;
+
+import java.util.List;
+import java.util.Optional;
+
+import datamodel.Customer;
+
+/**
+ * Public interface of an OrderStatistics component that maintains per-customer
+ * aggregates of accepted orders. Aggregates are updated incrementally with each
+ * order saved to the OrderRepository with a new id (orders saved again are not
+ * counted twice) and can be queried without recalculating order values.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public interface OrderStatistics {
+
+    /**
+     * Return aggregates of the accepted orders of a customer.
+     *
+     * @param customerId customer identifier.
+     * @return aggregates of the customer or empty if the customer has no accepted orders.
+     */
+    Optional<CustomerStatistics> getCustomerStatistics( long customerId );
+
+    /**
+     * Return customers with the highest total order value (leaderboard).
+     *
+     * @param n maximum number of customers returned.
+     * @return aggregates of up to n customers in descending order of total value.
+     */
+    List<CustomerStatistics> getTopCustomers( int n );
+
+    /**
+     * Number of customers with accepted orders.
+     *
+     * @return number of customers.
+     */
+    long count();
+
+    /**
+     * Immutable snapshot of the aggregates of one customer.
+     */
+    interface CustomerStatistics {
+
+        /**
+         * @return customer the aggregates belong to.
+         */
+        Customer getCustomer();
+
+        /**
+         * @return number of accepted orders of the customer.
+         */
+        long getOrderCount();
+
+        /**
+         * @return total value of all accepted orders of the customer.
+         */
+        long getTotalValue();
+
+        /**
+         * @return total VAT included in all accepted orders of the customer.
+         */
+        long getTotalVAT();
+    }
+}
@@ -0,0 +1,52 @@
+package system;
+
+import java.io.IOException;
+import java.util.Date;
+
+import datamodel.Order;
+
+/**
+ * Public interface of an order repository that partitions orders into
+ * buckets by creation date (one bucket per day). Buckets older than a
+ * retention period are moved into compressed archive files and re-read
+ * on demand by date range queries.
+ * <p>
+ * findById() and findAllById() also find archived orders (read from their
+ * archive file), findAll() and count() cover orders held in memory.
+ * </p>
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public interface OrderStore extends Repository<Order> {
+
+    /**
+     * Return orders created in a time range, including archived orders.
+     *
+     * @param from begin of the range (inclusive).
+     * @param to end of the range (exclusive).
+     * @return orders created in range, ordered by day.
+     * @throws IllegalArgumentException if from or to is null.
+     * @throws RuntimeException if an archive file cannot be read.
+     */
+    Iterable<Order> findByCreationDate( Date from, Date to );
+
+    /**
+     * Move all day buckets that end before a date into archive files.
+     *
+     * @param before buckets of days before this date are archived.
+     * @return number of orders archived.
+     * @throws IOException if an archive file cannot be written.
+     */
+    long archive( Date before ) throws IOException;
+
+    /**
+     * Number of archived orders.
+     *
+     * @return number of orders in archive files.
+     */
+    long countArchived();
+}
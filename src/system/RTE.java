@@ -61,8 +61,44 @@ public interface RTE {
 		public static final String KEY_DATASOURCE_CUSTOMER = "rte.datasource.customers";
 		public static final String KEY_DATASOURCE_ARTICLE = "rte.datasource.articles";
 		public static final String KEY_DATASOURCE_ORDER = "rte.datasource.orders";
+		// stock feed (CSV or JSON) applied after articles were loaded
+		public static final String KEY_DATASOURCE_STOCK = "rte.datasource.stock";
+		// articles compiled into a frozen catalog for lookups after loadData(): true (default), false
+		public static final String KEY_CATALOG_FROZEN = "rte.catalog.frozen";
 		//
 		public static final String JSON_DATASOURCE = "JSON";
+		//
+		// capacity (number of entities) of read-through caches in front of repositories, no cache if not set
+		public static final String KEY_CACHE_CUSTOMER = "rte.cache.customers";
+		public static final String KEY_CACHE_ARTICLE = "rte.cache.articles";
+		public static final String KEY_CACHE_ORDER = "rte.cache.orders";
+		//
+		// directory of order archive files and days orders are kept in memory (no retention if not set)
+		public static final String KEY_ORDER_ARCHIVE = "rte.orders.archive";
+		public static final String KEY_ORDER_RETENTION_DAYS = "rte.orders.retention.days";
+		public static final String DEFAULT_ORDER_ARCHIVE = "archive/orders";
+		//
+		// node id (0..1023) encoded in generated order ids, distinct for each process creating orders
+		public static final String KEY_ORDER_NODE = "rte.orders.node";
+		//
+		// order of backorders waiting for stock: FIFO (default), MAX_ORDERS, MAX_VALUE
+		public static final String KEY_BACKORDER_POLICY = "rte.backorders.policy";
+		//
+		// asynchronous order intake: capacity of stage queues, workers per stage, micro-batch size
+		public static final String KEY_INTAKE_CAPACITY = "rte.intake.capacity";
+		public static final String KEY_INTAKE_VALIDATORS = "rte.intake.validators";
+		public static final String KEY_INTAKE_FILLERS = "rte.intake.fillers";
+		public static final String KEY_INTAKE_WRITERS = "rte.intake.writers";
+		public static final String KEY_INTAKE_BATCH = "rte.intake.batch";
+		//
+		// duplicate order ids are detected over one to two windows, size of the filter of recent ids
+		public static final String KEY_DEDUPE_IDS = "rte.dedupe.ids";
+		public static final String KEY_DEDUPE_WINDOW_MINUTES = "rte.dedupe.window.minutes";
+		//
+		// embedded HTTP endpoint for orders and stock queries, started after launch if a port is set
+		public static final String KEY_HTTP_PORT = "rte.http.port";
+		public static final String KEY_HTTP_BACKLOG = "rte.http.backlog";
+		public static final String KEY_HTTP_THREADS = "rte.http.threads";
 
 		/**
 		 * Store configuration Property as String key-value pair.
@@ -152,20 +188,35 @@ public interface RTE {
 
 
 		/**
-		 * Return singleton instance of OrderRepository.
+		 * Return singleton instance of OrderRepository that partitions orders by creation date.
 		 * 
 		 * @return singleton instance of OrderRepository
 		 */
-		Repository<Order> getOrderRepository();
+		OrderStore getOrderRepository();
 
 
 		/**
-		 * Return singleton instance of OrderBuilder.
+		 * Return OrderBuilder of this Runtime instance, bound to its repositories.
 		 *
-		 * @return singleton instance of OrderBuilder
+		 * @return OrderBuilder instance of this Runtime
 		 */
 		OrderBuilder getOrderBuilder();
 
+		/**
+		 * Return OrderIdGenerator of this Runtime instance that assigns ids
+		 * to orders accepted without id.
+		 *
+		 * @return OrderIdGenerator instance of this Runtime
+		 */
+		OrderIdGenerator getOrderIdGenerator();
+
+		/**
+		 * Return singleton instance of OrderStatistics.
+		 *
+		 * @return singleton instance of OrderStatistics.
+		 */
+		OrderStatistics getOrderStatistics();
+
 		/**
 		 * Return singleton instance of InventoryManager.
 		 *
@@ -1,11 +1,14 @@
 package system;
 
+import java.util.Collection;
 import java.util.Optional;
 
 public interface Repository<T> {
     Optional<T> findById( long id );
     Optional<T> findById( String id );
+    Iterable<T> findAllById( Collection<String> ids );
     Iterable<T> findAll();
     long count();
     T save(T entity);
+    Iterable<T> saveAll( Iterable<T> entities );
 }
@@ -0,0 +1,336 @@
+package system.impl;
+
+import datamodel.Article;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over tokenized article descriptions. Articles are
+ * numbered with dense int ordinals in the order they are indexed. Each term
+ * maps to a posting list of ordinals that is stored as delta-encoded varints
+ * in a byte array (1 byte per posting for dense terms).
+ * <p>
+ * Queries:
+ * <pre>
+ *  "powershot 18-55mm"      - articles containing both terms (AND)
+ *  "canon OR nikon"         - articles containing either term (OR)
+ *  "power*"                 - articles containing a term starting with "power"
+ *  "canon 18* OR nikon"     - (canon AND 18*) OR nikon
+ * </pre>
+ * Terms are matched case-insensitively.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class ArticleIndex {
+
+    /**
+     * article ordinals by article id and articles by ordinal.
+     */
+    private final Map<String,Integer> ordinals = new HashMap<String,Integer>();
+    private final List<Article> articles = new ArrayList<Article>();
+
+    /**
+     * indexed terms by ordinal, used to update postings when an article is re-indexed.
+     */
+    private final List<String[]> termsByOrdinal = new ArrayList<String[]>();
+
+    /**
+     * sorted term dictionary (sorted for prefix search).
+     */
+    private final TreeMap<String,Posting> postings = new TreeMap<String,Posting>();
+
+    /**
+     * many concurrent searches, rare updates.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    /**
+     * Add article to the index or re-index an article that was indexed before.
+     *
+     * @param article article to index.
+     */
+    void index( Article article ) {
+        String[] terms = tokenize( article.getDescription() ).toArray( new String[0] );
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get( article.getId() );
+            if( ordinal == null ) {
+                ordinal = articles.size();
+                ordinals.put( article.getId(), ordinal );
+                articles.add( article );
+                termsByOrdinal.add( new String[0] );
+            }
+            articles.set( ordinal, article );
+            //
+            Set<String> added = new LinkedHashSet<String>( Arrays.asList( terms ) );
+            for( String old : termsByOrdinal.get( ordinal ) ) {
+                if( ! added.remove( old ) ) {
+                    Posting p = postings.get( old );
+                    p.remove( ordinal );
+                    if( p.count == 0 ) {
+                        postings.remove( old );
+                    }
+                }
+            }
+            for( String term : added ) {
+                postings.computeIfAbsent( term, t -> new Posting() ).add( ordinal );
+            }
+            termsByOrdinal.set( ordinal, terms );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Return articles matching a query in the order they were indexed.
+     *
+     * @param query terms separated by blanks (AND), groups separated by "OR",
+     * terms ending with '*' match as prefix.
+     * @return matching articles.
+     */
+    List<Article> search( String query ) {
+        List<Article> result = new ArrayList<Article>();
+        if( query == null )
+            return result;
+        lock.readLock().lock();
+        try {
+            int[] hits = new int[0];
+            List<String> group = new ArrayList<String>();
+            for( String term : ( query.trim() + " OR" ).split( "\\s+" ) ) {
+                if( term.equals( "OR" ) ) {
+                    hits = union( hits, matchAll( group ) );
+                    group.clear();
+                } else if( term.length() > 0 ) {
+                    group.add( term );
+                }
+            }
+            for( int ordinal : hits ) {
+                result.add( articles.get( ordinal ) );
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+
+    /**
+     * Number of distinct indexed terms.
+     *
+     * @return size of the term dictionary.
+     */
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /*
+     * Intersect posting lists of all terms of an AND-group, starting with
+     * the shortest list.
+     */
+    private int[] matchAll( List<String> terms ) {
+        if( terms.isEmpty() )
+            return new int[0];
+        List<int[]> lists = new ArrayList<int[]>( terms.size() );
+        for( String term : terms ) {
+            int[] list = match( term );
+            if( list.length == 0 )
+                return list;
+            lists.add( list );
+        }
+        lists.sort( ( l1, l2 ) -> Integer.compare( l1.length, l2.length ) );
+        int[] hits = lists.get( 0 );
+        for( int i = 1; i < lists.size() && hits.length > 0; i++ ) {
+            hits = intersect( hits, lists.get( i ) );
+        }
+        return hits;
+    }
+
+
+    /*
+     * Return posting list of a single query term, prefix terms return the
+     * union of all postings of matching terms.
+     */
+    private int[] match( String term ) {
+        boolean prefix = term.endsWith( "*" );
+        String t = normalize( prefix? term.substring( 0, term.length() - 1 ) : term );
+        if( t.length() == 0 )
+            return new int[0];
+        if( ! prefix ) {
+            Posting p = postings.get( t );
+            return p != null? p.decode() : new int[0];
+        }
+        int[] hits = new int[0];
+        for( Posting p : postings.subMap( t, true, t + Character.MAX_VALUE, false ).values() ) {
+            hits = union( hits, p.decode() );
+        }
+        return hits;
+    }
+
+
+    /**
+     * Split description into distinct lower-case terms. Terms keep inner '-' and
+     * '.' characters (e.g. "18-55mm", "2.8"), hyphenated terms are also indexed
+     * with their parts ("18", "55mm").
+     *
+     * @param description text to tokenize.
+     * @return distinct terms in order of appearance.
+     */
+    static Set<String> tokenize( String description ) {
+        Set<String> terms = new LinkedHashSet<String>();
+        if( description == null )
+            return terms;
+        for( String token : description.split( "[^\\p{L}\\p{N}\\-.]+" ) ) {
+            String t = normalize( token );
+            if( t.length() > 0 ) {
+                terms.add( t );
+                if( t.indexOf( '-' ) >= 0 ) {
+                    for( String part : t.split( "-" ) ) {
+                        String p = normalize( part );
+                        if( p.length() > 0 )
+                            terms.add( p );
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+
+    /*
+     * lower-case term without leading and trailing '-' and '.'.
+     */
+    private static String normalize( String token ) {
+        int from = 0, to = token.length();
+        while( from < to && ( token.charAt( from ) == '-' || token.charAt( from ) == '.' ) )
+            from++;
+        while( to > from && ( token.charAt( to - 1 ) == '-' || token.charAt( to - 1 ) == '.' ) )
+            to--;
+        return token.substring( from, to ).toLowerCase( Locale.ROOT );
+    }
+
+
+    private static int[] intersect( int[] a, int[] b ) {
+        int[] r = new int[Math.min( a.length, b.length )];
+        int i = 0, j = 0, n = 0;
+        while( i < a.length && j < b.length ) {
+            if( a[i] < b[j] ) i++;
+            else if( a[i] > b[j] ) j++;
+            else { r[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf( r, n );
+    }
+
+
+    private static int[] union( int[] a, int[] b ) {
+        if( a.length == 0 ) return b;
+        if( b.length == 0 ) return a;
+        int[] r = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while( i < a.length || j < b.length ) {
+            if( j == b.length || ( i < a.length && a[i] < b[j] ) ) r[n++] = a[i++];
+            else if( i == a.length || b[j] < a[i] ) r[n++] = b[j++];
+            else { r[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf( r, n );
+    }
+
+
+    /**
+     * Posting list of ascending ordinals, stored as varint-encoded gaps.
+     */
+    private static class Posting {
+        private byte[] data = new byte[4];
+        private int size = 0;	// bytes used
+        private int count = 0;	// number of ordinals
+        private int last = -1;	// highest ordinal
+
+        void add( int ordinal ) {
+            if( ordinal > last ) {
+                append( ordinal - last );	// common case: new article
+                last = ordinal;
+                count++;
+            } else {
+                int[] list = decode();
+                int pos = Arrays.binarySearch( list, ordinal );
+                if( pos < 0 ) {
+                    pos = -pos - 1;
+                    int[] r = new int[list.length + 1];
+                    System.arraycopy( list, 0, r, 0, pos );
+                    r[pos] = ordinal;
+                    System.arraycopy( list, pos, r, pos + 1, list.length - pos );
+                    encode( r );
+                }
+            }
+        }
+
+        void remove( int ordinal ) {
+            int[] list = decode();
+            int pos = Arrays.binarySearch( list, ordinal );
+            if( pos >= 0 ) {
+                int[] r = new int[list.length - 1];
+                System.arraycopy( list, 0, r, 0, pos );
+                System.arraycopy( list, pos + 1, r, pos, list.length - pos - 1 );
+                encode( r );
+            }
+        }
+
+        int[] decode() {
+            int[] list = new int[count];
+            int value = -1;
+            for( int i = 0, n = 0; n < count; n++ ) {
+                int gap = 0;
+                for( int shift = 0; ; shift += 7 ) {
+                    byte b = data[i++];
+                    gap |= ( b & 0x7f ) << shift;
+                    if( b >= 0 )
+                        break;
+                }
+                value += gap;
+                list[n] = value;
+            }
+            return list;
+        }
+
+        private void encode( int[] list ) {
+            size = 0; count = 0; last = -1;
+            for( int ordinal : list ) {
+                append( ordinal - last );
+                last = ordinal;
+                count++;
+            }
+        }
+
+        private void append( int gap ) {
+            if( size + 5 > data.length ) {
+                data = Arrays.copyOf( data, Math.max( data.length * 2, size + 5 ) );
+            }
+            while( ( gap & ~0x7f ) != 0 ) {
+                data[size++] = (byte)( ( gap & 0x7f ) | 0x80 );
+                gap >>>= 7;
+            }
+            data[size++] = (byte)gap;
+        }
+    }
+}
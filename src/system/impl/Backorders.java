@@ -0,0 +1,121 @@
+package system.impl;
+
+import datamodel.Order;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Orders waiting for stock, parked in one wait queue per article ordinal. An
+ * order waits in the queue of one article it is short of; when stock of that
+ * article is replenished, only its queue is drained and re-checked, orders
+ * still short of another article move to the queue of that article. Queues
+ * are ordered by a priority key and by arrival (FIFO for equal keys).
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class Backorders {
+
+    /**
+     * wait queues by article ordinal.
+     */
+    private final Map<Integer,PriorityQueue<Waiting>> queues = new HashMap<Integer,PriorityQueue<Waiting>>();
+
+    /**
+     * arrival sequence and number of waiting orders, guarded by this.
+     */
+    private long sequence = 0;
+    private int size = 0;
+
+
+    /**
+     * Order waiting for stock with its priority key, arrival and callback.
+     */
+    static class Waiting implements Comparable<Waiting> {
+        final Order order;
+        final long key;
+        final long seq;
+        final Consumer<Order> filled;
+
+        private Waiting( Order order, long key, long seq, Consumer<Order> filled ) {
+            this.order = order;
+            this.key = key;
+            this.seq = seq;
+            this.filled = filled;
+        }
+
+        @Override
+        public int compareTo( Waiting other ) {
+            int c = Long.compare( key, other.key );
+            return c != 0? c : Long.compare( seq, other.seq );
+        }
+    }
+
+
+    /**
+     * Park new order in the queue of an article.
+     *
+     * @param ordinal ordinal of an article the order is short of.
+     * @param order waiting order.
+     * @param key priority key, lower keys are re-checked first.
+     * @param filled callback when the order was filled.
+     */
+    synchronized void park( int ordinal, Order order, long key, Consumer<Order> filled ) {
+        park( ordinal, new Waiting( order, key, sequence++, filled ) );
+    }
+
+
+    /**
+     * Park an order again (keeping its place) in the queue of an article.
+     *
+     * @param ordinal ordinal of an article the order is short of.
+     * @param waiting waiting order.
+     */
+    synchronized void park( int ordinal, Waiting waiting ) {
+        queues.computeIfAbsent( ordinal, o -> new PriorityQueue<Waiting>() ).add( waiting );
+        size++;
+    }
+
+
+    /**
+     * Remove and return all orders waiting on an article in queue order.
+     *
+     * @param ordinal article ordinal.
+     * @return waiting orders, empty if none.
+     */
+    synchronized List<Waiting> drain( int ordinal ) {
+        PriorityQueue<Waiting> queue = queues.remove( ordinal );
+        if( queue == null )
+            return List.of();
+        List<Waiting> drained = new ArrayList<Waiting>( queue.size() );
+        while( ! queue.isEmpty() ) {
+            drained.add( queue.poll() );
+        }
+        size -= drained.size();
+        return drained;
+    }
+
+
+    /**
+     * True if orders wait on an article.
+     *
+     * @param ordinal article ordinal.
+     * @return true if the queue of the article is not empty.
+     */
+    synchronized boolean isWaiting( int ordinal ) {
+        return queues.containsKey( ordinal );
+    }
+
+
+    synchronized int size() {
+        return size;
+    }
+}
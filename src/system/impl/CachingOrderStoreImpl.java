@@ -0,0 +1,57 @@
+package system.impl;
+
+import datamodel.Order;
+import system.OrderStore;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Read-through cache in front of an OrderStore. Lookups by id go through the
+ * segmented LRU of CachingRepositoryImpl, date range queries and archiving
+ * are passed on to the store.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class CachingOrderStoreImpl extends CachingRepositoryImpl<Order> implements OrderStore {
+
+    /**
+     * dependency on the backend order store.
+     */
+    private final OrderStore store;
+
+
+    /**
+     * Constructor.
+     *
+     * @param store order store that holds the orders.
+     * @param capacity maximum number of orders kept in the cache {@code > 0}.
+     * @throws IllegalArgumentException if store is null or capacity is {@code <= 0}.
+     */
+    CachingOrderStoreImpl( OrderStore store, int capacity ) {
+        super( store, capacity );
+        this.store = store;
+    }
+
+
+    @Override
+    public Iterable<Order> findByCreationDate( Date from, Date to ) {
+        return store.findByCreationDate( from, to );
+    }
+
+
+    @Override
+    public long archive( Date before ) throws IOException {
+        return store.archive( before );
+    }
+
+
+    @Override
+    public long countArchived() {
+        return store.countArchived();
+    }
+}
@@ -0,0 +1,305 @@
+package system.impl;
+
+import system.CachedRepository;
+import system.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of a backend Repository. Cached entities are kept
+ * in a segmented LRU (SLRU): entities enter a small probation segment on a miss
+ * and are promoted to the protected segment on their second hit. Entities demoted
+ * from the protected segment re-enter probation, entities evicted from probation
+ * leave the cache. One-time lookups (scans) therefore cannot flush hot entities.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class CachingRepositoryImpl<T> implements CachedRepository<T> {
+
+    /**
+     * share of the capacity reserved for the protected segment.
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    /**
+     * dependency on the (slower) backend repository.
+     */
+    private final Repository<T> backend;
+
+    /**
+     * capacities of the probation and protected segments.
+     */
+    private final int probationCapacity;
+    private final int protectedCapacity;
+
+    /**
+     * cache segments in access order (eldest entry first), guarded by this.
+     */
+    private final LinkedHashMap<String,T> probation = new LinkedHashMap<String,T>( 16, 0.75f, true );
+    private final LinkedHashMap<String,T> protectedSegment = new LinkedHashMap<String,T>( 16, 0.75f, true );
+
+    /**
+     * hit, miss and eviction counters, guarded by this.
+     */
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * incremented with every invalidation, prevents loads that raced with a save
+     * from caching an outdated entity, guarded by this.
+     */
+    private long invalidations = 0;
+
+
+    /**
+     * Constructor.
+     *
+     * @param backend repository that holds the entities.
+     * @param capacity maximum number of entities kept in the cache {@code > 0}.
+     * @throws IllegalArgumentException if backend is null or capacity is {@code <= 0}.
+     */
+    CachingRepositoryImpl( Repository<T> backend, int capacity ) {
+        if( backend == null )
+            throw new IllegalArgumentException( "illegal backend: null" );
+        if( capacity <= 0 )
+            throw new IllegalArgumentException( "illegal capacity: " + capacity );
+        this.backend = backend;
+        this.protectedCapacity = (int)( capacity * PROTECTED_RATIO );
+        this.probationCapacity = Math.max( capacity - protectedCapacity, 1 );
+    }
+
+
+    @Override
+    public Optional<T> findById( long id ) {
+        return findById( String.valueOf( id ) );
+    }
+
+
+    /**
+     * Return entity from the cache or load it from the backend on a miss.
+     *
+     * @param id entity identifier.
+     * @return entity or empty if the backend does not hold an entity with id.
+     */
+    @Override
+    public Optional<T> findById( String id ) {
+        if( id == null )
+            return Optional.empty();
+        //
+        long generation;
+        synchronized( this ) {
+            T entity = lookup( id );
+            if( entity != null ) {
+                hits++;
+                return Optional.of( entity );
+            }
+            misses++;
+            generation = invalidations;
+        }
+        // load outside the lock to not serialize lookups on a slow backend
+        Optional<T> loaded = backend.findById( id );
+        loaded.ifPresent( entity -> {
+            synchronized( this ) {
+                if( generation == invalidations && ! protectedSegment.containsKey( id ) ) {
+                    admit( id, entity );
+                }
+            }
+        });
+        return loaded;
+    }
+
+
+    /**
+     * Return cached entities and load all missing entities from the backend
+     * in a single batch.
+     *
+     * @param ids entity identifiers.
+     * @return entities found in the order of ids, missing entities are skipped.
+     */
+    @Override
+    public Iterable<T> findAllById( Collection<String> ids ) {
+        Map<String,T> found = new LinkedHashMap<String,T>();
+        List<String> missing = new ArrayList<String>();
+        long generation;
+        synchronized( this ) {
+            for( String id : ids ) {
+                T entity = lookup( id );
+                if( entity != null ) {
+                    hits++;
+                    found.put( id, entity );
+                } else {
+                    misses++;
+                    missing.add( id );
+                }
+            }
+            generation = invalidations;
+        }
+        if( missing.size() > 0 ) {
+            Map<String,T> loaded = new LinkedHashMap<String,T>();
+            for( T entity : backend.findAllById( missing ) ) {
+                loaded.put( RepositoryImpl.idOf( entity ), entity );
+            }
+            synchronized( this ) {
+                loaded.forEach( ( id, entity ) -> {
+                    if( generation == invalidations && ! protectedSegment.containsKey( id ) ) {
+                        admit( id, entity );
+                    }
+                });
+            }
+            found.putAll( loaded );
+        }
+        List<T> result = new ArrayList<T>( found.size() );
+        for( String id : ids ) {
+            T entity = found.get( id );
+            if( entity != null )
+                result.add( entity );
+        }
+        return result;
+    }
+
+
+    @Override
+    public Iterable<T> findAll() {
+        return backend.findAll();
+    }
+
+
+    @Override
+    public long count() {
+        return backend.count();
+    }
+
+
+    /**
+     * Save entity to the backend and invalidate its cached copy.
+     *
+     * @param entity entity to save.
+     * @return saved entity or null if the backend rejected the entity.
+     */
+    @Override
+    public T save( T entity ) {
+        T saved = backend.save( entity );
+        String id = RepositoryImpl.idOf( entity );
+        if( id != null ) {
+            invalidate( id );
+        }
+        return saved;
+    }
+
+
+    /**
+     * Save entities to the backend in one batch and invalidate their cached copies.
+     *
+     * @param entities entities to save.
+     * @return entities accepted by the backend.
+     */
+    @Override
+    public Iterable<T> saveAll( Iterable<T> entities ) {
+        List<T> batch = new ArrayList<T>();	// iterated once, entities may be a one-shot Iterable
+        entities.forEach( batch::add );
+        Iterable<T> saved = backend.saveAll( batch );
+        synchronized( this ) {
+            for( T entity : batch ) {
+                String id = RepositoryImpl.idOf( entity );
+                if( id != null ) {
+                    invalidate( id );
+                }
+            }
+        }
+        return saved;
+    }
+
+
+    @Override
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+
+    @Override
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+
+    @Override
+    public synchronized void invalidate( String id ) {
+        invalidations++;
+        probation.remove( id );
+        protectedSegment.remove( id );
+    }
+
+
+    @Override
+    public synchronized void invalidateAll() {
+        invalidations++;
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+
+    /*
+     * Return cached entity or null, promotes entities hit in probation.
+     */
+    private T lookup( String id ) {
+        T entity = protectedSegment.get( id );
+        if( entity == null ) {
+            entity = probation.remove( id );
+            if( entity != null ) {
+                promote( id, entity );	// second hit
+            }
+        }
+        return entity;
+    }
+
+
+    /*
+     * Insert entity as most recently used into probation, evict the eldest
+     * probation entry when the segment exceeds its capacity.
+     */
+    private void admit( String id, T entity ) {
+        probation.put( id, entity );
+        if( probation.size() > probationCapacity ) {
+            Iterator<String> eldest = probation.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+
+    /*
+     * Move entity into the protected segment, demote the eldest protected
+     * entry back into probation when the segment exceeds its capacity.
+     */
+    private void promote( String id, T entity ) {
+        if( protectedCapacity == 0 ) {
+            admit( id, entity );
+            return;
+        }
+        protectedSegment.put( id, entity );
+        if( protectedSegment.size() > protectedCapacity ) {
+            Iterator<Map.Entry<String,T>> eldest = protectedSegment.entrySet().iterator();
+            Map.Entry<String,T> demoted = eldest.next();
+            eldest.remove();
+            admit( demoted.getKey(), demoted.getValue() );
+        }
+    }
+}
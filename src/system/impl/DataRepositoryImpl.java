@@ -3,18 +3,33 @@ package system.impl;
 import datamodel.Article;
 import datamodel.Customer;
 import datamodel.Order;
+import system.OrderStore;
+import system.RTE.Configuration;
 import system.Repository;
 
+import java.util.function.Consumer;
+
+import static system.RTE.Configuration.DEFAULT_ORDER_ARCHIVE;
+import static system.RTE.Configuration.KEY_CACHE_ARTICLE;
+import static system.RTE.Configuration.KEY_CACHE_CUSTOMER;
+import static system.RTE.Configuration.KEY_CACHE_ORDER;
+import static system.RTE.Configuration.KEY_ORDER_ARCHIVE;
+import static system.RTE.Configuration.KEY_ORDER_RETENTION_DAYS;
+
 class DataRepositoryImpl {
 
     private Repository<Customer> customerRepository;
     private Repository<Article> articleRepository;
-    private Repository<Order> orderRepository;
+    private OrderStore orderRepository;
+    private OrderStoreImpl orderStore;
 
-    public DataRepositoryImpl() {
-        customerRepository = new RepositoryImpl<Customer>();
-        articleRepository = new RepositoryImpl<Article>();
-        orderRepository = new RepositoryImpl<Order>();
+    public DataRepositoryImpl( Configuration config ) {
+        customerRepository = cached( new RepositoryImpl<Customer>(), config, KEY_CACHE_CUSTOMER );
+        articleRepository = cached( new RepositoryImpl<Article>(), config, KEY_CACHE_ARTICLE );
+        orderStore = new OrderStoreImpl( customerRepository, articleRepository,
+                config.get( KEY_ORDER_ARCHIVE ).orElse( DEFAULT_ORDER_ARCHIVE ),
+                config.get( KEY_ORDER_RETENTION_DAYS ).map( Integer::parseInt ).orElse( 0 ) );
+        orderRepository = cached( orderStore, config, KEY_CACHE_ORDER );
     }
 
     public Repository<Customer> getCustomerRepository() {
@@ -25,8 +40,36 @@ class DataRepositoryImpl {
         return articleRepository;
     };
 
-    public Repository<Order> getOrderRepository() {
+    public OrderStore getOrderRepository() {
         return orderRepository;
     };
 
+    /*
+     * Register listener of orders saved with an id that was not saved before.
+     */
+    void onOrderAdded( Consumer<Order> listener ) {
+        orderStore.onAdded( listener );
+    }
+
+    /*
+     * Wait for a running archive run of the order store.
+     */
+    void shutdown() {
+        orderStore.shutdown();
+    }
+
+    /*
+     * Put a read-through cache in front of a repository if a cache
+     * capacity is configured for key.
+     */
+    private <T> Repository<T> cached( Repository<T> repository, Configuration config, String key ) {
+        int capacity = config.get( key ).map( Integer::parseInt ).orElse( 0 );
+        return capacity > 0? new CachingRepositoryImpl<T>( repository, capacity ) : repository;
+    }
+
+    private OrderStore cached( OrderStore store, Configuration config, String key ) {
+        int capacity = config.get( key ).map( Integer::parseInt ).orElse( 0 );
+        return capacity > 0? new CachingOrderStoreImpl( store, capacity ) : store;
+    }
+
 }
@@ -34,6 +34,24 @@ interface DataSource {
 	long importOrderJSON(String jsonFileName, Repository<Order> collector, Integer... limit );
 
 
+	/**
+	 * Import a stock feed (snapshot or delta of units in stock) from a CSV or JSON
+	 * file (by file name extension) and apply it to the inventory in one atomic step.
+	 * <p>
+	 * CSV feeds start with a header line {@code #snapshot} or {@code #delta},
+	 * optionally followed by a warehouse name, then one {@code id,units} line per article.
+	 * JSON feeds are objects {@code { "mode": "snapshot"|"delta", "warehouse": "...",
+	 * "stock": [ { "id": "...", "units": n }, ... ] }}.
+	 * 
+	 * @param fileName name of CSV or JSON file to read
+	 * @param inventoryManager inventory the feed is applied to
+	 * @return number of articles whose units in stock changed
+	 * @throws IllegalArgumentException if the feed is malformed or rejected by the inventory, no units are changed then
+	 */
+
+	long importStockFeed( String fileName, InventoryManager inventoryManager );
+
+
 //	<T, ID> void importJSON( String jsonFileName, DataRepository.Repository<T, ID> collector, Integer... limit );
 //	dp.<Customer, Long>importJSON( "data/customers_10.json", crep );
 //	dp.<Article, String>importJSON( "data/articles_9.json", arep );
@@ -1,13 +1,26 @@
 package system.impl;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.StreamSupport;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -28,32 +41,36 @@ class DataSourceImpl implements DataSource {
 
 	@Override
 	public long importCustomerJSON(String jsonFileName, Repository<Customer> collector, Integer... limit ) {
+		List<Customer> customers = new ArrayList<Customer>();
 		long count = read( jsonFileName,
 				jsonNode -> createCustomer( jsonNode ),
-				e -> collector.save( e ),
+				e -> customers.add( e ),
 				limit
 		);
+		collector.saveAll( customers );		// one batch write for all imported customers
 		return count;
 	}
 
 	@Override
 	public long importArticleJSON( String jsonFileName, InventoryManager inventoryManager, Integer... limit ) {
+		List<Article> articles = new ArrayList<Article>();
+		Map<String,Integer> unitsInStock = new HashMap<String,Integer>();
 		long count = read( jsonFileName,
 				jsonNode -> {
 					Optional<Article> aopt = createArticle( jsonNode );
 					aopt.ifPresent( a -> {
-						inventoryManager.save( a );	// add article to inventoryManager 
 						JsonNode jn = jsonNode.get( "unitsInStock" );	// try to get value from JSON
 						if( jn != null ) {
-							inventoryManager.update( a.getId(), jn.asInt() );
+							unitsInStock.put( a.getId(), jn.asInt() );
 						}
 					});
 					return aopt;
 				},
-//				e -> collector.save( e ),
-				e -> {},	// article already collected with: inventoryManager.create( a )
+				e -> articles.add( e ),
 				limit
 		);
+		inventoryManager.saveAll( articles );	// add all articles to inventoryManager in one batch
+		inventoryManager.updateAll( unitsInStock, false );	// set units in stock of all articles in one step
 		return count;
 	}
 
@@ -63,6 +80,137 @@ class DataSourceImpl implements DataSource {
 		return 0;
 	}
 
+	@Override
+	public long importStockFeed( String fileName, InventoryManager inventoryManager ) {
+		StockFeed feed = new StockFeed();
+		try (
+				InputStream fis = new FileInputStream( fileName );
+			) {
+				if( fileName.toLowerCase().endsWith( ".json" ) ) {
+					readStockFeedJSON( fis, feed );
+				} else {
+					readStockFeedCSV( fis, feed );
+				}
+
+			} catch( JsonProcessingException e ) {
+				throw new IllegalArgumentException( "malformed stock feed: " + e.getOriginalMessage(), e );
+
+			} catch( IOException e ) {
+				e.printStackTrace();
+				return 0;
+			}
+		//
+		return feed.warehouse != null?
+			inventoryManager.updateAll( feed.warehouse, feed.units, feed.delta ) :
+			inventoryManager.updateAll( feed.units, feed.delta );
+	}
+
+
+	/**
+	 * Stock feed read from a file: mode, warehouse (null: default) and units by article id.
+	 */
+	private static class StockFeed {
+		boolean delta = false;
+		String warehouse = null;
+		final Map<String,Integer> units = new LinkedHashMap<String,Integer>();
+
+		void put( String id, int units, String where ) {
+			if( id == null || id.length() == 0 || this.units.put( id, units ) != null )
+				throw new IllegalArgumentException( "missing or duplicate id in stock feed at " + where );
+		}
+	}
+
+
+	/**
+	 * Read CSV stock feed: header line "#snapshot" or "#delta" [warehouse], lines "id,units".
+	 * Blank lines are skipped.
+	 * 
+	 * @param in input stream of the feed
+	 * @param feed collects mode, warehouse and units
+	 * @throws IOException if the stream cannot be read
+	 * @throws IllegalArgumentException if the header or a line is malformed
+	 */
+
+	private void readStockFeedCSV( InputStream in, StockFeed feed ) throws IOException {
+		BufferedReader reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
+		String header = reader.readLine();
+		String[] h = header != null? header.trim().split( "\\s+" ) : new String[] { "" };
+		if( ! h[0].equalsIgnoreCase( "#snapshot" ) && ! h[0].equalsIgnoreCase( "#delta" ) )
+			throw new IllegalArgumentException( "stock feed header must be #snapshot or #delta: " + header );
+		feed.delta = h[0].equalsIgnoreCase( "#delta" );
+		feed.warehouse = h.length > 1? h[1] : null;
+		//
+		int lineNumber = 1;
+		for( String line = reader.readLine(); line != null; line = reader.readLine() ) {
+			lineNumber++;
+			if( line.isBlank() )
+				continue;
+			int comma = line.indexOf( ',' );
+			try {
+				if( comma < 0 )
+					throw new NumberFormatException();
+				feed.put( line.substring( 0, comma ).trim(),
+						Integer.parseInt( line.substring( comma + 1 ).trim() ), "line " + lineNumber );
+
+			} catch( NumberFormatException nex ) {
+				throw new IllegalArgumentException( "malformed stock feed line " + lineNumber + ": " + line );
+			}
+		}
+	}
+
+
+	/**
+	 * Read JSON stock feed with a streaming parser, articles are not materialized
+	 * as JSON trees.
+	 * 
+	 * @param in input stream of the feed
+	 * @param feed collects mode, warehouse and units
+	 * @throws IOException if the stream cannot be read or is no JSON
+	 * @throws IllegalArgumentException if the feed is malformed
+	 */
+
+	private void readStockFeedJSON( InputStream in, StockFeed feed ) throws IOException {
+		try( JsonParser parser = new JsonFactory().createParser( in ) ) {
+			if( parser.nextToken() != JsonToken.START_OBJECT )
+				throw new IllegalArgumentException( "stock feed is no JSON object" );
+			//
+			while( parser.nextToken() == JsonToken.FIELD_NAME ) {
+				String field = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if( field.equals( "mode" ) ) {
+					String mode = parser.getValueAsString( "" );
+					if( ! mode.equalsIgnoreCase( "snapshot" ) && ! mode.equalsIgnoreCase( "delta" ) )
+						throw new IllegalArgumentException( "stock feed mode must be snapshot or delta: " + mode );
+					feed.delta = mode.equalsIgnoreCase( "delta" );
+				} else if( field.equals( "warehouse" ) ) {
+					feed.warehouse = parser.getValueAsString();
+				} else if( field.equals( "stock" ) && token == JsonToken.START_ARRAY ) {
+					while( parser.nextToken() == JsonToken.START_OBJECT ) {
+						String id = null;
+						Integer units = null;
+						while( parser.nextToken() == JsonToken.FIELD_NAME ) {
+							String name = parser.getCurrentName();
+							JsonToken value = parser.nextToken();
+							if( name.equals( "id" ) ) {
+								id = parser.getValueAsString();
+							} else if( name.equals( "units" ) && value == JsonToken.VALUE_NUMBER_INT ) {
+								units = parser.getIntValue();
+							} else {
+								parser.skipChildren();
+							}
+						}
+						String where = "line " + parser.getCurrentLocation().getLineNr();
+						if( units == null )
+							throw new IllegalArgumentException( "missing units in stock feed at " + where );
+						feed.put( id, units, where );
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+	}
+
 
 	/**
 	 * Import objects from file with JSON Array [ {obj1}, {obj2}, ... ]
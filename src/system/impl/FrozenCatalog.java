@@ -0,0 +1,254 @@
+package system.impl;
+
+import datamodel.Article;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable catalog of articles with a minimal perfect hash over article ids:
+ * n ids map to n distinct slots, an id is looked up with one hash, one read of
+ * the displacement of its bucket and one comparison with the id stored for the
+ * slot (ids that are not in the catalog fail the comparison). A slot is one long
+ * (offset of the stored id, ordinal), ids are packed into one char array (length,
+ * characters), so a lookup reads three arrays and no objects, lookups do not
+ * lock or allocate.
+ * <p>
+ * The hash is built with hash-and-displace: ids are hashed into n/4 buckets,
+ * buckets are placed largest first, each with the first displacement that
+ * moves all of its ids to free slots. Buckets with a single id take the next
+ * free slot directly, stored as negative displacement {@code ~slot}. The
+ * displacements take one int per bucket (one byte per id).
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class FrozenCatalog {
+
+    /**
+     * average number of ids per bucket.
+     */
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * displacements tried per bucket before the hash is rebuilt with another seed.
+     */
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+
+    private final long seed;
+    private final int[] displacements;
+
+    /**
+     * offset of the id in keys (upper 32 bits) and ordinal (lower 32 bits) by
+     * slot, packed ids (length followed by characters) and articles by slot.
+     */
+    private final long[] entries;
+    private final char[] keys;
+    private final Article[] articles;
+
+
+    /**
+     * Compile catalog from articles by ordinal.
+     *
+     * @param articles articles, the index of an article is its ordinal.
+     * @throws IllegalArgumentException if an article or id is null, an id is
+     * longer than 65535 characters or ids are not distinct.
+     */
+    FrozenCatalog( List<Article> articles ) {
+        int n = articles.size();
+        long[] hashes = new long[n];
+        long chars = 0;
+        for( int i = 0; i < n; i++ ) {
+            if( articles.get( i ) == null || articles.get( i ).getId() == null )
+                throw new IllegalArgumentException( "illegal article: null" );
+            String id = articles.get( i ).getId();
+            if( id.length() > Character.MAX_VALUE )
+                throw new IllegalArgumentException( "article id too long: " + id.substring( 0, 32 ) + "..." );
+            hashes[i] = hash( id );
+            chars += 1 + id.length();
+        }
+        if( chars > Integer.MAX_VALUE - 8 )
+            throw new IllegalArgumentException( "article ids exceed catalog capacity" );
+        long[] sorted = hashes.clone();
+        Arrays.sort( sorted );
+        for( int i = 1; i < n; i++ ) {
+            if( sorted[i] == sorted[i - 1] )	// equal ids, a collision of 64-bit hashes of distinct ids is not expected
+                throw new IllegalArgumentException( "ids of articles are not distinct" );
+        }
+        int[] slotOf = null;
+        int[] disp = null;
+        long s = 0;
+        while( slotOf == null ) {	// rebuilt with a new seed only in the unlikely case a bucket cannot be placed
+            s += 0x9e3779b97f4a7c15L;
+            disp = new int[Math.max( 1, ( n + BUCKET_SIZE - 1 ) / BUCKET_SIZE )];
+            slotOf = place( hashes, s, disp );
+        }
+        this.seed = s;
+        this.displacements = disp;
+        this.entries = new long[n];
+        this.keys = new char[(int)chars];
+        this.articles = new Article[n];
+        int offset = 0;
+        for( int i = 0; i < n; i++ ) {
+            String id = articles.get( i ).getId();
+            entries[slotOf[i]] = (long)offset << 32 | i;
+            keys[offset] = (char)id.length();
+            id.getChars( 0, id.length(), keys, offset + 1 );
+            offset += 1 + id.length();
+            this.articles[slotOf[i]] = articles.get( i );
+        }
+    }
+
+
+    /**
+     * Return ordinal of an article.
+     *
+     * @param id article id, not null.
+     * @return ordinal or -1 if id is not in the catalog.
+     */
+    int ordinal( String id ) {
+        int slot = slot( id );
+        return slot >= 0? (int)entries[slot] : -1;
+    }
+
+
+    /**
+     * Return article.
+     *
+     * @param id article id, not null.
+     * @return article or null if id is not in the catalog.
+     */
+    Article article( String id ) {
+        int slot = slot( id );
+        return slot >= 0? articles[slot] : null;
+    }
+
+
+    /**
+     * Number of articles.
+     *
+     * @return number of articles in the catalog.
+     */
+    int size() {
+        return entries.length;
+    }
+
+
+    /*
+     * Slot of an id, -1 if the id is not in the catalog.
+     */
+    private int slot( String id ) {
+        if( entries.length == 0 )
+            return -1;
+        long h = hash( id ) ^ seed;
+        int d = displacements[reduce( h, displacements.length )];
+        int slot = d < 0? ~d : reduce( mix( h + d ), entries.length );
+        int offset = (int)( entries[slot] >>> 32 );
+        int length = id.length();
+        if( keys[offset] != length )
+            return -1;
+        for( int i = 0; i < length; i++ ) {
+            if( keys[offset + 1 + i] != id.charAt( i ) )
+                return -1;
+        }
+        return slot;
+    }
+
+
+    /*
+     * Assign slots to ids bucket by bucket, largest buckets first. Returns slots
+     * by ordinal, null if a bucket could not be placed.
+     */
+    private static int[] place( long[] hashes, long seed, int[] disp ) {
+        int n = hashes.length;
+        int buckets = disp.length;
+        List<List<Integer>> members = new ArrayList<List<Integer>>( buckets );
+        for( int b = 0; b < buckets; b++ ) {
+            members.add( new ArrayList<Integer>( BUCKET_SIZE ) );
+        }
+        for( int i = 0; i < n; i++ ) {
+            members.get( reduce( hashes[i] ^ seed, buckets ) ).add( i );
+        }
+        Integer[] order = new Integer[buckets];
+        for( int b = 0; b < buckets; b++ ) {
+            order[b] = b;
+        }
+        Arrays.sort( order, ( a, b ) -> members.get( b ).size() - members.get( a ).size() );
+        //
+        int[] slotOf = new int[n];
+        boolean[] taken = new boolean[n];
+        int[] slots = new int[BUCKET_SIZE];
+        int free = 0;
+        for( int b : order ) {
+            List<Integer> bucket = members.get( b );
+            if( bucket.size() == 1 ) {
+                while( taken[free] ) {
+                    free++;
+                }
+                taken[free] = true;
+                slotOf[bucket.get( 0 )] = free;
+                disp[b] = ~free;
+                continue;
+            }
+            if( bucket.isEmpty() )
+                continue;	// empty buckets follow, all ids are placed
+            if( slots.length < bucket.size() ) {
+                slots = new int[bucket.size()];
+            }
+            int d = 0;
+            for( boolean placed = false; ! placed; ) {
+                if( ++d > MAX_DISPLACEMENT )
+                    return null;
+                placed = true;
+                for( int k = 0; k < bucket.size() && placed; k++ ) {
+                    int slot = reduce( mix( ( hashes[bucket.get( k )] ^ seed ) + d ), n );
+                    placed = ! taken[slot];
+                    for( int j = 0; j < k && placed; j++ ) {
+                        placed = slots[j] != slot;
+                    }
+                    slots[k] = slot;
+                }
+            }
+            disp[b] = d;
+            for( int k = 0; k < bucket.size(); k++ ) {
+                taken[slots[k]] = true;
+                slotOf[bucket.get( k )] = slots[k];
+            }
+        }
+        return slotOf;
+    }
+
+
+    /*
+     * Map upper 32 bits of a hash to [0, n) by multiplication instead of division.
+     */
+    private static int reduce( long h, int n ) {
+        return (int)( ( ( h >>> 32 ) * n ) >>> 32 );
+    }
+
+
+    /*
+     * 64-bit hash of the characters of an id (FNV-1a, finalized with the MurmurHash3 mixer).
+     */
+    private static long hash( String id ) {
+        long h = 0xcbf29ce484222325L;
+        for( int i = 0; i < id.length(); i++ ) {
+            h = ( h ^ id.charAt( i ) ) * 0x100000001b3L;
+        }
+        return mix( h );
+    }
+
+
+    private static long mix( long h ) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,233 @@
+package system.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Units of a hot article split across striped sub-counters. Each sub-counter
+ * sits in its own cache line, threads take from the sub-counter selected by
+ * their affinity (thread id) with compareAndSet and steal from other
+ * sub-counters when it runs dry. Concurrent takes of different threads
+ * therefore do not write the same cache line while units are spread.
+ * <p>
+ * Takes are all-or-nothing and atomic: a take that its home sub-counter can
+ * serve is one compareAndSet, a take that steals from other sub-counters runs
+ * under the counter's lock, so at most one take holds units of several
+ * sub-counters at a time and concurrent takes wait for it instead of failing
+ * on units it holds. Units taken from several sub-counters are put back when
+ * the total is insufficient.
+ * <p>
+ * Each sub-counter counts its takes in the same cache line, takes() reports
+ * them to detect articles that cooled down. A closed counter refuses all takes,
+ * its units are returned by close().
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class HotCounter {
+
+    /**
+     * distance of sub-counters in longs (128 bytes, two cache lines against adjacent-line prefetch).
+     */
+    private static final int PAD = 16;
+
+    /**
+     * number of sub-counters (power of two) and index mask.
+     */
+    private final int stripes;
+    private final int mask;
+
+    /**
+     * sub-counters at {@code i * PAD}, their number of takes at {@code i * PAD + 1}.
+     */
+    private final AtomicLongArray cells;
+
+    /**
+     * set by close() under the lock, takes fail once it is set.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * creation time (System.nanoTime()), takes are counted from then on.
+     */
+    private final long created = System.nanoTime();
+
+
+    /**
+     * Create counter with units spread evenly across sub-counters.
+     *
+     * @param stripes number of sub-counters, rounded up to a power of two.
+     * @param units initial units.
+     */
+    HotCounter( int stripes, long units ) {
+        int n = Integer.highestOneBit( Math.max( stripes, 2 ) - 1 ) << 1;
+        this.stripes = n;
+        this.mask = n - 1;
+        this.cells = new AtomicLongArray( n * PAD );
+        for( int i = 0; i < n; i++ ) {
+            cells.set( i * PAD, units / n + ( i < units % n? 1 : 0 ) );
+        }
+    }
+
+
+    /**
+     * Return sum of all sub-counters (not an atomic snapshot under concurrent takes).
+     *
+     * @return units.
+     */
+    long sum() {
+        long sum = 0;
+        for( int i = 0; i < stripes; i++ ) {
+            sum += cells.get( i * PAD );
+        }
+        return sum;
+    }
+
+
+    /**
+     * Take units, starting with the home sub-counter of the calling thread and
+     * stealing from the others. Either all units are taken or none.
+     *
+     * @param units units to take.
+     * @return true if units were taken, false if units are insufficient or the counter is closed.
+     */
+    boolean tryTake( long units ) {
+        if( units <= 0 )
+            return ! closed;
+        int home = home() * PAD;
+        long v;
+        while( ( v = cells.get( home ) ) >= units ) {	// home sub-counter serves the take
+            if( cells.compareAndSet( home, v, v - units ) ) {
+                cells.getAndIncrement( home + 1 );
+                return true;
+            }
+        }
+        synchronized( this ) {	// steal: one take at a time holds units of several sub-counters
+            if( closed )
+                return false;
+            long remaining = units;
+            for( int pass = 0; pass < 2 && remaining > 0; pass++ ) {	// second pass: units added meanwhile
+                for( int k = 0; k < stripes && remaining > 0; k++ ) {
+                    remaining -= takeUpTo( ( ( home / PAD + k ) & mask ) * PAD, remaining );
+                }
+            }
+            if( remaining > 0 ) {
+                add( units - remaining );	// compensate partial take
+                return false;
+            }
+            cells.getAndIncrement( home + 1 );
+            return true;
+        }
+    }
+
+
+    /**
+     * Close counter: all further takes fail, remaining units are returned.
+     * Units added after closing are not returned.
+     *
+     * @return units left in all sub-counters.
+     */
+    long close() {
+        synchronized( this ) {
+            closed = true;
+            long units = 0;
+            for( int i = 0; i < stripes; i++ ) {
+                units += cells.getAndSet( i * PAD, 0 );
+            }
+            return units;
+        }
+    }
+
+
+    /**
+     * Tell whether the counter was closed.
+     *
+     * @return true if close() was called.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * Return number of takes since the last call (or since creation) and reset it.
+     *
+     * @return number of successful takes.
+     */
+    long takes() {
+        long takes = 0;
+        for( int i = 0; i < stripes; i++ ) {
+            takes += cells.getAndSet( i * PAD + 1, 0 );
+        }
+        return takes;
+    }
+
+
+    /**
+     * Creation time of the counter.
+     *
+     * @return System.nanoTime() when the counter was created.
+     */
+    long created() {
+        return created;
+    }
+
+
+    /**
+     * Add units to the home sub-counter of the calling thread.
+     *
+     * @param units units to add.
+     */
+    void add( long units ) {
+        if( units != 0 ) {
+            cells.getAndAdd( home() * PAD, units );
+        }
+    }
+
+
+    /**
+     * Adjust units towards a target: adds missing units or takes surplus units
+     * as far as they are present (concurrent takes count as taken after the adjustment).
+     *
+     * @param target target units.
+     */
+    void adjust( long target ) {
+        long delta = target - sum();
+        if( delta > 0 ) {
+            add( delta );
+        } else {
+            long remaining = - delta;
+            int home = home();
+            for( int k = 0; k < stripes && remaining > 0; k++ ) {
+                remaining -= takeUpTo( ( ( home + k ) & mask ) * PAD, remaining );
+            }
+        }
+    }
+
+
+    /*
+     * Take up to units from one sub-counter, returns units taken.
+     */
+    private long takeUpTo( int cell, long units ) {
+        long v;
+        long taken;
+        do {
+            v = cells.get( cell );
+            if( v <= 0 )
+                return 0;
+            taken = Math.min( v, units );
+        } while( ! cells.compareAndSet( cell, v, v - taken ) );
+        return taken;
+    }
+
+
+    /*
+     * Home sub-counter of the calling thread.
+     */
+    private int home() {
+        long id = Thread.currentThread().getId();
+        return (int)( ( id * 0x9E3779B97F4A7C15L ) >>> 40 ) & mask;
+    }
+}
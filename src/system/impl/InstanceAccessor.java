@@ -13,16 +13,20 @@ import system.RTE;
  * (none-public) classes in this package.
  * 
  * InstanceAccessor implements the singleton pattern for the RTE_Impl()
- * instance.
+ * instance with the holder idiom: the instance is created when the Holder
+ * class is initialized on first access, class initialization is thread-safe
+ * and publishes the instance safely without locking on later calls.
  *
  */
 
 public class InstanceAccessor {
 
 	/**
-	 * private static singleton instance (lazy instantiation).
+	 * holder of the singleton instance (lazy instantiation by class initialization).
 	 */
-	private static RTE rte_instance = null;
+	private static class Holder {
+		static final RTE rte_instance = new RTE_Impl();
+	}
 
 
 	/**
@@ -35,10 +39,7 @@ public class InstanceAccessor {
 		/*
 		 * lazy instance creation (only when getInstance() is called)
 		 */
-		if( rte_instance == null ) {
-			rte_instance = new RTE_Impl();
-		}
-		return rte_instance;
+		return Holder.rte_instance;
 	}
 
 
@@ -0,0 +1,316 @@
+package system.impl;
+
+import datamodel.Order;
+import datamodel.OrderItem;
+import system.InventoryManager;
+import system.InventoryManager.FillPolicy;
+import system.OrderBuilder.Outcome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous order intake in three stages connected by bounded queues:
+ * validation, inventory fill and persistence. Each stage runs on its own
+ * worker threads that take the first waiting order and drain up to a batch
+ * size of further orders (micro-batch), so fills take the stripe locks once
+ * per batch and orders are saved with one saveAll() per batch.
+ * <p>
+ * All queues are bounded: when a stage falls behind, its queue fills up and
+ * workers of the stage before block when passing orders on, until the
+ * submission queue is full and submit() blocks the producer (backpressure).
+ * <p>
+ * Futures are completed on worker threads with the outcome of an order: FILLED
+ * when it was filled and saved, INVALID when it failed validation, BACKORDERED
+ * when it waits as backorder (it is saved by the backorder callback when it is
+ * filled later).
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class IntakePipeline {
+
+    /**
+     * wait time of idle workers before they check for shutdown.
+     */
+    private static final long IDLE_MILLIS = 10;
+
+    private final InventoryManager inventoryManager;
+
+    /**
+     * save a single order (backorder filled later), save a batch of filled
+     * orders, and reject an invalid or failed order.
+     */
+    private final Consumer<Order> save;
+    private final Consumer<List<Order>> saveAll;
+    private final Consumer<Order> rejected;
+
+    private final int batchSize;
+
+    /**
+     * stages in pipeline order, set once by the constructor.
+     */
+    private final Stage validation;
+    private final Stage fill;
+    private final Stage persistence;
+
+    /**
+     * set by shutdown, producers inside submit() are counted so validation
+     * workers do not exit before their orders were queued.
+     */
+    private volatile boolean closed = false;
+    private final AtomicInteger submitting = new AtomicInteger( 0 );
+
+
+    /**
+     * Order submitted to the pipeline with the future of its outcome.
+     */
+    private static class Intake {
+        final Order order;
+        final CompletableFuture<Outcome> outcome = new CompletableFuture<Outcome>();
+
+        Intake( Order order ) {
+            this.order = order;
+        }
+    }
+
+
+    /**
+     * Create pipeline and start its workers.
+     *
+     * @param inventoryManager inventory orders are validated against and filled from.
+     * @param save saves an order filled as backorder.
+     * @param saveAll saves a batch of filled orders.
+     * @param rejected called for orders that are invalid or failed in a stage.
+     * @param capacity capacity of each stage queue.
+     * @param validators number of validation workers.
+     * @param fillers number of fill workers.
+     * @param writers number of persistence workers.
+     * @param batchSize maximum number of orders a worker handles at once.
+     * @throws IllegalArgumentException if a number is {@code < 1}.
+     */
+    IntakePipeline( InventoryManager inventoryManager, Consumer<Order> save, Consumer<List<Order>> saveAll,
+            Consumer<Order> rejected, int capacity, int validators, int fillers, int writers, int batchSize )
+    {
+        if( capacity < 1 || validators < 1 || fillers < 1 || writers < 1 || batchSize < 1 )
+            throw new IllegalArgumentException( "capacity, workers and batch size must be >= 1" );
+        this.inventoryManager = inventoryManager;
+        this.save = save;
+        this.saveAll = saveAll;
+        this.rejected = rejected;
+        this.batchSize = batchSize;
+        this.validation = new Stage( "validate", capacity, null, this::validate );
+        this.fill = new Stage( "fill", capacity, validation, this::fill );
+        this.persistence = new Stage( "persist", capacity, fill, this::persist );
+        persistence.start( writers );
+        fill.start( fillers );
+        validation.start( validators );
+    }
+
+
+    /**
+     * Submit order, blocks while the submission queue is full.
+     *
+     * @param order order to submit.
+     * @return future of the outcome, completed exceptionally if the caller was interrupted while waiting.
+     * @throws IllegalStateException if the pipeline was shut down.
+     */
+    CompletableFuture<Outcome> submit( Order order ) {
+        submitting.incrementAndGet();
+        try {
+            if( closed )
+                throw new IllegalStateException( "order intake is shut down" );
+            Intake intake = new Intake( order );
+            pass( intake, validation );
+            return intake.outcome;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * Stop accepting orders, wait until all submitted orders passed all stages.
+     */
+    void shutdown() {
+        closed = true;
+        for( Stage stage : List.of( validation, fill, persistence ) ) {
+            for( Thread worker : stage.workers ) {
+                try {
+                    worker.join();
+                } catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /*
+     * Validation stage: orders need a customer and items of existing articles
+     * with units > 0, valid orders pass on to the fill stage.
+     */
+    private void validate( List<Intake> batch ) {
+        for( Intake intake : batch ) {
+            if( isValid( intake.order ) ) {
+                pass( intake, fill );
+            } else {
+                rejected.accept( intake.order );
+                intake.outcome.complete( Outcome.INVALID );
+            }
+        }
+    }
+
+
+    private boolean isValid( Order order ) {
+        if( order.getCustomer() == null || order.itemsCount() == 0 )
+            return false;
+        for( OrderItem item : order.getItems() ) {
+            if( item.getArticle() == null || item.getUnitsOrdered() <= 0 ||
+                    inventoryManager.findById( item.getArticle().getId() ).isEmpty() )
+                return false;
+        }
+        return true;
+    }
+
+
+    /*
+     * Fill stage: fill the batch in arrival order in one pass, filled orders
+     * pass on to persistence, others are parked as backorders.
+     */
+    private void fill( List<Intake> batch ) {
+        List<Order> orders = new ArrayList<Order>( batch.size() );
+        for( Intake intake : batch ) {
+            orders.add( intake.order );
+        }
+        Map<Order,Boolean> filled = inventoryManager.fillAll( orders, FillPolicy.FIFO );
+        for( Intake intake : batch ) {
+            if( filled.get( intake.order ) ) {
+                pass( intake, persistence );
+            } else {
+                // filled meanwhile: saved by the callback
+                boolean filledMeanwhile = inventoryManager.backorder( intake.order, save );
+                intake.outcome.complete( filledMeanwhile? Outcome.FILLED : Outcome.BACKORDERED );
+            }
+        }
+    }
+
+
+    /*
+     * Persistence stage: save the batch at once.
+     */
+    private void persist( List<Intake> batch ) {
+        List<Order> orders = new ArrayList<Order>( batch.size() );
+        for( Intake intake : batch ) {
+            orders.add( intake.order );
+        }
+        saveAll.accept( orders );
+        for( Intake intake : batch ) {
+            intake.outcome.complete( Outcome.FILLED );
+        }
+    }
+
+
+    /*
+     * Pass order on to the queue of a stage, blocks while the queue is full.
+     */
+    private void pass( Intake intake, Stage stage ) {
+        try {
+            stage.queue.put( intake );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            fail( intake, e );
+        }
+    }
+
+
+    private void fail( Intake intake, Throwable e ) {
+        if( ! intake.outcome.isDone() ) {
+            rejected.accept( intake.order );
+            intake.outcome.completeExceptionally( e );
+        }
+    }
+
+
+    /**
+     * Pipeline stage: bounded input queue and workers handling micro-batches.
+     * Workers exit after shutdown when the stage before has finished and the
+     * queue is empty.
+     */
+    private class Stage {
+        final String name;
+        final BlockingQueue<Intake> queue;
+        final Stage upstream;
+        final Consumer<List<Intake>> handler;
+        final List<Thread> workers = new ArrayList<Thread>();
+        final AtomicInteger running = new AtomicInteger( 0 );
+
+        Stage( String name, int capacity, Stage upstream, Consumer<List<Intake>> handler ) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<Intake>( capacity );
+            this.upstream = upstream;
+            this.handler = handler;
+        }
+
+        void start( int count ) {
+            running.set( count );
+            for( int i = 1; i <= count; i++ ) {
+                Thread t = new Thread( this::work, "order-intake-" + name + "-" + i );
+                t.setDaemon( true );
+                workers.add( t );
+                t.start();
+            }
+        }
+
+        boolean isFinished() {
+            return running.get() == 0;
+        }
+
+        private void work() {
+            List<Intake> batch = new ArrayList<Intake>( batchSize );
+            try {
+                while( true ) {
+                    Intake first = queue.poll( IDLE_MILLIS, TimeUnit.MILLISECONDS );
+                    if( first == null ) {
+                        // closed read first, then producers, then the queue: a producer that
+                        // missed closed has counted itself in submitting before, an upstream
+                        // that has finished passes no more orders
+                        if( ! closed )
+                            continue;
+                        boolean drained = upstream != null? upstream.isFinished() : submitting.get() == 0;
+                        if( drained && queue.isEmpty() )
+                            break;
+                        continue;
+                    }
+                    batch.add( first );
+                    queue.drainTo( batch, batchSize - 1 );
+                    try {
+                        handler.accept( batch );
+                    } catch( RuntimeException e ) {
+                        for( Intake intake : batch ) {
+                            fail( intake, e );
+                        }
+                    }
+                    batch.clear();
+                }
+            } catch( InterruptedException e ) {
+                for( Intake intake : batch ) {
+                    fail( intake, e );
+                }
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
@@ -4,15 +4,34 @@ import datamodel.Article;
 import datamodel.Currency;
 import datamodel.Order;
 import datamodel.OrderItem;
+import datamodel.TAX;
 import system.Formatter;
 import system.InventoryManager;
 import system.Repository;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.StreamSupport;
 
 public class InventoryManagerImpl implements InventoryManager {
@@ -24,9 +43,79 @@ public class InventoryManagerImpl implements InventoryManager {
 
 
     /**
-     * internal data structure to manage inventory (unitsInStore) for Article-id's.
+     * dense ordinals of Article-id's, assigned once when an article is saved.
      */
-    private final Map<String,Integer> inventory = new HashMap<String,Integer>();
+    private final Map<String,Integer> inventory = new ConcurrentHashMap<String,Integer>();
+
+
+    /**
+     * Article-id's by ordinal, replaced when capacity grows.
+     */
+    private volatile String[] ids = new String[16];
+
+
+    /**
+     * frozen catalog answering lookups by id, null when articles were saved
+     * since the last freeze().
+     */
+    private volatile FrozenCatalog catalog = null;
+
+
+    /**
+     * internal data structure to manage inventory (unitsInStore) by article ordinal
+     * in the default warehouse.
+     */
+    private final StockTable stock = new StockTable( Currency.values().length * TAX.values().length );
+
+
+    /**
+     * stock partitions by warehouse index (default warehouse first) and warehouse
+     * names, replaced when a warehouse is added.
+     */
+    private volatile StockTable[] partitions = { stock };
+    private volatile String[] warehouses = { DEFAULT_WAREHOUSE };
+
+
+    /**
+     * orders waiting for stock and the policy ordering their wait queues.
+     */
+    private final Backorders backorders = new Backorders();
+    private volatile FillPolicy backorderPolicy = FillPolicy.FIFO;
+
+
+    /**
+     * cost function routing fills to warehouses, default: warehouse index.
+     */
+    private volatile RoutingCost routingCost = null;
+
+
+    /**
+     * per-thread scratch space to aggregate the demand of an order without allocation.
+     */
+    private final ThreadLocal<StockTable.Demand> demand = ThreadLocal.withInitial( StockTable.Demand::new );
+
+
+    /**
+     * timer wheel expiring abandoned reservations, advanced by a daemon thread
+     * that is started with the first reservation.
+     */
+    private final TimerWheel<ReservationImpl> expiries =
+            new TimerWheel<ReservationImpl>( 100, 4096, System.currentTimeMillis() );
+    private ScheduledExecutorService expiryTimer = null;
+
+
+    /**
+     * full-text index over article descriptions, updated with save().
+     */
+    private final ArticleIndex index = new ArticleIndex();
+
+
+    /**
+     * publishes stock changes to listeners, attached to stock with the first listener.
+     */
+    private final StockEventBus events = new StockEventBus( 8192, ordinal -> ids[ordinal], w -> warehouses[w] );
+
+    private static final System.Logger LOG = System.getLogger( InventoryManagerImpl.class.getName() );
 
 
     private InventoryManagerImpl(Repository<Article> articleRepository) {
@@ -40,24 +129,59 @@ public class InventoryManagerImpl implements InventoryManager {
 
 
     /**
-     * Return units in stock for given article.
+     * Return units in stock for given article (in all warehouses).
      *
      * @param id article identifier.
-     * @return units in stock of article.
+     * @return units in stock of article, at most Integer.MAX_VALUE.
      * @throws IllegalArgumentException if id is null or id does not exist.
      */
     @Override
     public int getUnitsInStock(String id) {
-        if (id != null && inventory.containsKey(id)) {
-            return inventory.get(id);
-        } else {
-            throw new IllegalArgumentException("id is null or does not exist");
+        int ordinal = ordinal(id);
+        StockTable[] parts = partitions;
+        long units = 0;
+        for (StockTable part : parts) {
+            units += part.get(ordinal);
         }
+        return (int)Math.min(units, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * Return units in stock for given article in a warehouse.
+     *
+     * @param id article identifier.
+     * @param warehouse warehouse name.
+     * @return units in stock of article in warehouse.
+     * @throws IllegalArgumentException if id or warehouse is null or does not exist.
+     */
+    @Override
+    public int getUnitsInStock(String id, String warehouse) {
+        return partitions[partition(warehouse)].get(ordinal(id));
     }
 
 
     /**
-     * Update inventory for article.
+     * Return units available for new orders (in stock, not reserved).
+     *
+     * @param id article identifier.
+     * @return units available of article, at most Integer.MAX_VALUE.
+     * @throws IllegalArgumentException if id is null or id does not exist.
+     */
+    @Override
+    public int getUnitsAvailable(String id) {
+        int ordinal = ordinal(id);
+        StockTable[] parts = partitions;
+        long units = 0;
+        for (StockTable part : parts) {
+            units += part.available(ordinal);
+        }
+        return (int)Math.min(units, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * Update inventory for article in the default warehouse.
      *
      * @param id                  article identifier.
      * @param updatedUnitsInStock update with number (must be {@code >= 0}).
@@ -65,11 +189,138 @@ public class InventoryManagerImpl implements InventoryManager {
      */
     @Override
     public void update(String id, int updatedUnitsInStock) {
-        if (id != null && inventory.containsKey(id) && getUnitsInStock(id) >= 0 && updatedUnitsInStock >= 0) {
-            inventory.replace(id, updatedUnitsInStock);
-        } else {
+        if (id == null || ! inventory.containsKey(id) || updatedUnitsInStock < 0) {
             throw new IllegalArgumentException("id is null, does not exist, or unit is not in stock");
         }
+        int ordinal = inventory.get(id);
+        if (stock.set(ordinal, updatedUnitsInStock) < updatedUnitsInStock) {
+            replenished(ordinal);
+        }
+    }
+
+
+    /**
+     * Update inventory for article in a warehouse.
+     *
+     * @param id                  article identifier.
+     * @param warehouse           warehouse name.
+     * @param updatedUnitsInStock update with number (must be {@code >= 0}).
+     * @throws IllegalArgumentException if id or warehouse is null or does not exist or unitsInStock is {@code < 0}).
+     */
+    @Override
+    public void update(String id, String warehouse, int updatedUnitsInStock) {
+        if (updatedUnitsInStock < 0) {
+            throw new IllegalArgumentException("unit is not in stock");
+        }
+        int ordinal = ordinal(id);
+        if (partitions[partition(warehouse)].set(ordinal, updatedUnitsInStock) < updatedUnitsInStock) {
+            replenished(ordinal);
+        }
+    }
+
+
+    /**
+     * Apply a stock feed to the default warehouse in one atomic step.
+     *
+     * @param unitsInStock units in stock by article id, or changes of units if delta is true.
+     * @param delta        true if values are changes of units in stock.
+     * @return number of articles whose units in stock changed.
+     * @throws IllegalArgumentException if an id is null or does not exist or units would be {@code < 0}.
+     */
+    @Override
+    public int updateAll(Map<String,Integer> unitsInStock, boolean delta) {
+        return updateAll(DEFAULT_WAREHOUSE, unitsInStock, delta);
+    }
+
+
+    /**
+     * Apply a stock feed to a warehouse in one atomic step. Ids are resolved to
+     * ordinals for the whole feed first, the partition then validates and
+     * applies all units under its stripe locks.
+     *
+     * @param warehouse    warehouse name.
+     * @param unitsInStock units in stock by article id, or changes of units if delta is true.
+     * @param delta        true if values are changes of units in stock.
+     * @return number of articles whose units in stock changed.
+     * @throws IllegalArgumentException if warehouse or an id is null or does not exist or units would be {@code < 0}.
+     */
+    @Override
+    public int updateAll(String warehouse, Map<String,Integer> unitsInStock, boolean delta) {
+        StockTable part = partitions[partition(warehouse)];
+        int n = unitsInStock.size();
+        int[] ordinals = new int[n];
+        int[] values = new int[n];
+        int i = 0;
+        for (Map.Entry<String,Integer> entry : unitsInStock.entrySet()) {
+            Integer units = entry.getValue();
+            if (units == null || (! delta && units < 0)) {
+                throw new IllegalArgumentException("illegal units in stock for id: " + entry.getKey());
+            }
+            ordinals[i] = ordinal(entry.getKey());
+            values[i++] = units;
+        }
+        int[] before = part.apply(ordinals, values, delta);
+        if (before == null) {
+            throw new IllegalArgumentException("stock feed would make units in stock negative");
+        }
+        int changed = 0;
+        for (i = 0; i < n; i++) {
+            int after = delta? before[i] + values[i] : values[i];
+            if (after != before[i]) {
+                changed++;
+            }
+            if (after > before[i]) {
+                replenished(ordinals[i]);
+            }
+        }
+        return changed;
+    }
+
+
+    /**
+     * Add a warehouse with its own stock partition. Prices of all articles are
+     * copied into the partition for the inventory valuation.
+     *
+     * @param warehouse warehouse name.
+     * @throws IllegalArgumentException if warehouse is null or exists.
+     */
+    @Override
+    public void addWarehouse( String warehouse ) {
+        if( warehouse == null || Arrays.asList( warehouses ).contains( warehouse ) )
+            throw new IllegalArgumentException( "warehouse is null or exists: " + warehouse );
+        synchronized( inventory ) {	// no articles are registered meanwhile
+            if( Arrays.asList( warehouses ).contains( warehouse ) )
+                throw new IllegalArgumentException( "warehouse exists: " + warehouse );
+            StockTable part = new StockTable( Currency.values().length * TAX.values().length );
+            part.ensureCapacity( inventory.size() );
+            for( Article article : articleRepository.findAll() ) {
+                Integer ordinal = inventory.get( article.getId() );
+                if( ordinal != null ) {
+                    part.setPrice( ordinal, article.getUnitPrice(), valueClass( article.getCurrency(), article.getTax() ) );
+                }
+            }
+            int index = partitions.length;
+            warehouses = Arrays.copyOf( warehouses, index + 1 );	// names first, events may refer to the index
+            warehouses[index] = warehouse;
+            if( events.isActive() ) {
+                part.setObserver( events.observer( index ) );
+            }
+            StockTable[] parts = Arrays.copyOf( partitions, index + 1 );
+            parts[index] = part;
+            partitions = parts;
+        }
+    }
+
+
+    @Override
+    public List<String> getWarehouses() {
+        return List.of( warehouses );
+    }
+
+
+    @Override
+    public void setRoutingCost( RoutingCost cost ) {
+        this.routingCost = cost;
     }
 
 
@@ -77,7 +328,7 @@ public class InventoryManagerImpl implements InventoryManager {
      * Test that order is fillable.
      * <p>
      * An order is fillable when all order items meet the condition:
-     * {@code orderItem.unitsOrdered <= inventory(article).unitsInStock}.
+     * {@code orderItem.unitsOrdered <= inventory(article).unitsAvailable}.
      *
      * @param order to validate.
      * @return true if order is fillable from current inventory.
@@ -90,17 +341,21 @@ public class InventoryManagerImpl implements InventoryManager {
             throw new IllegalArgumentException("order is null");
         }
 
-        boolean isFillable = true;
-        Iterable<OrderItem> orderedItems = order.getItems();
-        for (OrderItem item : orderedItems) {
-            if (item.getUnitsOrdered() <= getUnitsInStock(item.getArticle().getId())) {
-                isFillable = true;
-            } else {
-                isFillable = false;
-                break;
+        StockTable.Demand d = demand(order);
+        StockTable[] parts = partitions;
+        if (parts.length == 1) {
+            return stock.isAvailable(d);
+        }
+        for (int i = 0; i < d.size; i++) {
+            long available = 0;
+            for (StockTable part : parts) {
+                available += part.available(d.ordinals[i]);
+            }
+            if (d.units[i] > available) {
+                return false;
             }
         }
-        return isFillable;
+        return true;
     }
 
 
@@ -108,10 +363,17 @@ public class InventoryManagerImpl implements InventoryManager {
      * Fills order by deducting all order items from the inventory, if the
      * order is fillable. If the order is not fillable, inventory remains
      * unchanged (transactional behavior: all or none order item is filled).
+     * <p>
+     * Fill is atomic for concurrent callers: the lock stripes of all ordered articles
+     * are locked in ascending order (which excludes deadlocks between fills of
+     * overlapping orders), stock is checked and deducted before the locks are released.
+     * Fills of orders with articles in disjoint stripes do not contend. Fill does
+     * not allocate memory once per-thread scratch space has grown to the order size.
+     * With several warehouses, the order is routed as by fillRouted().
      *
      * @param order to fill.
      * @return true if order has been filled, false otherwise.
-     * @throws IllegalArgumentException if order is null.
+     * @throws IllegalArgumentException if order is null or an article does not exist.
      */
     @Override
     public boolean fill(Order order) {
@@ -120,29 +382,382 @@ public class InventoryManagerImpl implements InventoryManager {
             throw new IllegalArgumentException("order is null");
         }
 
-        Iterable<OrderItem> orderedItems = order.getItems();
-        if (isFillable(order)) {
-            for (OrderItem item : orderedItems) {
-                int inventoryUnits = inventory.get(item.getArticle().getId());
-                int units = item.getUnitsOrdered();
-                inventory.replace(item.getArticle().getId(), inventoryUnits - units);
+        if (partitions.length == 1) {
+            return stock.take(demand(order));
+        }
+        return fillRouted(order).isPresent();
+    }
+
+
+    /**
+     * Fill order from the single warehouse with the lowest cost that can fill
+     * all items, or split items across warehouses in order of their costs.
+     * Availability is read without locking. A single-warehouse fill locks only
+     * the stripes of that warehouse, a split fill locks the stripes of all
+     * involved warehouses in warehouse order. Routing is repeated when a
+     * concurrent fill took the stock of the chosen route.
+     *
+     * @param order order to fill.
+     * @return units shipped by warehouse and article, empty if the order was not filled.
+     * @throws IllegalArgumentException if order is null or an article does not exist.
+     */
+    @Override
+    public Optional<Map<String,Map<Article,Integer>>> fillRouted( Order order ) {
+        if( order == null )
+            throw new IllegalArgumentException( "order is null" );
+        StockTable.Demand d = demand( order );
+        Article[] articles = new Article[d.size];
+        for( OrderItem item : order.getItems() ) {
+            articles[Arrays.binarySearch( d.ordinals, 0, d.size, ordinal( item.getArticle().getId() ) )] = item.getArticle();
+        }
+        StockTable[] parts = partitions;
+        String[] names = warehouses;
+        RoutingCost cost = routingCost != null? routingCost :
+            ( warehouse, article, units ) -> Arrays.asList( names ).indexOf( warehouse );
+        //
+        for( int attempt = 0; attempt < 3; attempt++ ) {
+            // single warehouse, cheapest first
+            boolean[] tried = new boolean[parts.length];
+            for( int p = cheapest( parts, names, cost, d, articles, tried ); p >= 0;
+                    p = cheapest( parts, names, cost, d, articles, tried ) ) {
+                if( parts[p].take( d ) ) {
+                    Map<String,Map<Article,Integer>> shipments = new LinkedHashMap<String,Map<Article,Integer>>();
+                    Map<Article,Integer> shipment = shipments.computeIfAbsent( names[p], w -> new LinkedHashMap<Article,Integer>() );
+                    for( int i = 0; i < d.size; i++ ) {
+                        shipment.put( articles[i], d.units[i] );
+                    }
+                    return Optional.of( shipments );
+                }
+                tried[p] = true;
+            }
+            // split items across warehouses
+            StockTable.Demand[] split = split( parts, names, cost, d, articles );
+            if( split == null )
+                return Optional.empty();	// not enough units in all warehouses
+            if( StockTable.take( parts, split ) ) {
+                Map<String,Map<Article,Integer>> shipments = new LinkedHashMap<String,Map<Article,Integer>>();
+                for( int p = 0; p < parts.length; p++ ) {
+                    StockTable.Demand s = split[p];
+                    for( int i = 0; s != null && i < s.size; i++ ) {
+                        shipments.computeIfAbsent( names[p], w -> new LinkedHashMap<Article,Integer>() )
+                            .put( articles[Arrays.binarySearch( d.ordinals, 0, d.size, s.ordinals[i] )], s.units[i] );
+                    }
+                }
+                return Optional.of( shipments );
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    /**
+     * Fill a batch of orders under a policy with one atomic deduction pass. With
+     * several warehouses, orders are filled one by one in policy order and routed
+     * as by fill(), so they are filled from the warehouses isFillable() checks.
+     *
+     * @param orders orders to fill.
+     * @param policy policy that decides which orders are filled first when stock is short.
+     * @return fill outcome (true: filled) for each order in the sequence of orders.
+     * @throws IllegalArgumentException if orders, an order or policy is null.
+     */
+    @Override
+    public Map<Order,Boolean> fillAll( Iterable<Order> orders, FillPolicy policy ) {
+        if( orders == null || policy == null )
+            throw new IllegalArgumentException( "orders or policy is null" );
+        //
+        Map<Order,Boolean> outcomes = new LinkedHashMap<Order,Boolean>();
+        List<Order> candidates = new ArrayList<Order>();
+        List<long[]> keys = new ArrayList<long[]>();	// { sort key, candidate index }
+        List<StockTable.Demand> demands = new ArrayList<StockTable.Demand>();
+        for( Order order : orders ) {
+            if( order == null )
+                throw new IllegalArgumentException( "order is null" );
+            outcomes.put( order, false );
+            StockTable.Demand d;
+            try {
+                d = demand( order ).copy();
+            } catch( IllegalArgumentException e ) {
+                continue;	// article does not exist, order is not fillable
+            }
+            keys.add( new long[] { priority( order, policy ), candidates.size() } );
+            candidates.add( order );
+            demands.add( d );
+        }
+        keys.sort( Comparator.comparingLong( ( long[] k ) -> k[0] ).thenComparingLong( k -> k[1] ) );
+        //
+        List<StockTable.Demand> sequence = new ArrayList<StockTable.Demand>( keys.size() );
+        for( long[] k : keys ) {
+            sequence.add( demands.get( (int)k[1] ) );
+        }
+        if( partitions.length > 1 ) {
+            for( long[] k : keys ) {
+                Order order = candidates.get( (int)k[1] );
+                if( fill( order ) ) {
+                    outcomes.put( order, true );
+                }
             }
+            return outcomes;
+        }
+        boolean[] filled = stock.takeAll( sequence );
+        for( int i = 0; i < filled.length; i++ ) {
+            if( filled[i] ) {
+                outcomes.put( candidates.get( (int)keys.get( i )[1] ), true );
+            }
+        }
+        return outcomes;
+    }
+
+
+    /**
+     * Fill order or park it until stock of the articles it is short of is
+     * replenished by update(). The order waits in the queue of one article it
+     * is short of. Queues are ordered by the backorder policy and arrival.
+     *
+     * @param order order to fill.
+     * @param filled callback when the order was filled (by this call or by a later update()).
+     * @return true if the order was filled at once, false if it was parked.
+     * @throws IllegalArgumentException if order or filled is null or an article does not exist.
+     */
+    @Override
+    public boolean backorder( Order order, Consumer<Order> filled ) {
+        if( order == null || filled == null )
+            throw new IllegalArgumentException( "order or callback is null" );
+        if( fill( order ) ) {
+            filled.accept( order );
             return true;
-        } else {
+        }
+        int ordinal = shortOf( order );
+        if( ordinal < 0 ) {
+            ordinal = demand( order ).ordinals[0];	// stock changed meanwhile, re-checked below
+        }
+        backorders.park( ordinal, order, priority( order, backorderPolicy ), filled );
+        // stock may have been replenished between fill() and park()
+        if( shortOf( order ) != ordinal ) {
+            replenished( ordinal );
+        }
+        return false;
+    }
+
+
+    /**
+     * Set policy ordering wait queues of backorders for orders parked later.
+     *
+     * @param policy FIFO: arrival, MAX_ORDERS: fewest units first, MAX_VALUE: highest value first.
+     * @throws IllegalArgumentException if policy is null.
+     */
+    @Override
+    public void setBackorderPolicy( FillPolicy policy ) {
+        if( policy == null )
+            throw new IllegalArgumentException( "policy is null" );
+        this.backorderPolicy = policy;
+    }
+
+
+    @Override
+    public long countBackorders() {
+        return backorders.size();
+    }
+
+
+    /**
+     * Reserve units of all order items (all or none). The reservation expires
+     * after ttl unless it is committed or released before. With several
+     * warehouses, units are reserved in the warehouses fill() would route the
+     * order to: the cheapest warehouse that has all units available, or split
+     * across warehouses in order of their costs.
+     *
+     * @param order order to reserve units for.
+     * @param ttl time after which the reservation expires.
+     * @return reservation or empty if the order is not fillable.
+     * @throws IllegalArgumentException if order or ttl is null or ttl is negative.
+     */
+    @Override
+    public Optional<Reservation> reserve( Order order, Duration ttl ) {
+        if( order == null )
+            throw new IllegalArgumentException( "order is null" );
+        if( ttl == null || ttl.isNegative() )
+            throw new IllegalArgumentException( "illegal ttl: " + ttl );
+        //
+        StockTable.Demand d = demand( order );
+        StockTable[] parts = partitions;
+        StockTable.Demand[] demands = reserveRouted( parts, d, order );
+        if( demands == null )
+            return Optional.empty();
+        //
+        ReservationImpl reservation = new ReservationImpl( order, parts, demands,
+                System.currentTimeMillis() + ttl.toMillis() );
+        startExpiryTimer();
+        expiries.schedule( reservation, reservation.expiry );
+        return Optional.of( reservation );
+    }
+
+
+    /**
+     * Deduct reserved units of an active reservation from the inventory.
+     *
+     * @param reservation active reservation.
+     * @return true if order has been filled.
+     * @throws IllegalArgumentException if reservation is null or not from this inventory.
+     */
+    @Override
+    public boolean commit( Reservation reservation ) {
+        ReservationImpl r = reservation( reservation );
+        if( r.expiry < System.currentTimeMillis() ) {
+            expire( r );	// expired, but not yet collected by the timer
             return false;
         }
+        return r.state.compareAndSet( ACTIVE, COMMITTED ) && StockTable.commit( r.tables, r.demands );
+    }
+
+
+    /**
+     * Return reserved units of an active reservation to available stock.
+     *
+     * @param reservation active reservation.
+     * @return true if units have been released.
+     * @throws IllegalArgumentException if reservation is null or not from this inventory.
+     */
+    @Override
+    public boolean release( Reservation reservation ) {
+        ReservationImpl r = reservation( reservation );
+        if( r.state.compareAndSet( ACTIVE, RELEASED ) ) {
+            r.release();
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Return value of the inventory (unit price * units in stock) in a currency
+     * in O(1) from running totals.
+     *
+     * @param currency currency of articles.
+     * @return value of all articles priced in currency.
+     * @throws IllegalArgumentException if currency is null.
+     */
+    @Override
+    public long getInventoryValue( Currency currency ) {
+        if( currency == null )
+            throw new IllegalArgumentException( "currency is null" );
+        long value = 0;
+        for( StockTable part : partitions ) {
+            for( TAX tax : TAX.values() ) {
+                value += part.value( valueClass( currency, tax ) );
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * Return value of the inventory in a currency and tax class in O(1) from running totals.
+     *
+     * @param currency currency of articles.
+     * @param tax tax class of articles.
+     * @return value of all articles priced in currency with tax class.
+     * @throws IllegalArgumentException if currency or tax is null.
+     */
+    @Override
+    public long getInventoryValue( Currency currency, TAX tax ) {
+        if( currency == null || tax == null )
+            throw new IllegalArgumentException( "currency or tax is null" );
+        long value = 0;
+        for( StockTable part : partitions ) {
+            value += part.value( valueClass( currency, tax ) );
+        }
+        return value;
+    }
+
+
+    /**
+     * Register listener notified asynchronously of changes of units in stock.
+     *
+     * @param listener listener to register.
+     * @throws IllegalArgumentException if listener is null.
+     */
+    @Override
+    public void addStockListener( StockListener listener ) {
+        if( listener == null )
+            throw new IllegalArgumentException( "listener is null" );
+        synchronized( inventory ) {	// partitions are not added meanwhile
+            events.addListener( listener );
+            StockTable[] parts = partitions;
+            for( int p = 0; p < parts.length; p++ ) {
+                parts[p].setObserver( events.observer( p ) );
+            }
+        }
+    }
+
+
+    @Override
+    public void removeStockListener( StockListener listener ) {
+        events.removeListener( listener );
+    }
+
+
+    /**
+     * Set low-stock threshold for an article.
+     *
+     * @param id article id.
+     * @param threshold threshold in units, {@code < 0} removes the threshold.
+     * @throws IllegalArgumentException if id is null or id does not exist.
+     */
+    @Override
+    public void setLowStockThreshold( String id, int threshold ) {
+        events.setThreshold( ordinal( id ), threshold );
+    }
+
+
+    /**
+     * Stop expiring reservations and publishing stock changes, called when the Runtime shuts down.
+     */
+    synchronized void shutdown() {
+        if( expiryTimer != null ) {
+            expiryTimer.shutdownNow();
+            expiryTimer = null;
+        }
+        for( StockTable part : partitions ) {
+            part.setObserver( null );
+        }
+        events.shutdown();
     }
 
 
     @Override
     public Optional<Article> findById(String id) {
-        if (inventory.containsKey(id)) {
+        FrozenCatalog frozen = catalog;
+        if (frozen != null) {
+            return Optional.ofNullable(id != null? frozen.article(id) : null);
+        }
+        if (id != null && inventory.containsKey(id)) {
             return articleRepository.findById(id);
         }
         return Optional.empty();
     }
 
 
+    @Override
+    public Iterable<Article> findAllById( Collection<String> ids ) {
+        FrozenCatalog frozen = catalog;
+        if( frozen != null ) {
+            List<Article> found = new ArrayList<Article>( ids.size() );
+            for( String id : ids ) {
+                Article article = id != null? frozen.article( id ) : null;
+                if( article != null )
+                    found.add( article );
+            }
+            return found;
+        }
+        List<String> stocked = new ArrayList<String>( ids.size() );
+        for( String id : ids ) {
+            if( id != null && inventory.containsKey( id ) )
+                stocked.add( id );
+        }
+        return articleRepository.findAllById( stocked );
+    }
+
+
     @Override
     public Iterable<Article> findAll() {
         return articleRepository.findAll();
@@ -171,14 +786,90 @@ public class InventoryManagerImpl implements InventoryManager {
             throw new IllegalArgumentException( "illegal article.id: null" );
         //
         articleRepository.save( article );	// save, make sure to avoid duplicates
+        index.index( article );
         //
-        if( ! inventory.containsKey( id ) ) {
-            this.inventory.put( id, Integer.valueOf( 0 ) );
-        }
+        register( id );
+        setPrice( article );
+        invalidate();
         return article;
     }
 
 
+    /**
+     * Create new articles in InventoryManager with one batch write to the
+     * internal ArticleRepository. Articles are validated before any article
+     * is saved.
+     *
+     * @param articles articles to create.
+     * @throws IllegalArgumentException if an article is null or has no valid id.
+     */
+    @Override
+    public Iterable<Article> saveAll( Iterable<Article> articles ) {
+        if( articles == null )
+            throw new IllegalArgumentException( "illegal articles: null" );
+        //
+        for( Article article : articles ) {
+            if( article == null )
+                throw new IllegalArgumentException( "illegal article: null" );
+            if( article.getId() == null )
+                throw new IllegalArgumentException( "illegal article.id: null" );
+        }
+        //
+        articleRepository.saveAll( articles );
+        //
+        for( Article article : articles ) {
+            index.index( article );
+            register( article.getId() );
+            setPrice( article );
+        }
+        invalidate();
+        return articles;
+    }
+
+
+    /**
+     * Find articles by keywords in their descriptions.
+     *
+     * @param query keywords (AND), groups separated by "OR", '*' suffix for prefixes.
+     * @return matching articles in the order they were saved.
+     */
+    @Override
+    public Iterable<Article> search( String query ) {
+        return index.search( query );
+    }
+
+
+    /**
+     * Compile the saved articles into a frozen catalog with a minimal perfect
+     * hash over their ids and swap it in, lookups by id no longer go through
+     * the mutable ordinal map and ArticleRepository.
+     */
+    @Override
+    public void freeze() {
+        synchronized( inventory ) {		// no article is registered meanwhile
+            String[] byOrdinal = ids;
+            List<Article> articles = new ArrayList<Article>( inventory.size() );
+            for( int ordinal = 0; ordinal < inventory.size(); ordinal++ ) {
+                String id = byOrdinal[ordinal];
+                articles.add( articleRepository.findById( id )
+                    .orElseThrow( () -> new IllegalStateException( "article not in repository: " + id ) ) );
+            }
+            catalog = new FrozenCatalog( articles );
+        }
+    }
+
+
+    /*
+     * Drop the frozen catalog after articles were saved, ordered with freeze()
+     * so a catalog compiled before the save cannot be swapped in afterwards.
+     */
+    private void invalidate() {
+        synchronized( inventory ) {
+            catalog = null;
+        }
+    }
+
+
     /**
      * Print inventory as table.
      *
@@ -186,9 +877,7 @@ public class InventoryManagerImpl implements InventoryManager {
      */
     @Override
     public StringBuffer printInventory() {
-        return printInventory(
-                StreamSupport.stream( articleRepository.findAll().spliterator(), false )
-        );
+        return printInventory( articleRepository.findAll() );
     }
 
 
@@ -198,87 +887,139 @@ public class InventoryManagerImpl implements InventoryManager {
      * @param sortedBy  sorting criteria 1: byPrice; 2: byValue; 3: byUnits;
      *                  4: byDescription; 5: bySKU; else: unsorted
      * @param descending true if in descending order
-     * @param limit     upper boundary of articles printed after sorting
+     * @param limit     upper boundary of articles printed after sorting, null: all articles
      * @return printed inventory (as table).
      */
     @Override
+    @Deprecated
     public StringBuffer printInventory(int sortedBy, boolean descending, Integer limit) {
+        SortedBy[] criteria = SortedBy.values();
+        return printInventory(sortedBy >= 1 && sortedBy <= criteria.length? criteria[sortedBy - 1] : null,
+                descending, limit);
+    }
 
-        Stream<Article> articleStream = StreamSupport.stream(articleRepository.findAll().spliterator(), false);
-
-        if (descending == false) {
-
-            if (sortedBy == 1) {
-                return printInventory(articleStream
-                        .sorted(Comparator.comparingLong(a -> a.getUnitPrice()))
-                        .limit(limit));
-            }
 
-            if (sortedBy == 2) {
-                return printInventory(articleStream
-                        .sorted(Comparator.comparingLong(a -> a.getUnitPrice() * inventory.get(a.getId())))
-                        .limit(limit));
-            }
+    /**
+     * Print inventory as table with sorting and limiting criteria. Sort keys
+     * (units in stock) are read once per article, limited queries keep the
+     * first {@code limit} articles in a bounded heap.
+     *
+     * @param sortedBy  sorting criteria, null: unsorted
+     * @param descending true if in descending order
+     * @param limit     upper boundary of articles printed after sorting, null: all articles
+     * @return printed inventory (as table).
+     * @throws IllegalArgumentException if limit is {@code < 0}.
+     */
+    @Override
+    public StringBuffer printInventory(SortedBy sortedBy, boolean descending, Integer limit) {
+        return printInventory( select( sortedBy, descending, limit ) );
+    }
 
-            if (sortedBy == 3) {
-                return printInventory(articleStream
-                        .sorted(Comparator.comparingInt(a -> inventory.get(a.getId())))
-                        .limit(limit));
-            }
 
-            if (sortedBy == 4) {
-                return printInventory(articleStream
-                        .sorted(Comparator.comparing(a -> a.getDescription()))
-                        .limit(limit));
-            }
+    /**
+     * Print inventory table row by row to a Writer. Only one row is buffered
+     * before it is written, the Writer is flushed but not closed.
+     *
+     * @param out       Writer the table is written to.
+     * @param sortedBy  sorting criteria, null: unsorted
+     * @param descending true if in descending order
+     * @param limit     upper boundary of articles printed after sorting, null: all articles
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if out is null or limit is {@code < 0}.
+     */
+    @Override
+    public void printInventory(Writer out, SortedBy sortedBy, boolean descending, Integer limit) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("out is null");
+        }
+        printInventory( select( sortedBy, descending, limit ), out );
+        out.flush();
+    }
 
-            if (sortedBy == 5) {
-                return printInventory(articleStream
-                        .sorted(Comparator.comparing(a -> a.getId()))
-                        .limit(limit));
-            }
 
+    /**
+     * Print inventory table row by row to a channel (UTF-8 encoded) through a
+     * bounded encoder buffer. The channel is not closed.
+     *
+     * @param channel   channel the table is written to.
+     * @param sortedBy  sorting criteria, null: unsorted
+     * @param descending true if in descending order
+     * @param limit     upper boundary of articles printed after sorting, null: all articles
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if channel is null or limit is {@code < 0}.
+     */
+    @Override
+    public void printInventory(WritableByteChannel channel, SortedBy sortedBy, boolean descending, Integer limit) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel is null");
         }
+        printInventory( Channels.newWriter( channel, StandardCharsets.UTF_8 ), sortedBy, descending, limit );
+    }
 
-        else {
-
-            if (sortedBy == 1) {
-                return printInventory(articleStream
-                        .sorted((a1, a2) -> calculateUnitPriceToInteger(a2).compareTo(calculateUnitPriceToInteger(a1)))
-                        .limit(limit));
-            }
 
-            if (sortedBy == 2) {
-                return printInventory(articleStream
-                        .sorted((a1, a2) -> calculateValueToInteger(a2).compareTo(calculateValueToInteger(a1)))
-                        .limit(limit));
+    /*
+     * Select articles to print: unsorted, sorted or the first 'limit' articles by criteria.
+     */
+    private Iterable<Article> select(SortedBy sortedBy, boolean descending, Integer limit) {
+        if (limit != null && limit < 0) {
+            throw new IllegalArgumentException("limit is < 0: " + limit);
+        }
+        Iterable<Article> articles = articleRepository.findAll();
+        if (sortedBy == null) {
+            return limit == null? articles : () -> StreamSupport.stream(articles.spliterator(), false)
+                    .limit(limit).iterator();
+        }
+        Comparator<Ranked> comparator = comparator(sortedBy);
+        if (descending) {
+            comparator = comparator.reversed();
+        }
+        comparator = comparator.thenComparingInt(r -> r.seq);	// stable: equal keys in repository order
+        //
+        List<Ranked> ranked = new ArrayList<Ranked>();
+        if (limit == null) {
+            int seq = 0;
+            for (Article a : articles) {
+                ranked.add(new Ranked(a, key(sortedBy, a), seq++));
             }
-
-            if (sortedBy == 3) {
-                return printInventory(articleStream
-                        .sorted((a1, a2) -> inventory.get(a2.getId()).compareTo(inventory.get(a1.getId())))
-                        .limit(limit));
+            ranked.sort(comparator);
+        } else if (limit > 0) {
+            // max-heap of the best 'limit' articles by comparator, head is the worst kept article,
+            // sized by the number of articles (limit may be Integer.MAX_VALUE)
+            int capacity = (int)Math.min(limit, count()) + 1;
+            PriorityQueue<Ranked> heap = new PriorityQueue<Ranked>(capacity, comparator.reversed());
+            int seq = 0;
+            for (Article a : articles) {
+                Ranked r = new Ranked(a, key(sortedBy, a), seq++);
+                if (heap.size() < limit) {
+                    heap.add(r);
+                } else if (comparator.compare(r, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(r);
+                }
             }
-
-            if (sortedBy == 4) {
-                return printInventory(articleStream
-                        .sorted((a1, a2) -> a2.getDescription().compareTo(a1.getDescription()))
-                        .limit(limit));
+            while (! heap.isEmpty()) {
+                ranked.add(heap.poll());
             }
+            Collections.reverse(ranked);
+        }
+        return () -> ranked.stream().map(r -> r.article).iterator();
+    }
 
-            if (sortedBy == 5) {
-                return printInventory(articleStream
-                        .sorted((a1, a2) -> a2.getId().compareTo(a1.getId()))
-                        .limit(limit));
-            }
 
+    private StringBuffer printInventory( Iterable<Article> articles ) {
+        try {
+            return printInventory( articles, null );
+        } catch( IOException e ) {
+            throw new UncheckedIOException( e );	// not thrown without Writer
         }
-
-        return null;
     }
 
 
-    private StringBuffer printInventory( Stream<Article> articleStream ) {
+    /*
+     * Print inventory table into the formatter buffer. With a Writer, the
+     * buffer is written and cleared after each row.
+     */
+    private StringBuffer printInventory( Iterable<Article> articles, Writer out ) throws IOException {
         //
         Formatter formatter = new FormatterImpl();
         Formatter.TableFormatter tfmt = new TableFormatterImpl( formatter, new Object[][] {
@@ -290,38 +1031,423 @@ public class InventoryManagerImpl implements InventoryManager {
                 .hdr( "||", "", "", "Price", "in-Stock", "(in €)" )
                 .liner( "+-+-+-+-+-+" )
                 ;
+        StringBuffer buffer = formatter.getBuffer();
+        drain( buffer, out );
         //
-        long totalValue = articleStream
-                .map( a -> {
-                    long unitsInStock = this.inventory.get( a.getId() ).intValue();
-                    long value = a.getUnitPrice() * unitsInStock;
-                    tfmt.hdr( "||",
-                            a.getId(),
-                            a.getDescription(),
-                            formatter.fmtPrice( a.getUnitPrice(), a.getCurrency()).toString(),
-                            Long.toString( unitsInStock ),
-                            formatter.fmtPrice( value, a.getCurrency() ).toString()
-                    );
-                    return value;
-                })
-                .reduce( 0L, (a, b) -> a + b );
+        long totalValue = 0;
+        for( Article a : articles ) {
+            long unitsInStock = getUnitsInStock( a.getId() );
+            long value = a.getUnitPrice() * unitsInStock;
+            tfmt.hdr( "||",
+                    a.getId(),
+                    a.getDescription(),
+                    formatter.fmtPrice( a.getUnitPrice(), a.getCurrency()).toString(),
+                    Long.toString( unitsInStock ),
+                    formatter.fmtPrice( value, a.getCurrency() ).toString()
+            );
+            totalValue += value;
+            drain( buffer, out );
+        }
         //
         String inventoryValue = formatter.fmtPrice( totalValue, Currency.EUR ).toString();
         tfmt
                 .liner( "+-+-+-+-+-+" )
                 .hdr( "", "", "Inventory", "Value:", inventoryValue )
         ;
+        drain( buffer, out );
         //
-        return tfmt.getFormatter().getBuffer();
+        return buffer;
+    }
+
+
+    /*
+     * Write and clear buffer if a Writer is given.
+     */
+    private static void drain( StringBuffer buffer, Writer out ) throws IOException {
+        if( out != null && buffer.length() > 0 ) {
+            out.append( buffer );
+            buffer.setLength( 0 );
+        }
     }
 
 
-    private Integer calculateValueToInteger(Article article) {
-        return (int) article.getUnitPrice() * inventory.get(article.getId());
+    /*
+     * Numeric sort key of an article, read once per query (units in stock may change while sorting).
+     */
+    private long key(SortedBy sortedBy, Article article) {
+        switch (sortedBy) {
+        case BY_PRICE:
+            return article.getUnitPrice();
+        case BY_VALUE:
+            return article.getUnitPrice() * getUnitsInStock(article.getId());
+        case BY_UNITS:
+            return getUnitsInStock(article.getId());
+        default:
+            return 0;
+        }
+    }
+
+
+    private static Comparator<Ranked> comparator(SortedBy sortedBy) {
+        switch (sortedBy) {
+        case BY_DESCRIPTION:
+            return Comparator.comparing(r -> r.article.getDescription());
+        case BY_SKU:
+            return Comparator.comparing(r -> r.article.getId());
+        default:
+            return Comparator.comparingLong(r -> r.key);
+        }
     }
 
 
-    private Integer calculateUnitPriceToInteger(Article article) {
-        return (int) article.getUnitPrice();
+    /*
+     * Article with its sort key and position in the repository.
+     */
+    private static class Ranked {
+        private final Article article;
+        private final long key;
+        private final int seq;
+
+        Ranked(Article article, long key, int seq) {
+            this.article = article;
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+
+
+    /*
+     * Start daemon thread that advances the expiry timer wheel.
+     */
+    private synchronized void startExpiryTimer() {
+        if( expiryTimer == null ) {
+            expiryTimer = Executors.newSingleThreadScheduledExecutor( r -> {
+                Thread t = new Thread( r, "inventory-reservation-expiry" );
+                t.setDaemon( true );
+                return t;
+            });
+            expiryTimer.scheduleAtFixedRate(
+                    () -> expiries.advance( System.currentTimeMillis(), this::expire ),
+                    100, 100, TimeUnit.MILLISECONDS );
+        }
+    }
+
+
+    /*
+     * Release units of an expired reservation unless it was committed or released before.
+     */
+    private void expire( ReservationImpl r ) {
+        if( r.state.compareAndSet( ACTIVE, EXPIRED ) ) {
+            r.release();
+        }
+    }
+
+
+    private ReservationImpl reservation( Reservation reservation ) {
+        if( ! ( reservation instanceof ReservationImpl ) || ((ReservationImpl) reservation).owner != this )
+            throw new IllegalArgumentException( "illegal reservation: " + reservation );
+        return (ReservationImpl) reservation;
+    }
+
+
+    /*
+     * Re-check orders waiting on a replenished article: fill them in queue
+     * order, orders still short of an article wait in the queue of that article.
+     */
+    private void replenished( int ordinal ) {
+        if( ! backorders.isWaiting( ordinal ) )
+            return;
+        for( Backorders.Waiting waiting : backorders.drain( ordinal ) ) {
+            if( fill( waiting.order ) ) {
+                try {
+                    waiting.filled.accept( waiting.order );
+                } catch( RuntimeException e ) {
+                    LOG.log( System.Logger.Level.WARNING, "backorder callback failed for order " + waiting.order.getId(), e );
+                }
+            } else {
+                int blocking = shortOf( waiting.order );
+                backorders.park( blocking >= 0? blocking : ordinal, waiting );
+            }
+        }
+    }
+
+
+    /*
+     * Ordinal of the first article of an order with fewer units available (in
+     * all warehouses) than ordered, -1 if the order is fillable.
+     */
+    private int shortOf( Order order ) {
+        StockTable.Demand d = demand( order );
+        StockTable[] parts = partitions;
+        for( int i = 0; i < d.size; i++ ) {
+            long available = 0;
+            for( StockTable part : parts ) {
+                available += part.available( d.ordinals[i] );
+            }
+            if( d.units[i] > available )
+                return d.ordinals[i];
+        }
+        return -1;
+    }
+
+
+    /*
+     * Sort key of an order under a policy, orders with lower keys are served first.
+     */
+    private static long priority( Order order, FillPolicy policy ) {
+        if( policy == FillPolicy.FIFO )
+            return 0;
+        long key = 0;
+        for( OrderItem item : order.getItems() ) {
+            key += policy == FillPolicy.MAX_VALUE?
+                    - item.getArticle().getUnitPrice() * item.getUnitsOrdered() :	// highest value first
+                    item.getUnitsOrdered();		// fewest units first
+        }
+        return key;
+    }
+
+
+    /*
+     * Reserve demanded units in the warehouses fill() would route the order to,
+     * returns reserved demands by warehouse (null: none reserved) or null if the
+     * order is not fillable.
+     */
+    private StockTable.Demand[] reserveRouted( StockTable[] parts, StockTable.Demand d, Order order ) {
+        StockTable.Demand[] demands = new StockTable.Demand[parts.length];
+        if( parts.length == 1 ) {
+            if( ! parts[0].reserve( d ) )
+                return null;
+            demands[0] = d.copy();
+            return demands;
+        }
+        Article[] articles = new Article[d.size];
+        for( OrderItem item : order.getItems() ) {
+            articles[Arrays.binarySearch( d.ordinals, 0, d.size, ordinal( item.getArticle().getId() ) )] = item.getArticle();
+        }
+        String[] names = warehouses;
+        RoutingCost cost = routingCost != null? routingCost :
+            ( warehouse, article, units ) -> Arrays.asList( names ).indexOf( warehouse );
+        for( int attempt = 0; attempt < 3; attempt++ ) {
+            boolean[] tried = new boolean[parts.length];
+            for( int p = cheapest( parts, names, cost, d, articles, tried ); p >= 0;
+                    p = cheapest( parts, names, cost, d, articles, tried ) ) {
+                if( parts[p].reserve( d ) ) {
+                    demands[p] = d.copy();
+                    return demands;
+                }
+                tried[p] = true;
+            }
+            StockTable.Demand[] split = split( parts, names, cost, d, articles );
+            if( split == null )
+                return null;
+            if( StockTable.reserve( parts, split ) )
+                return split;
+        }
+        return null;
+    }
+
+
+    /*
+     * Split demanded units across warehouses in order of their costs by units
+     * available, returns demands by warehouse (null: nothing from the warehouse)
+     * or null if all warehouses together are short of an article.
+     */
+    private static StockTable.Demand[] split( StockTable[] parts, String[] names, RoutingCost cost,
+            StockTable.Demand d, Article[] articles )
+    {
+        StockTable.Demand[] split = new StockTable.Demand[parts.length];
+        for( int i = 0; i < d.size; i++ ) {
+            Integer[] byCost = new Integer[parts.length];
+            long[] costs = new long[parts.length];
+            for( int p = 0; p < parts.length; p++ ) {
+                byCost[p] = p;
+                costs[p] = cost.cost( names[p], articles[i], d.units[i] );
+            }
+            Arrays.sort( byCost, Comparator.comparingLong( ( Integer p ) -> costs[p] ).thenComparingInt( p -> p ) );
+            int remaining = d.units[i];
+            for( int k = 0; k < byCost.length && remaining > 0; k++ ) {
+                int p = byCost[k];
+                int units = Math.min( remaining, Math.max( 0, parts[p].available( d.ordinals[i] ) ) );
+                if( units > 0 ) {
+                    if( split[p] == null ) {
+                        split[p] = new StockTable.Demand();
+                    }
+                    split[p].add( d.ordinals[i], units );
+                    remaining -= units;
+                }
+            }
+            if( remaining > 0 )
+                return null;
+        }
+        for( int p = 0; p < parts.length; p++ ) {
+            if( split[p] != null ) {
+                split[p].merge();
+            }
+        }
+        return split;
+    }
+
+
+    /*
+     * Index of the cheapest warehouse not tried yet that has all demanded units available, -1: none.
+     */
+    private static int cheapest( StockTable[] parts, String[] names, RoutingCost cost,
+            StockTable.Demand d, Article[] articles, boolean[] tried )
+    {
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for( int p = 0; p < parts.length; p++ ) {
+            if( tried[p] )
+                continue;
+            boolean available = true;
+            long c = 0;
+            for( int i = 0; i < d.size && available; i++ ) {
+                available = d.units[i] <= parts[p].available( d.ordinals[i] );
+                c += cost.cost( names[p], articles[i], d.units[i] );
+            }
+            if( available && ( best < 0 || c < bestCost ) ) {
+                best = p;
+                bestCost = c;
+            }
+        }
+        return best;
+    }
+
+
+    /*
+     * Return index of a warehouse.
+     */
+    private int partition( String warehouse ) {
+        int index = warehouse != null? Arrays.asList( warehouses ).indexOf( warehouse ) : -1;
+        if( index < 0 )
+            throw new IllegalArgumentException( "warehouse is null or does not exist: " + warehouse );
+        return index;
+    }
+
+
+    /*
+     * Index of running inventory value by currency and tax class.
+     */
+    private static int valueClass( Currency currency, TAX tax ) {
+        return currency.ordinal() * TAX.values().length + tax.ordinal();
+    }
+
+
+    /*
+     * Set price and value class of an article in all partitions.
+     */
+    private void setPrice( Article article ) {
+        int ordinal = ordinal( article.getId() );
+        int valueClass = valueClass( article.getCurrency(), article.getTax() );
+        synchronized( inventory ) {	// partitions are not added meanwhile
+            for( StockTable part : partitions ) {
+                part.setPrice( ordinal, article.getUnitPrice(), valueClass );
+            }
+        }
+    }
+
+
+    /*
+     * Return ordinal of an article.
+     */
+    private int ordinal(String id) {
+        FrozenCatalog frozen = catalog;
+        int found = frozen != null && id != null? frozen.ordinal(id) : -1;
+        if (found >= 0) {
+            return found;
+        }
+        // not frozen, or an article saved after freeze() that is being registered
+        Integer ordinal = id != null? inventory.get(id) : null;
+        if (ordinal == null) {
+            throw new IllegalArgumentException("id is null or does not exist");
+        }
+        return ordinal;
+    }
+
+
+    /*
+     * Assign the next ordinal to a new article id.
+     */
+    private void register( String id ) {
+        if( inventory.containsKey( id ) )
+            return;
+        synchronized( inventory ) {
+            if( ! inventory.containsKey( id ) ) {
+                int ordinal = inventory.size();
+                for( StockTable part : partitions ) {
+                    part.ensureCapacity( ordinal + 1 );	// before the ordinal becomes visible
+                }
+                if( ordinal == ids.length ) {
+                    ids = Arrays.copyOf( ids, ordinal * 2 );
+                }
+                ids[ordinal] = id;
+                inventory.put( id, ordinal );
+            }
+        }
+    }
+
+
+    /*
+     * Units ordered per article ordinal, sorted by ordinal (order items may
+     * refer to the same article more than once). Returns per-thread scratch space.
+     */
+    private StockTable.Demand demand(Order order) {
+        StockTable.Demand d = demand.get().clear();
+        for (OrderItem item : order.getItems()) {
+            d.add(ordinal(item.getArticle().getId()), item.getUnitsOrdered());
+        }
+        return d.merge();
+    }
+
+
+    /*
+     * Reservation states, transitions from ACTIVE are exclusive (compareAndSet).
+     */
+    private static final int ACTIVE = 0;
+    private static final int COMMITTED = 1;
+    private static final int RELEASED = 2;
+    private static final int EXPIRED = 3;
+
+
+    /**
+     * Units reserved for an order, by warehouse.
+     */
+    private class ReservationImpl implements Reservation {
+        private final InventoryManagerImpl owner = InventoryManagerImpl.this;
+        private final Order order;
+        private final StockTable[] tables;
+        private final StockTable.Demand[] demands;	// null: nothing reserved in the warehouse
+        private final long expiry;
+        private final AtomicInteger state = new AtomicInteger( ACTIVE );
+
+        ReservationImpl( Order order, StockTable[] tables, StockTable.Demand[] demands, long expiry ) {
+            this.order = order;
+            this.tables = tables;
+            this.demands = demands;
+            this.expiry = expiry;
+        }
+
+        void release() {
+            for( int p = 0; p < tables.length; p++ ) {
+                if( demands[p] != null ) {
+                    tables[p].release( demands[p] );
+                }
+            }
+        }
+
+        @Override
+        public Order getOrder() {
+            return order;
+        }
+
+        @Override
+        public long getExpiry() {
+            return expiry;
+        }
+
+        @Override
+        public boolean isActive() {
+            return state.get() == ACTIVE && expiry >= System.currentTimeMillis();
+        }
     }
 }
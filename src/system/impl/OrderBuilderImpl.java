@@ -2,6 +2,8 @@ package system.impl;
 
 import system.InventoryManager;
 import system.OrderBuilder;
+import system.OrderIdGenerator;
+import system.RTE.Configuration;
 import system.RTE.Runtime;
 
 import datamodel.Article;
@@ -9,9 +11,23 @@ import datamodel.Customer;
 import datamodel.Order;
 import system.Repository;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static system.RTE.Configuration.KEY_DEDUPE_IDS;
+import static system.RTE.Configuration.KEY_DEDUPE_WINDOW_MINUTES;
+import static system.RTE.Configuration.KEY_INTAKE_BATCH;
+import static system.RTE.Configuration.KEY_INTAKE_CAPACITY;
+import static system.RTE.Configuration.KEY_INTAKE_FILLERS;
+import static system.RTE.Configuration.KEY_INTAKE_VALIDATORS;
+import static system.RTE.Configuration.KEY_INTAKE_WRITERS;
+
 /**
- * Singleton component that builds orders and stores them in the
- * OrderRepository.
+ * Component that builds orders and stores them in the OrderRepository. Each
+ * Runtime instance owns one OrderBuilderImpl bound to its repositories.
  * 
  * @author fkate
  * @since 0.1.1
@@ -21,64 +37,249 @@ import system.Repository;
 
 class OrderBuilderImpl implements OrderBuilder {
 
-	/**
-	 * static singleton reference to OrderBuilderImpl instance (singleton pattern).
-	 */
-	private static OrderBuilderImpl orderBuilder_instance = null;
-
 	/**
 	 * Repository dependencies.
 	 */
 	private final Repository<Customer> customerRepository;
 	//
-	private final Repository<Article> articleRepository;
-	//
 	private final Repository<Order> orderRepository;
 	//
 	private final InventoryManager inventoryManager;
+	//
+	private final Configuration config;
 
+	/**
+	 * assigns ids to orders accepted without id.
+	 */
+	private final OrderIdGenerator orderIdGenerator;
 
 	/**
-	 * Provide access to RTE OrderBuilderImpl singleton instance (singleton pattern).
+	 * asynchronous intake pipeline, started with the first submitted order.
+	 */
+	private volatile IntakePipeline intake = null;
+
+	/**
+	 * ids of orders accepted recently (probabilistic pre-filter) and ids of
+	 * accepted orders that are not saved yet (backorders, orders in the intake).
+	 */
+	private final OrderIdFilter seen;
+	private final Map<String,Boolean> pending = new ConcurrentHashMap<String,Boolean>();
+
+
+	/**
+	 * Create new OrderBuilderImpl instance for a Runtime.
 	 * 
 	 * @param runtime dependency to resolve Repository dependencies.
-	 * @return
+	 * @return new instance bound to the repositories of runtime.
 	 */
 	public static OrderBuilderImpl getInstance( Runtime runtime ) {
-		if( orderBuilder_instance == null ) {
-			orderBuilder_instance = new OrderBuilderImpl( runtime );
-		}
-		return orderBuilder_instance;
+		return new OrderBuilderImpl( runtime );
 	}
 
 
 	/**
-	 * Private constructor to prevent external instantiation (singleton pattern).
+	 * Private constructor, instances are created with getInstance().
 	 * 
 	 * @param runtime dependency injected from where repository
 	 * dependencies are resolved.
 	 */
 	private OrderBuilderImpl( Runtime runtime ) {
 		this.customerRepository = runtime.getCustomerRepository();
-		this.articleRepository = runtime.getArticleRepository();
 		this.orderRepository = runtime.getOrderRepository();
 		this.inventoryManager = runtime.getInventoryManager();
+		this.config = runtime.getConfiguration();
+		this.orderIdGenerator = runtime.getOrderIdGenerator();
+		this.seen = new OrderIdFilter( setting( KEY_DEDUPE_IDS, 1_000_000 ), 0.01,
+				setting( KEY_DEDUPE_WINDOW_MINUTES, 60 ) * 60_000L );
 	}
 
 
 	/**
-	 * Save order to OrderRepository.
+	 * Fill order from the inventory (deduct units in stock) and save it to
+	 * OrderRepository. Orders that cannot be filled are parked as backorders
+	 * in the InventoryManager, filled and saved after stock was replenished.
+	 * 
+	 * Orders with the id of an order accepted before are duplicates and are
+	 * neither saved nor parked again.
 	 * 
 	 * @param order saved to OrderRepository
-	 * @return chainable self-reference
+	 * @return true if order was saved, false if order waits for stock or is a duplicate
 	 */
 	@Override
 	public boolean accept( Order order ) {
-		boolean validOrder = inventoryManager.isFillable( order );
-		if( validOrder ) {
-			orderRepository.save( order );
+		if( ! claim( order ) )
+			return false;		// duplicate
+		try {
+			boolean filled = inventoryManager.fill( order );
+			if( filled ) {
+				save( order );
+			} else {
+				filled = inventoryManager.backorder( order, this::save );
+			}
+			return filled;
+
+		} catch( RuntimeException e ) {
+			release( order );
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Fill orders from the inventory and save filled orders to OrderRepository
+	 * in one batch, orders that cannot be filled are parked as backorders.
+	 * Orders filled before an order fails (e.g. with an article unknown to
+	 * the inventory) are saved before the exception is rethrown.
+	 *
+	 * @param orders orders to accept
+	 * @return number of accepted orders
+	 * @throws IllegalArgumentException if an order is null or has an unknown article
+	 */
+	@Override
+	public long acceptAll( Iterable<Order> orders ) {
+		List<Order> accepted = new ArrayList<Order>();
+		long filled = 0;
+		Order current = null;
+		try {
+			for( Order order : orders ) {
+				if( ! claim( order ) )
+					continue;	// duplicate
+				current = order;
+				if( inventoryManager.fill( order ) ) {
+					accepted.add( order );
+				} else if( inventoryManager.backorder( order, this::save ) ) {
+					filled++;	// filled meanwhile, saved by callback
+				}
+				current = null;
+			}
+		} catch( RuntimeException e ) {
+			if( current != null ) {
+				release( current );
+			}
+			// stock of orders filled before was deducted: save them before rethrowing
+			try {
+				saveAll( accepted );
+
+			} catch( RuntimeException s ) {
+				accepted.forEach( this::release );
+				e.addSuppressed( s );
+			}
+			throw e;
+		}
+		saveAll( accepted );
+		return accepted.size() + filled;
+	}
+
+
+	/**
+	 * Submit order to the asynchronous intake pipeline (validation, fill and
+	 * persistence stages), blocks while the submission queue is full.
+	 *
+	 * @param order order to submit
+	 * @return future completed with the outcome of the order
+	 */
+	@Override
+	public CompletableFuture<Outcome> submit( Order order ) {
+		if( order == null )
+			throw new IllegalArgumentException( "order is null" );
+		IntakePipeline p = intake;
+		if( p == null ) {
+			synchronized( this ) {
+				if( intake == null ) {
+					intake = new IntakePipeline( inventoryManager, this::save, this::saveAll, this::release,
+						setting( KEY_INTAKE_CAPACITY, 4096 ),
+						setting( KEY_INTAKE_VALIDATORS, 1 ),
+						setting( KEY_INTAKE_FILLERS, 1 ),
+						setting( KEY_INTAKE_WRITERS, 1 ),
+						setting( KEY_INTAKE_BATCH, 64 ) );
+				}
+				p = intake;
+			}
+		}
+		if( ! claim( order ) )
+			return CompletableFuture.completedFuture( Outcome.DUPLICATE );
+		try {
+			return p.submit( order );
+
+		} catch( RuntimeException e ) {
+			release( order );
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Stop the intake pipeline after all submitted orders were processed.
+	 */
+	void shutdown() {
+		IntakePipeline p;
+		synchronized( this ) {
+			p = intake;
+			intake = null;
+		}
+		if( p != null ) {
+			p.shutdown();
+		}
+	}
+
+
+	/*
+	 * Save accepted order (the order repository records new orders in OrderStatistics).
+	 */
+	private void save( Order order ) {
+		orderRepository.save( order );
+		release( order );
+	}
+
+
+	/*
+	 * Save orders in one batch.
+	 */
+	private void saveAll( List<Order> orders ) {
+		orderRepository.saveAll( orders );
+		orders.forEach( this::release );
+	}
+
+
+	/*
+	 * Claim the id of an order for intake, false if an order with the id was
+	 * accepted before: still pending, or saved (possible hits of the filter of
+	 * recent ids are confirmed by a lookup, which includes archived orders).
+	 * Redelivered orders are recognized while their id is in the filter window
+	 * (rte.dedupe.window.minutes). Orders without id are assigned a generated
+	 * id. The claim is released when the order is saved or rejected.
+	 */
+	private boolean claim( Order order ) {
+		if( order == null )
+			throw new IllegalArgumentException( "order is null" );
+		if( order.getId() == null ) {
+			order.setId( orderIdGenerator.nextId() );
+		}
+		String id = order.getId();
+		if( pending.putIfAbsent( id, Boolean.TRUE ) != null )
+			return false;
+		// checked after the claim: a saved order was added before its claim was released
+		if( seen.mightContain( id ) && orderRepository.findById( id ).isPresent() ) {
+			pending.remove( id );
+			return false;
 		}
-		return validOrder;
+		seen.add( id );
+		return true;
+	}
+
+
+	private void release( Order order ) {
+		if( order.getId() != null ) {
+			pending.remove( order.getId() );
+		}
+	}
+
+
+	/*
+	 * Intake setting from configuration or default.
+	 */
+	private int setting( String key, int defaultValue ) {
+		return config.get( key ).map( Integer::parseInt ).orElse( defaultValue );
 	}
 
 
@@ -103,9 +304,9 @@ class OrderBuilderImpl implements OrderBuilder {
 		Customer brigitte = crep.findById( 660380 ).get();
 		Customer joel = crep.findById( 582596 ).get();
 
-		Repository<Article> arep = articleRepository;
+		InventoryManager arep = inventoryManager;
 		/*
-		 * Look up articles from ArticleRepository.
+		 * Look up articles from InventoryManager (frozen catalog after loadData()).
 		 */
 		Article tasse = arep.findById( "SKU-458362" ).get();
 		Article becher = arep.findById( "SKU-693856" ).get();
@@ -125,10 +326,10 @@ class OrderBuilderImpl implements OrderBuilder {
 		Order o8592 = new Order( eric )	// new order for Eric
 				.setId( "8592356245" )	// assign order-id: 8592356245
 				// add items to order
-				.addItem( teller, 4 )	// 4 Teller, 4x 6.49 
-				.addItem( becher, 8 )	// 8 Becher, 8x 1.49 
-				.addItem( buch_OOP, 1 )	// 1 Buch "OOP", 1x 79.95 , 7% MwSt (5.23)
-				.addItem( tasse, 4 );	// 4 Tassen, 4x 2.99 
+				.addItem( teller, 4 )	// 4 Teller, 4x 6.49 �
+				.addItem( becher, 8 )	// 8 Becher, 8x 1.49 �
+				.addItem( buch_OOP, 1 )	// 1 Buch "OOP", 1x 79.95 �, 7% MwSt (5.23�)
+				.addItem( tasse, 4 );	// 4 Tassen, 4x 2.99 �
 		//
 		// Anne's order
 		Order o3563 = new Order( anne )
@@ -209,20 +410,21 @@ class OrderBuilderImpl implements OrderBuilder {
 		/*
 		 * Save orders to OrderRepository.
 		 */
-		accept( o8592 );
-		accept( o3563 );
-		accept( o5234 );
-		accept( o6135 );
-		accept( o7356 );
-		accept( o4450 );
-		accept( o6173 );	// total value (all orders):  |   642.70|   76.78|
+		acceptAll( List.of(
+			o8592,
+			o3563,
+			o5234,
+			o6135,
+			o7356,
+			o4450,
+			o6173 ) );	// total value (all orders):  |   642.70�|   76.78�|
 		//
 //		accept( o6174 );
 //		accept( o6175 );
 //		accept( o6176 );
 //		accept( o6177 );
 //		accept( o6178 );
-//		accept( o6179 );	// total value (all orders):  | 1,414.73|  176.40|
+//		accept( o6179 );	// total value (all orders):  | 1,414.73�|  176.40�|
 
 		return this;
 	}
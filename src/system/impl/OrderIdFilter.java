@@ -0,0 +1,144 @@
+package system.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Rotating Bloom filter of order ids seen within a time window. An id that
+ * was added is always reported as possibly seen while it is in one of two
+ * generations (current and previous window), an id that was not added is
+ * reported as possibly seen with the configured false-positive probability.
+ * Callers confirm possible hits exactly (e.g. by a repository lookup), so
+ * new ids, the common case, cost only k bit reads.
+ * <p>
+ * Each generation takes {@code -n ln(p) / ln(2)^2} bits for n ids per window
+ * (about 1.2 bytes per id at p = 1%). When a window ends, the current
+ * generation becomes the previous one and a new empty generation is started,
+ * ids older than two windows are forgotten. Bits are set with compareAndSet,
+ * adds and lookups do not lock.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class OrderIdFilter {
+
+    /**
+     * number of bits (multiple of 64) and number of hash functions per generation.
+     */
+    private final int bits;
+    private final int hashes;
+
+    /**
+     * window length in milliseconds.
+     */
+    private final long window;
+
+    /**
+     * current and previous generation, replaced together on rotation.
+     */
+    private volatile AtomicLongArray[] generations;
+    private volatile long windowEnd;
+
+
+    /**
+     * Create filter.
+     *
+     * @param expectedIds expected number of ids per window.
+     * @param falsePositives false-positive probability, e.g. 0.01.
+     * @param windowMillis window length in milliseconds.
+     * @throws IllegalArgumentException if an argument is out of range.
+     */
+    OrderIdFilter( long expectedIds, double falsePositives, long windowMillis ) {
+        if( expectedIds < 1 || falsePositives <= 0 || falsePositives >= 1 || windowMillis < 1 )
+            throw new IllegalArgumentException( "illegal filter size, probability or window" );
+        double ln2 = Math.log( 2 );
+        long m = (long)Math.ceil( - expectedIds * Math.log( falsePositives ) / ( ln2 * ln2 ) );
+        m = Math.min( ( m + 63 ) & ~63L, Integer.MAX_VALUE & ~63L );
+        this.bits = (int)m;
+        this.hashes = Math.max( 1, (int)Math.round( (double)m / expectedIds * ln2 ) );
+        this.window = windowMillis;
+        this.generations = new AtomicLongArray[] { new AtomicLongArray( bits / 64 ), new AtomicLongArray( bits / 64 ) };
+        this.windowEnd = System.currentTimeMillis() + windowMillis;
+    }
+
+
+    /**
+     * True if id may have been added within the last one or two windows,
+     * false if id was certainly not added within the last window.
+     *
+     * @param id order id.
+     * @return true if id was possibly added.
+     */
+    boolean mightContain( String id ) {
+        long h = hash( id );
+        AtomicLongArray[] g = generations;
+        return contains( g[0], h ) || contains( g[1], h );
+    }
+
+
+    /**
+     * Add id to the current generation, rotates generations when the window ended.
+     *
+     * @param id order id.
+     */
+    void add( String id ) {
+        if( System.currentTimeMillis() >= windowEnd ) {
+            rotate();
+        }
+        long h = hash( id );
+        AtomicLongArray words = generations[0];
+        int h1 = (int)h;
+        int h2 = (int)( h >>> 32 ) | 1;
+        for( int i = 0; i < hashes; i++ ) {
+            int bit = Math.floorMod( h1 + i * h2, bits );
+            long mask = 1L << bit;
+            int w = bit >>> 6;
+            long v;
+            while( ( ( v = words.get( w ) ) & mask ) == 0 && ! words.compareAndSet( w, v, v | mask ) ) { }
+        }
+    }
+
+
+    private boolean contains( AtomicLongArray words, long h ) {
+        int h1 = (int)h;
+        int h2 = (int)( h >>> 32 ) | 1;
+        for( int i = 0; i < hashes; i++ ) {
+            int bit = Math.floorMod( h1 + i * h2, bits );
+            if( ( words.get( bit >>> 6 ) & ( 1L << bit ) ) == 0 )
+                return false;
+        }
+        return true;
+    }
+
+
+    private synchronized void rotate() {
+        long now = System.currentTimeMillis();
+        if( now < windowEnd )
+            return;
+        AtomicLongArray[] g = generations;
+        // more than one window passed: the current generation is outdated as well
+        AtomicLongArray previous = now < windowEnd + window? g[0] : new AtomicLongArray( bits / 64 );
+        generations = new AtomicLongArray[] { new AtomicLongArray( bits / 64 ), previous };
+        windowEnd = now + window;
+    }
+
+
+    /*
+     * 64-bit hash of the characters of an id (FNV-1a, finalized with the
+     * MurmurHash3 mixer), halves are used for double hashing.
+     */
+    private static long hash( String id ) {
+        long h = 0xcbf29ce484222325L;
+        for( int i = 0; i < id.length(); i++ ) {
+            h = ( h ^ id.charAt( i ) ) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,341 @@
+package system.impl;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.InventoryManager;
+import system.OrderBuilder;
+import system.OrderBuilder.Outcome;
+import system.Repository;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP endpoint on the JDK's {@code com.sun.net.httpserver}:
+ * <pre>
+ *  POST /orders            {"id": "...", "customer": 892474, "items": [{"article": "SKU-458362", "units": 4}, ...]}
+ *                          201: filled and saved, 202: waits as backorder, 409: duplicate of an order accepted before,
+ *                          400: malformed or unknown customer/article, 422: rejected by validation,
+ *                          without "id" the order is assigned a generated id, returned in the response
+ *  GET  /inventory         [{"id": "...", "unitsInStock": n, "unitsAvailable": n}, ...] (streamed)
+ *  GET  /inventory/{id}    {"id": "...", "unitsInStock": n, "unitsAvailable": n}, 404: unknown article
+ * </pre>
+ * Open connections are held by the server's selector thread, requests are
+ * handled on one virtual thread each when the JDK provides them (Java 21+,
+ * looked up reflectively since the module targets Java 17), on a fixed pool
+ * of platform threads otherwise. Request bodies are parsed with a streaming
+ * JSON parser into Order objects, orders go through the asynchronous intake
+ * of the OrderBuilder and the response is written when the order's future
+ * completes, so handler threads do not wait for the pipeline.
+ * <p>
+ * The JDK server reads its settings from system properties once, when its
+ * classes are loaded. For many keep-alive connections start the JVM with
+ * {@code -Dsun.net.httpserver.nodelay=true} (response headers and body are
+ * written separately, without TCP_NODELAY the body waits for the client's
+ * delayed ACK) and {@code -Dsun.net.httpserver.maxIdleConnections=16384}
+ * (default: 200 connections held open between requests).
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class OrderServer {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Repository<Customer> customerRepository;
+    private final InventoryManager inventoryManager;
+    private final OrderBuilder orderBuilder;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+
+    /**
+     * Create server bound to a local port, call start() to accept requests.
+     *
+     * @param port port, 0: any free port.
+     * @param backlog maximum number of connections queued before they are accepted.
+     * @param threads number of handler threads if virtual threads are not available.
+     * @param customerRepository resolves customers of posted orders.
+     * @param inventoryManager resolves articles and answers stock queries.
+     * @param orderBuilder accepts posted orders.
+     * @throws IOException if the port cannot be bound.
+     */
+    OrderServer( int port, int backlog, int threads, Repository<Customer> customerRepository,
+            InventoryManager inventoryManager, OrderBuilder orderBuilder ) throws IOException
+    {
+        this.customerRepository = customerRepository;
+        this.inventoryManager = inventoryManager;
+        this.orderBuilder = orderBuilder;
+        this.executor = newExecutor( threads );
+        this.server = HttpServer.create( new InetSocketAddress( port ), backlog );
+        server.createContext( "/orders", handler( this::orders ) );
+        server.createContext( "/inventory", handler( this::inventory ) );
+        server.setExecutor( executor );
+    }
+
+
+    void start() {
+        server.start();
+    }
+
+
+    /**
+     * Port the server is bound to.
+     *
+     * @return local port.
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+
+    /**
+     * Stop accepting connections, wait up to a second for open exchanges.
+     */
+    void stop() {
+        server.stop( 1 );
+        executor.shutdown();
+        try {
+            executor.awaitTermination( 1, TimeUnit.SECONDS );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /*
+     * POST /orders: parse order from the request body and submit it.
+     */
+    private void orders( HttpExchange exchange ) throws IOException {
+        if( ! exchange.getRequestMethod().equals( "POST" ) || ! exchange.getRequestURI().getPath().equals( "/orders" ) ) {
+            respond( exchange, 405, error( "POST /orders" ) );
+            return;
+        }
+        Order order = readOrder( exchange.getRequestBody() );
+        orderBuilder.submit( order ).whenComplete( ( outcome, e ) -> {
+            Runnable response = () -> respond( exchange, order, outcome, e );
+            try {
+                executor.execute( response );
+            } catch( RejectedExecutionException rejected ) {
+                respond( exchange, order, null, rejected );	// server stopped, answer on the completing thread
+            }
+        });
+    }
+
+
+    /*
+     * Answer a submitted order with the status of its outcome, 503 if it failed.
+     */
+    private static void respond( HttpExchange exchange, Order order, Outcome outcome, Throwable e ) {
+        try {
+            if( e != null ) {
+                respond( exchange, 503, error( e.getMessage() ) );
+                return;
+            }
+            int status;
+            switch( outcome ) {
+            case FILLED: status = 201; break;
+            case BACKORDERED: status = 202; break;
+            case DUPLICATE: status = 409; break;
+            default: status = 422; break;
+            }
+            respond( exchange, status, json( g -> {
+                g.writeStartObject();
+                g.writeStringField( "id", order.getId() );
+                g.writeStringField( "status", outcome.name().toLowerCase() );
+                g.writeEndObject();
+            }));
+        } catch( IOException ioe ) {
+            exchange.close();	// client went away
+        }
+    }
+
+
+    /*
+     * GET /inventory and /inventory/{id}: units in stock and available.
+     */
+    private void inventory( HttpExchange exchange ) throws IOException {
+        if( ! exchange.getRequestMethod().equals( "GET" ) ) {
+            respond( exchange, 405, error( "GET /inventory[/{id}]" ) );
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        if( path.equals( "/inventory" ) || path.equals( "/inventory/" ) ) {
+            exchange.getResponseHeaders().set( "Content-Type", "application/json" );
+            exchange.sendResponseHeaders( 200, 0 );	// chunked, rows are streamed
+            try( OutputStream out = exchange.getResponseBody(); JsonGenerator g = JSON.createGenerator( out ) ) {
+                g.writeStartArray();
+                for( Article article : inventoryManager.findAll() ) {
+                    writeStock( g, article.getId() );
+                }
+                g.writeEndArray();
+            }
+            return;
+        }
+        String id = path.substring( path.lastIndexOf( '/' ) + 1 );
+        if( inventoryManager.findById( id ).isEmpty() ) {
+            respond( exchange, 404, error( "unknown article: " + id ) );
+            return;
+        }
+        respond( exchange, 200, json( g -> writeStock( g, id ) ) );
+    }
+
+
+    private void writeStock( JsonGenerator g, String id ) throws IOException {
+        g.writeStartObject();
+        g.writeStringField( "id", id );
+        g.writeNumberField( "unitsInStock", inventoryManager.getUnitsInStock( id ) );
+        g.writeNumberField( "unitsAvailable", inventoryManager.getUnitsAvailable( id ) );
+        g.writeEndObject();
+    }
+
+
+    /*
+     * Parse order from a JSON stream token by token, customer and articles are
+     * resolved while parsing.
+     */
+    private Order readOrder( InputStream in ) throws IOException {
+        String id = null;
+        Customer customer = null;
+        List<Article> articles = new ArrayList<Article>();
+        List<Integer> units = new ArrayList<Integer>();
+        try( JsonParser p = JSON.createParser( in ) ) {
+            if( p.nextToken() != JsonToken.START_OBJECT )
+                throw new IllegalArgumentException( "order is no JSON object" );
+            while( p.nextToken() == JsonToken.FIELD_NAME ) {
+                String field = p.getCurrentName();
+                JsonToken token = p.nextToken();
+                if( field.equals( "id" ) ) {
+                    id = p.getValueAsString();
+                } else if( field.equals( "customer" ) && token == JsonToken.VALUE_NUMBER_INT ) {
+                    long customerId = p.getLongValue();
+                    customer = customerRepository.findById( customerId )
+                        .orElseThrow( () -> new IllegalArgumentException( "unknown customer: " + customerId ) );
+                } else if( field.equals( "items" ) && token == JsonToken.START_ARRAY ) {
+                    while( p.nextToken() == JsonToken.START_OBJECT ) {
+                        Optional<Article> article = Optional.empty();
+                        int u = 0;
+                        while( p.nextToken() == JsonToken.FIELD_NAME ) {
+                            String name = p.getCurrentName();
+                            JsonToken value = p.nextToken();
+                            if( name.equals( "article" ) ) {
+                                String articleId = p.getValueAsString();
+                                article = Optional.of( inventoryManager.findById( articleId )
+                                    .orElseThrow( () -> new IllegalArgumentException( "unknown article: " + articleId ) ) );
+                            } else if( name.equals( "units" ) && value == JsonToken.VALUE_NUMBER_INT ) {
+                                u = p.getIntValue();
+                            } else {
+                                p.skipChildren();
+                            }
+                        }
+                        if( article.isEmpty() || u <= 0 )
+                            throw new IllegalArgumentException( "item needs an article and units > 0" );
+                        articles.add( article.get() );
+                        units.add( u );
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        if( customer == null || articles.isEmpty() )
+            throw new IllegalArgumentException( "order needs customer and items" );
+        Order order = new Order( customer ).setId( id );
+        for( int i = 0; i < articles.size(); i++ ) {
+            order.addItem( articles.get( i ), units.get( i ) );
+        }
+        return order;
+    }
+
+
+    /*
+     * Wrap a handler, malformed requests are answered with 400, a shut down intake with 503.
+     */
+    private static HttpHandler handler( HttpHandler handler ) {
+        return exchange -> {
+            try {
+                handler.handle( exchange );
+            } catch( JsonProcessingException | IllegalArgumentException e ) {
+                respond( exchange, 400, error( e.getMessage() ) );
+            } catch( IllegalStateException e ) {
+                respond( exchange, 503, error( e.getMessage() ) );
+            }
+        };
+    }
+
+
+    private static void respond( HttpExchange exchange, int status, byte[] body ) throws IOException {
+        exchange.getResponseHeaders().set( "Content-Type", "application/json" );
+        exchange.sendResponseHeaders( status, body.length );
+        try( OutputStream out = exchange.getResponseBody() ) {
+            out.write( body );
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface JsonWriter {
+        void write( JsonGenerator g ) throws IOException;
+    }
+
+
+    private static byte[] json( JsonWriter writer ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 128 );
+        try( JsonGenerator g = JSON.createGenerator( bytes ) ) {
+            writer.write( g );
+        }
+        return bytes.toByteArray();
+    }
+
+
+    private static byte[] error( String message ) throws IOException {
+        return json( g -> {
+            g.writeStartObject();
+            g.writeStringField( "error", message );
+            g.writeEndObject();
+        });
+    }
+
+
+    /*
+     * One virtual thread per request if the JDK provides them, a fixed pool of
+     * daemon platform threads otherwise.
+     */
+    private static ExecutorService newExecutor( int threads ) {
+        try {
+            return (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        } catch( ReflectiveOperationException e ) {
+            AtomicInteger count = new AtomicInteger( 0 );
+            return Executors.newFixedThreadPool( threads, r -> {
+                Thread t = new Thread( r, "order-server-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package system.impl;
+
+import datamodel.Customer;
+import datamodel.Order;
+import system.Calculator;
+import system.OrderStatistics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Local implementation of the OrderStatistics interface. Per-customer aggregates
+ * are immutable snapshots that are replaced with each recorded order. The
+ * leaderboard is a concurrent skip list ordered by total value, top-N queries
+ * iterate the first N entries without sorting.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class OrderStatisticsImpl implements OrderStatistics {
+
+    /**
+     * leaderboard order: highest value first, ties broken by customer id and
+     * order count, which makes snapshots of the same customer distinct.
+     */
+    private static final Comparator<Aggregate> BY_VALUE = Comparator
+            .comparingLong( ( Aggregate a ) -> a.value ).reversed()
+            .thenComparingLong( a -> a.customer.getId() )
+            .thenComparingLong( a -> a.count );
+
+    /**
+     * dependency on Calculator to calculate order values.
+     */
+    private final Calculator calculator;
+
+    /**
+     * current aggregate by customer id.
+     */
+    private final Map<Long,Aggregate> aggregates = new ConcurrentHashMap<Long,Aggregate>();
+
+    /**
+     * current aggregates ordered by total value.
+     */
+    private final ConcurrentSkipListSet<Aggregate> leaderboard = new ConcurrentSkipListSet<Aggregate>( BY_VALUE );
+
+
+    OrderStatisticsImpl( Calculator calculator ) {
+        this.calculator = calculator;
+    }
+
+
+    /**
+     * Add an accepted order to the aggregates of its customer.
+     *
+     * @param order accepted order.
+     */
+    void record( Order order ) {
+        long value = calculator.calculateValue( order );
+        long vat = calculator.calculateIncludedVAT( order );
+        Customer customer = order.getCustomer();
+        aggregates.compute( customer.getId(), ( id, previous ) -> {
+            Aggregate next = previous == null?
+                    new Aggregate( customer, 1, value, vat ) :
+                    new Aggregate( customer, previous.count + 1, previous.value + value, previous.vat + vat );
+            // add before remove so readers always find the customer on the leaderboard
+            leaderboard.add( next );
+            if( previous != null ) {
+                leaderboard.remove( previous );
+            }
+            return next;
+        });
+    }
+
+
+    @Override
+    public Optional<CustomerStatistics> getCustomerStatistics( long customerId ) {
+        return Optional.ofNullable( aggregates.get( customerId ) );
+    }
+
+
+    @Override
+    public List<CustomerStatistics> getTopCustomers( int n ) {
+        List<CustomerStatistics> top = new ArrayList<CustomerStatistics>( Math.max( Math.min( n, aggregates.size() ), 0 ) );
+        Iterator<Aggregate> it = leaderboard.iterator();
+        while( top.size() < n && it.hasNext() ) {
+            Aggregate a = it.next();
+            if( aggregates.get( a.customer.getId() ) == a ) {	// skip snapshot being replaced
+                top.add( a );
+            }
+        }
+        return top;
+    }
+
+
+    @Override
+    public long count() {
+        return aggregates.size();
+    }
+
+
+    /**
+     * Immutable aggregate snapshot of one customer.
+     */
+    private static class Aggregate implements CustomerStatistics {
+        private final Customer customer;
+        private final long count;
+        private final long value;
+        private final long vat;
+
+        Aggregate( Customer customer, long count, long value, long vat ) {
+            this.customer = customer;
+            this.count = count;
+            this.value = value;
+            this.vat = vat;
+        }
+
+        @Override
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        @Override
+        public long getOrderCount() {
+            return count;
+        }
+
+        @Override
+        public long getTotalValue() {
+            return value;
+        }
+
+        @Override
+        public long getTotalVAT() {
+            return vat;
+        }
+    }
+}
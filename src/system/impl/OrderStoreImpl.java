@@ -0,0 +1,608 @@
+package system.impl;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.OrderItem;
+import system.OrderStore;
+import system.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local implementation of the OrderStore interface. Orders are held in one
+ * bucket per day of their creation date (local time zone). Archived buckets
+ * are written as GZIP-compressed files "orders-yyyy-mm-dd.gz" that reference
+ * customers and articles by id, which are resolved from their repositories
+ * when a file is read. Ids of archived orders are indexed by their 64-bit
+ * hashes (sorted per day, 8 bytes per order), findById() reads the archive
+ * file of a day only if the hash of the id is in its index.
+ * <p>
+ * Archiving takes a snapshot of the expired buckets under the lock, compresses
+ * and writes them outside the lock and removes the archived orders under the
+ * lock again, so reads and saves are not blocked by file I/O. Retention runs
+ * on a background thread when a save starts a new day bucket.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class OrderStoreImpl implements OrderStore {
+
+    /**
+     * dependencies to resolve customers and articles of archived orders.
+     */
+    private final Repository<Customer> customerRepository;
+    private final Repository<Article> articleRepository;
+
+    /**
+     * directory of archive files.
+     */
+    private final File archiveDir;
+
+    /**
+     * retention in days, buckets older are archived when a new day starts, {@code <= 0}: no retention.
+     */
+    private final int retentionDays;
+
+    /**
+     * hot buckets by epoch day, orders in insertion order.
+     */
+    private final TreeMap<Long,LinkedHashMap<String,Order>> buckets = new TreeMap<Long,LinkedHashMap<String,Order>>();
+
+    /**
+     * epoch day of hot orders by order id.
+     */
+    private final Map<String,Long> dayById = new HashMap<String,Long>();
+
+    /**
+     * sorted hashes of the ids of archived orders by epoch day.
+     */
+    private final TreeMap<Long,long[]> archived = new TreeMap<Long,long[]>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * held for a whole archive run (read, merge and write of archive files),
+     * archive runs do not overlap.
+     */
+    private final Object archiving = new Object();
+
+    /**
+     * background thread applying retention, started with the first new day,
+     * and flag of a retention run that was requested but has not started.
+     */
+    private ExecutorService retention = null;
+    private final AtomicBoolean retentionPending = new AtomicBoolean( false );
+
+    /**
+     * listener of orders saved with an id that was not saved before, null: none.
+     */
+    private volatile Consumer<Order> listener = null;
+
+    private static final System.Logger LOG = System.getLogger( OrderStoreImpl.class.getName() );
+
+
+    OrderStoreImpl( Repository<Customer> customerRepository, Repository<Article> articleRepository,
+            String archiveDir, int retentionDays )
+    {
+        this.customerRepository = customerRepository;
+        this.articleRepository = articleRepository;
+        this.archiveDir = new File( archiveDir );
+        this.retentionDays = retentionDays;
+    }
+
+
+    @Override
+    public Optional<Order> findById( long id ) {
+        return findById( String.valueOf( id ) );
+    }
+
+
+    /**
+     * Return order held in memory or, if it was archived, read from its archive file.
+     *
+     * @param id order id.
+     * @return order or empty if no order with id was saved.
+     * @throws RuntimeException if an archive file cannot be read.
+     */
+    @Override
+    public Optional<Order> findById( String id ) {
+        if( id == null )
+            return Optional.empty();
+        List<Long> coldDays;
+        lock.readLock().lock();
+        try {
+            Long day = dayById.get( id );
+            if( day != null )
+                return Optional.of( buckets.get( day ).get( id ) );
+            coldDays = archivedDays( hash( id ) );
+        } finally {
+            lock.readLock().unlock();
+        }
+        for( Long day : coldDays ) {	// read archive files outside the lock
+            for( Order order : readArchive( day ) ) {
+                if( order.getId().equals( id ) )
+                    return Optional.of( order );
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    /**
+     * Return orders held in memory or read from archive files (each file is
+     * read once).
+     *
+     * @param ids order ids.
+     * @return orders found in the order of ids, missing orders are skipped.
+     * @throws RuntimeException if an archive file cannot be read.
+     */
+    @Override
+    public Iterable<Order> findAllById( Collection<String> ids ) {
+        Map<String,Order> found = new HashMap<String,Order>();
+        Map<Long,List<String>> coldDays = new TreeMap<Long,List<String>>();
+        lock.readLock().lock();
+        try {
+            for( String id : ids ) {
+                Long day = id != null? dayById.get( id ) : null;
+                if( day != null ) {
+                    found.put( id, buckets.get( day ).get( id ) );
+                } else if( id != null ) {
+                    for( Long d : archivedDays( hash( id ) ) ) {
+                        coldDays.computeIfAbsent( d, k -> new ArrayList<String>() ).add( id );
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        coldDays.forEach( ( day, wanted ) -> {	// read archive files outside the lock
+            for( Order order : readArchive( day ) ) {
+                if( wanted.contains( order.getId() ) )
+                    found.putIfAbsent( order.getId(), order );
+            }
+        });
+        List<Order> result = new ArrayList<Order>( found.size() );
+        for( String id : ids ) {
+            Order order = found.get( id );
+            if( order != null )
+                result.add( order );
+        }
+        return result;
+    }
+
+
+    @Override
+    public Iterable<Order> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Order> all = new ArrayList<Order>( dayById.size() );
+            buckets.values().forEach( bucket -> all.addAll( bucket.values() ) );
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return dayById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public Order save( Order order ) {
+        if( order == null || order.getId() == null )
+            return null;
+        boolean newDay;
+        List<Order> added = new ArrayList<Order>( 1 );
+        lock.writeLock().lock();
+        try {
+            newDay = put( order, added );
+        } finally {
+            lock.writeLock().unlock();
+        }
+        added( added );
+        if( newDay ) {
+            applyRetention();
+        }
+        return order;
+    }
+
+
+    @Override
+    public Iterable<Order> saveAll( Iterable<Order> orders ) {
+        List<Order> saved = new ArrayList<Order>();
+        List<Order> added = new ArrayList<Order>();
+        boolean newDay = false;
+        lock.writeLock().lock();
+        try {
+            for( Order order : orders ) {
+                if( order != null && order.getId() != null ) {
+                    newDay |= put( order, added );
+                    saved.add( order );
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        added( added );
+        if( newDay ) {
+            applyRetention();
+        }
+        return saved;
+    }
+
+
+    @Override
+    public Iterable<Order> findByCreationDate( Date from, Date to ) {
+        if( from == null || to == null )
+            throw new IllegalArgumentException( "illegal range: null" );
+        long fromDay = epochDay( from.getTime() );
+        long toDay = epochDay( to.getTime() );
+        List<Order> found = new ArrayList<Order>();
+        if( fromDay > toDay )
+            return found;
+        //
+        Map<Long,List<Order>> hot = new HashMap<Long,List<Order>>();
+        List<Long> coldDays;
+        lock.readLock().lock();
+        try {
+            buckets.subMap( fromDay, true, toDay, true )
+                .forEach( ( day, bucket ) -> hot.put( day, new ArrayList<Order>( bucket.values() ) ) );
+            coldDays = new ArrayList<Long>( archived.subMap( fromDay, true, toDay, true ).keySet() );
+        } finally {
+            lock.readLock().unlock();
+        }
+        // orders by id per day, orders held in memory replace archived copies
+        // (an order is in both while its bucket is being archived)
+        TreeMap<Long,Map<String,Order>> days = new TreeMap<Long,Map<String,Order>>();
+        for( Long day : coldDays ) {	// read archive files outside the lock
+            Map<String,Order> orders = days.computeIfAbsent( day, d -> new LinkedHashMap<String,Order>() );
+            readArchive( day ).forEach( order -> orders.put( order.getId(), order ) );
+        }
+        hot.forEach( ( day, list ) -> {
+            Map<String,Order> orders = days.computeIfAbsent( day, d -> new LinkedHashMap<String,Order>() );
+            list.forEach( order -> orders.put( order.getId(), order ) );
+        });
+        for( Map<String,Order> orders : days.values() ) {
+            for( Order order : orders.values() ) {
+                long t = order.getCreationDate().getTime();
+                if( t >= from.getTime() && t < to.getTime() )
+                    found.add( order );
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Move all day buckets that end before a date into archive files. Orders
+     * saved into a bucket while it is written stay in memory until the next run.
+     *
+     * @param before buckets of days before this date are archived.
+     * @return number of orders archived.
+     * @throws IllegalArgumentException if before is null.
+     * @throws IOException if an archive file cannot be read or written, orders
+     * of the bucket stay in memory then.
+     */
+    @Override
+    public long archive( Date before ) throws IOException {
+        if( before == null )
+            throw new IllegalArgumentException( "illegal date: null" );
+        long beforeDay = epochDay( before.getTime() );
+        long count = 0;
+        synchronized( archiving ) {
+            TreeMap<Long,List<Order>> expired = new TreeMap<Long,List<Order>>();
+            lock.readLock().lock();
+            try {
+                buckets.headMap( beforeDay, false )
+                    .forEach( ( day, bucket ) -> expired.put( day, new ArrayList<Order>( bucket.values() ) ) );
+            } finally {
+                lock.readLock().unlock();
+            }
+            for( Map.Entry<Long,List<Order>> entry : expired.entrySet() ) {
+                long day = entry.getKey();
+                // merge with orders archived before, saved orders replace archived copies
+                // (archived is only changed by archive runs, no lock needed to read it here)
+                Map<String,Order> orders = new LinkedHashMap<String,Order>();
+                if( archived.containsKey( day ) ) {
+                    read( day ).forEach( order -> orders.put( order.getId(), order ) );
+                }
+                entry.getValue().forEach( order -> orders.put( order.getId(), order ) );
+                write( day, orders.values() );
+                //
+                lock.writeLock().lock();
+                try {
+                    LinkedHashMap<String,Order> bucket = buckets.get( day );
+                    for( Order order : entry.getValue() ) {
+                        // orders replaced by a save meanwhile stay in memory
+                        if( bucket != null && bucket.remove( order.getId(), order ) ) {
+                            dayById.remove( order.getId(), day );
+                            count++;
+                        }
+                    }
+                    if( bucket != null && bucket.isEmpty() ) {
+                        buckets.remove( day );
+                    }
+                    archived.put( day, hashes( orders.keySet() ) );
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Stop the retention thread after a running retention has finished.
+     */
+    void shutdown() {
+        ExecutorService executor;
+        synchronized( this ) {
+            executor = retention;
+            retention = null;
+        }
+        if( executor != null ) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination( 1, TimeUnit.MINUTES );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    @Override
+    public long countArchived() {
+        lock.readLock().lock();
+        try {
+            return archived.values().stream().mapToLong( hashes -> hashes.length ).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    /*
+     * Put order into the bucket of its creation day, returns true if a new
+     * bucket was created. Orders with an id that is neither held in memory nor
+     * archived are collected in added. Caller holds write lock.
+     */
+    private boolean put( Order order, List<Order> added ) {
+        long day = epochDay( order.getCreationDate().getTime() );
+        Long previous = dayById.put( order.getId(), day );
+        if( previous == null && ( archived.isEmpty() || archivedDays( hash( order.getId() ) ).isEmpty() ) ) {
+            added.add( order );
+        }
+        if( previous != null && previous != day ) {
+            buckets.get( previous ).remove( order.getId() );
+        }
+        boolean newDay = ! buckets.containsKey( day );
+        buckets.computeIfAbsent( day, d -> new LinkedHashMap<String,Order>() ).put( order.getId(), order );
+        return newDay;
+    }
+
+
+    /*
+     * Archive buckets older than the retention period on the retention thread,
+     * a request is dropped while an earlier one has not started. Orders of
+     * buckets that cannot be archived stay in memory and are archived by a
+     * later run.
+     */
+    private void applyRetention() {
+        if( retentionDays <= 0 || ! retentionPending.compareAndSet( false, true ) )
+            return;
+        ExecutorService executor;
+        synchronized( this ) {
+            if( retention == null ) {
+                retention = Executors.newSingleThreadExecutor( r -> {
+                    Thread t = new Thread( r, "order-retention" );
+                    t.setDaemon( true );
+                    return t;
+                });
+            }
+            executor = retention;
+        }
+        executor.execute( () -> {
+            retentionPending.set( false );
+            long threshold = LocalDate.now().minusDays( retentionDays )
+                    .atStartOfDay( ZoneId.systemDefault() ).toInstant().toEpochMilli();
+            try {
+                archive( new Date( threshold ) );
+            } catch( IOException | RuntimeException e ) {
+                LOG.log( System.Logger.Level.WARNING, "cannot archive orders to: " + archiveDir + ", orders stay in memory", e );
+            }
+        });
+    }
+
+
+    /*
+     * Write orders of a day to a temporary file that replaces the archive file,
+     * readers see either the old or the new file.
+     */
+    private void write( long day, Collection<Order> orders ) throws IOException {
+        if( ! archiveDir.exists() )
+            archiveDir.mkdirs();
+        File tmp = new File( archiveDir, archiveFile( day ).getName() + ".tmp" );
+        try (
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+                    new GZIPOutputStream( new FileOutputStream( tmp ) ) ) );
+        ) {
+            out.writeInt( orders.size() );
+            for( Order order : orders ) {
+                out.writeUTF( order.getId() );
+                out.writeLong( order.getCreationDate().getTime() );
+                out.writeLong( order.getCustomer().getId() );
+                out.writeInt( order.itemsCount() );
+                for( OrderItem item : order.getItems() ) {
+                    out.writeUTF( item.getArticle().getId() );
+                    out.writeInt( item.getUnitsOrdered() );
+                }
+            }
+        }
+        File file = archiveFile( day );
+        try {
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch( AtomicMoveNotSupportedException e ) {
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+
+    /*
+     * Read orders of a day. Orders refer to customers and articles by id,
+     * a reference that cannot be resolved fails the read: nothing is dropped
+     * from an archive silently.
+     */
+    private List<Order> read( long day ) throws IOException {
+        List<Order> orders = new ArrayList<Order>();
+        try (
+            DataInputStream in = new DataInputStream( new BufferedInputStream(
+                    new GZIPInputStream( new FileInputStream( archiveFile( day ) ) ) ) );
+        ) {
+            for( int n = in.readInt(); n > 0; n-- ) {
+                String id = in.readUTF();
+                long creationDate = in.readLong();
+                Optional<Customer> customer = customerRepository.findById( in.readLong() );
+                Order order = customer.isPresent()? new Order( customer.get(), creationDate ).setId( id ) : null;
+                for( int items = in.readInt(); items > 0; items-- ) {
+                    Optional<Article> article = articleRepository.findById( in.readUTF() );
+                    int units = in.readInt();
+                    if( order != null && article.isPresent() ) {
+                        order.addItem( article.get(), units );
+                    } else {
+                        order = null;
+                    }
+                }
+                if( order == null )
+                    throw new IOException( "archived order " + id + " refers to an unknown customer or article: " + archiveFile( day ) );
+                orders.add( order );
+            }
+        }
+        return orders;
+    }
+
+
+    /**
+     * Register listener of orders saved with an id that was not saved before,
+     * called after the save for each new order (orders saved again replace the
+     * saved order and are not passed again).
+     *
+     * @param listener listener, null: none.
+     */
+    void onAdded( Consumer<Order> listener ) {
+        this.listener = listener;
+    }
+
+
+    private void added( List<Order> orders ) {
+        Consumer<Order> l = listener;
+        if( l != null ) {
+            orders.forEach( l );
+        }
+    }
+
+
+    private List<Order> readArchive( long day ) {
+        try {
+            return read( day );
+        } catch( IOException e ) {
+            throw new RuntimeException( "cannot read archive: " + archiveFile( day ), e );
+        }
+    }
+
+
+    /*
+     * Days with an archived order whose id has the hash, caller holds the lock.
+     */
+    private List<Long> archivedDays( long hash ) {
+        List<Long> days = new ArrayList<Long>( 1 );
+        archived.forEach( ( day, hashes ) -> {
+            if( Arrays.binarySearch( hashes, hash ) >= 0 )
+                days.add( day );
+        });
+        return days;
+    }
+
+
+    private static long[] hashes( Collection<String> ids ) {
+        long[] hashes = new long[ids.size()];
+        int i = 0;
+        for( String id : ids ) {
+            hashes[i++] = hash( id );
+        }
+        Arrays.sort( hashes );
+        return hashes;
+    }
+
+
+    /*
+     * 64-bit hash of the characters of an id (FNV-1a, finalized with the MurmurHash3 mixer).
+     */
+    private static long hash( String id ) {
+        long h = 0xcbf29ce484222325L;
+        for( int i = 0; i < id.length(); i++ ) {
+            h = ( h ^ id.charAt( i ) ) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    private File archiveFile( long day ) {
+        return new File( archiveDir, "orders-" + LocalDate.ofEpochDay( day ) + ".gz" );
+    }
+
+
+    private static long epochDay( long millis ) {
+        return Instant.ofEpochMilli( millis ).atZone( ZoneId.systemDefault() ).toLocalDate().toEpochDay();
+    }
+}
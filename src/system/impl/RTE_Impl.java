@@ -1,5 +1,6 @@
 package system.impl;
 
+import java.io.IOException;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.function.BiConsumer;
@@ -18,6 +19,13 @@ import static system.RTE.Configuration.JSON_DATASOURCE;
 import static system.RTE.Configuration.KEY_DATASOURCE_CUSTOMER;
 import static system.RTE.Configuration.KEY_DATASOURCE_ARTICLE;
 import static system.RTE.Configuration.KEY_DATASOURCE_ORDER;
+import static system.RTE.Configuration.KEY_DATASOURCE_STOCK;
+import static system.RTE.Configuration.KEY_CATALOG_FROZEN;
+import static system.RTE.Configuration.KEY_BACKORDER_POLICY;
+import static system.RTE.Configuration.KEY_ORDER_NODE;
+import static system.RTE.Configuration.KEY_HTTP_BACKLOG;
+import static system.RTE.Configuration.KEY_HTTP_PORT;
+import static system.RTE.Configuration.KEY_HTTP_THREADS;
 
 
 /**
@@ -97,6 +105,7 @@ class RTE_Impl implements RTE {
 			if( runtime != null ) {
 				runtime.accept( this, rti );
 			}
+			rti.startServer();	// after data was loaded
 			return rti;
 		}
 
@@ -132,14 +141,43 @@ class RTE_Impl implements RTE {
 		/**
 		 * DataRepository implementations used by Runtime instance.
 		 */
-		private final DataRepositoryImpl dataRepositoryImpl = new DataRepositoryImpl();
+		private final DataRepositoryImpl dataRepositoryImpl;
 
 		/**
 		 * InventoryManager implementation used by Runtime instance.
 		 *
 		 * Has a dependency on ArticleRepository.
 		 */
-		private final InventoryManager inventoryManager;
+		private final InventoryManagerImpl inventoryManager;
+
+
+		/**
+		 * OrderStatistics implementation used by Runtime instance.
+		 *
+		 * Has a dependency on Calculator.
+		 */
+		private final OrderStatisticsImpl orderStatistics;
+
+
+		/**
+		 * OrderIdGenerator implementation owned by Runtime instance.
+		 */
+		private final OrderIdGeneratorImpl orderIdGenerator;
+
+
+		/**
+		 * OrderBuilder implementation owned by Runtime instance.
+		 *
+		 * Has dependencies on repositories, InventoryManager and OrderStatistics
+		 * of this Runtime instance.
+		 */
+		private final OrderBuilderImpl orderBuilder;
+
+
+		/**
+		 * Embedded HTTP endpoint, null if no port is configured.
+		 */
+		private OrderServer server = null;
 
 
 		/**
@@ -152,13 +190,23 @@ class RTE_Impl implements RTE {
 			if( config == null )
 				throw new IllegalArgumentException( "config: null" );
 			this.config = config;
+			this.dataRepositoryImpl = new DataRepositoryImpl( config );
 			//
 			Calculator calculator = getCalculator();
 			this.printer = new PrinterImpl( calculator );	// inject dependency
+			this.orderStatistics = new OrderStatisticsImpl( calculator );	// inject dependency
+			dataRepositoryImpl.onOrderAdded( orderStatistics::record );		// orders saved with a new id
 			//
 			Repository<Article> articleRepository = dataRepositoryImpl.getArticleRepository();
 			this.inventoryManager = InventoryManagerImpl
 					.getInstance( articleRepository );		// inject dependency
+			config.get( KEY_BACKORDER_POLICY ).map( InventoryManager.FillPolicy::valueOf )
+				.ifPresent( inventoryManager::setBackorderPolicy );
+			this.orderIdGenerator = new OrderIdGeneratorImpl(
+					config.get( KEY_ORDER_NODE ).map( Integer::parseInt ).orElse( 0 ) );
+			//
+			// last: resolves its dependencies from this instance
+			this.orderBuilder = OrderBuilderImpl.getInstance( this );
 		}
 
 		/**
@@ -187,6 +235,12 @@ class RTE_Impl implements RTE {
 			if( runtime != null ) {
 				runtime.accept( this );
 			}
+			if( server != null ) {
+				server.stop();
+			}
+			orderBuilder.shutdown();	// drain order intake first
+			inventoryManager.shutdown();
+			dataRepositoryImpl.shutdown();	// finish archiving of orders
 			return InstanceAccessor.getInstance();
 		}
 
@@ -249,7 +303,7 @@ class RTE_Impl implements RTE {
 		 */
 
 		@Override
-		public Repository<Order> getOrderRepository() {
+		public OrderStore getOrderRepository() {
 			return dataRepositoryImpl.getOrderRepository();
 		}
 
@@ -266,12 +320,54 @@ class RTE_Impl implements RTE {
 
 
 		/**
-		 * Return singleton instance of OrderBuilder.
+		 * Return singleton OrderStatistics instance.
 		 *
-		 * @return singleton instance of OrderBuilder
+		 * @return singleton OrderStatistics instance.
+		 */
+		public OrderStatistics getOrderStatistics() {
+			return orderStatistics;
+		}
+
+
+		/**
+		 * Return OrderIdGenerator instance of this Runtime.
+		 *
+		 * @return OrderIdGenerator instance of this Runtime
+		 */
+		public OrderIdGenerator getOrderIdGenerator() {
+			return orderIdGenerator;
+		}
+
+
+		/**
+		 * Return OrderBuilder instance of this Runtime.
+		 *
+		 * @return OrderBuilder instance of this Runtime
 		 */
 		public OrderBuilder getOrderBuilder() {
-			return OrderBuilderImpl.getInstance( this );
+			return orderBuilder;
+		}
+
+
+		/*
+		 * Start embedded HTTP endpoint if a port is configured.
+		 */
+		private void startServer() {
+			Optional<Integer> port = config.get( KEY_HTTP_PORT ).map( Integer::parseInt );
+			if( port.isPresent() ) {
+				try {
+					server = new OrderServer( port.get(),
+						config.get( KEY_HTTP_BACKLOG ).map( Integer::parseInt ).orElse( 4096 ),
+						config.get( KEY_HTTP_THREADS ).map( Integer::parseInt )
+							.orElse( 2 * java.lang.Runtime.getRuntime().availableProcessors() ),
+						getCustomerRepository(), getInventoryManager(), getOrderBuilder() );
+					server.start();
+					System.out.println( " + serving orders on port " + server.getPort() );
+
+				} catch( IOException e ) {
+					throw new RuntimeException( "cannot start HTTP endpoint: " + e.getMessage(), e );
+				}
+			}
 		}
 
 
@@ -305,7 +401,15 @@ class RTE_Impl implements RTE {
 							long count = jsonData.importOrderJSON( jsonFileName, getOrderRepository() );
 							System.out.println( " + loaded " + count + " obj from: " + jsonFileName );
 						});
+						//
+						config.get( KEY_DATASOURCE_STOCK ).ifPresent( feedFileName -> {
+							long count = jsonData.importStockFeed( feedFileName, getInventoryManager() );
+							System.out.println( " + updated stock of " + count + " articles from: " + feedFileName );
+						});
 					});
+			if( config.get( KEY_CATALOG_FROZEN ).map( Boolean::parseBoolean ).orElse( true ) ) {
+				inventoryManager.freeze();
+			}
 			return this;
 		}
 
@@ -5,7 +5,10 @@ import datamodel.Customer;
 import datamodel.Order;
 import system.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Optional;
 
 public class RepositoryImpl<T> implements Repository<T> {
@@ -16,6 +19,17 @@ public class RepositoryImpl<T> implements Repository<T> {
         containerMap = new LinkedHashMap<String,T>();
     }
 
+    /**
+     * Create repository with a map pre-sized for an expected number of entities,
+     * which are then added without rehashing. The map instance is never replaced,
+     * so views returned by findAll() stay valid.
+     *
+     * @param expectedSize expected number of entities.
+     */
+    public RepositoryImpl( int expectedSize ) {
+        containerMap = new LinkedHashMap<String,T>( (int)( Math.max( expectedSize, 0 ) / 0.75f ) + 1 );
+    }
+
     public Optional<T> findById( long id ) {
         String sId = String.valueOf( id );
         return findById( sId );
@@ -27,6 +41,16 @@ public class RepositoryImpl<T> implements Repository<T> {
         return Optional.empty();
     }
 
+    public Iterable<T> findAllById( Collection<String> ids ) {
+        List<T> found = new ArrayList<T>( ids.size() );
+        for( String id : ids ) {
+            T entity = containerMap.get( id );
+            if( entity != null )
+                found.add( entity );
+        }
+        return found;
+    }
+
     public Iterable<T> findAll() {
         return ( Iterable<T> ) containerMap.values();
     }
@@ -36,26 +60,41 @@ public class RepositoryImpl<T> implements Repository<T> {
     }
 
     public T save( T entity ) {
-        // if entity is a Customer object, then cast it to get the ID
-        if( entity instanceof Customer ) {
-            String id = String.valueOf( ((Customer) entity).getId() );
+        String id = idOf( entity );
+        if( id != null ) {
             containerMap.put( id, entity );
             return entity;
         }
+        return null;
+    }
 
-        // if entity is an Article object, then cast it to get the ID
-        if( entity instanceof Article) {
-            String id = ((Article) entity).getId();
-            containerMap.put( id, entity );
-            return entity;
+    public Iterable<T> saveAll( Iterable<T> entities ) {
+        List<T> saved = new ArrayList<T>();
+        for( T entity : entities ) {
+            if( save( entity ) != null )
+                saved.add( entity );
         }
+        return saved;
+    }
+
+    /**
+     * Return the repository key of an entity.
+     *
+     * @param entity Customer, Article or Order object
+     * @return id as String or null if entity is of an unknown type
+     */
+    static String idOf( Object entity ) {
+        // if entity is a Customer object, then cast it to get the ID
+        if( entity instanceof Customer )
+            return String.valueOf( ((Customer) entity).getId() );
+
+        // if entity is an Article object, then cast it to get the ID
+        if( entity instanceof Article )
+            return ((Article) entity).getId();
 
         // if entity is an Order object, then cast it to get the ID
-        if( entity instanceof Order) {
-            String id = ((Order) entity).getId();
-            containerMap.put( id, entity );
-            return entity;
-        }
+        if( entity instanceof Order )
+            return ((Order) entity).getId();
 
         return null;
     }
@@ -0,0 +1,338 @@
+package system.impl;
+
+import system.InventoryManager.StockChange;
+import system.InventoryManager.StockListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Publishes stock changes to asynchronous listeners through a bounded lock-free
+ * ring buffer. Producers (threads filling or updating stock) claim a sequence
+ * with compareAndSet, write the change into primitive slots (no allocation) and
+ * publish the sequence. A single dispatcher thread drains the ring in batches
+ * and passes each batch to all listeners and checks low-stock thresholds.
+ * <p>
+ * When the ring is full, producers wait until the dispatcher has freed slots
+ * (backpressure), they spin briefly, yield and finally park. The idle
+ * dispatcher spins briefly and then parks until a producer publishes a change
+ * and unparks it. After shutdown, changes are dropped and producers waiting
+ * on a full ring return.
+ * <p>
+ * Listeners may change stock: changes made on the dispatcher thread do not
+ * enter the ring (the dispatcher would wait for slots only it can free), they
+ * are queued locally and delivered after the current batch.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class StockEventBus {
+
+    /**
+     * maximum number of changes passed to listeners in one batch.
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * ring capacity (power of two) and index mask.
+     */
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * slot data: ordinal and units in stock after the change (packed), units before the change, warehouse.
+     */
+    private final long[] changes;
+    private final int[] previous;
+    private final int[] warehouses;
+
+    /**
+     * sequence published in each slot, a slot is readable when it holds the expected sequence.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * next sequence to claim by producers.
+     */
+    private final AtomicLong tail = new AtomicLong( 0 );
+
+    /**
+     * next sequence to read by the dispatcher, slots below head are free.
+     */
+    private volatile long head = 0;
+
+    /**
+     * resolve article ids from ordinals and warehouse names from warehouse indexes.
+     */
+    private final IntFunction<String> idOf;
+    private final IntFunction<String> warehouseOf;
+
+    private final List<StockListener> listeners = new CopyOnWriteArrayList<StockListener>();
+
+    /**
+     * low-stock thresholds by ordinal.
+     */
+    private final Map<Integer,Integer> thresholds = new ConcurrentHashMap<Integer,Integer>();
+
+    private volatile Thread dispatcher = null;
+
+    /**
+     * changes made by listeners on the dispatcher thread, accessed by the dispatcher only.
+     */
+    private final ArrayDeque<StockChange> reentrant = new ArrayDeque<StockChange>();
+
+    /**
+     * set by the dispatcher before it parks, producers unpark it when set.
+     */
+    private volatile boolean parked = false;
+
+    /**
+     * set by shutdown, changes are dropped.
+     */
+    private volatile boolean closed = false;
+
+    private static final System.Logger LOG = System.getLogger( StockEventBus.class.getName() );
+
+
+    StockEventBus( int capacity, IntFunction<String> idOf, IntFunction<String> warehouseOf ) {
+        int n = Integer.highestOneBit( Math.max( capacity, 2 ) - 1 ) << 1;
+        this.capacity = n;
+        this.mask = n - 1;
+        this.changes = new long[n];
+        this.previous = new int[n];
+        this.warehouses = new int[n];
+        this.published = new AtomicLongArray( n );
+        for( int i = 0; i < n; i++ ) {
+            published.set( i, -1 );
+        }
+        this.idOf = idOf;
+        this.warehouseOf = warehouseOf;
+    }
+
+
+    /**
+     * Register listener, the dispatcher thread is started with the first listener.
+     *
+     * @param listener listener to add.
+     */
+    synchronized void addListener( StockListener listener ) {
+        listeners.add( listener );
+        if( dispatcher == null ) {
+            Thread t = new Thread( this::dispatch, "inventory-stock-events" );
+            t.setDaemon( true );
+            dispatcher = t;
+            t.start();
+        }
+    }
+
+
+    void removeListener( StockListener listener ) {
+        listeners.remove( listener );
+    }
+
+
+    /**
+     * Set low-stock threshold for an article, {@code < 0} removes the threshold.
+     *
+     * @param ordinal article ordinal.
+     * @param threshold alert when units in stock drop to or below threshold.
+     */
+    void setThreshold( int ordinal, int threshold ) {
+        if( threshold < 0 ) {
+            thresholds.remove( ordinal );
+        } else {
+            thresholds.put( ordinal, threshold );
+        }
+    }
+
+
+    /**
+     * True if changes are published (a listener is or was registered).
+     */
+    boolean isActive() {
+        return dispatcher != null;
+    }
+
+
+    /**
+     * Return observer that publishes the stock changes of a warehouse partition.
+     *
+     * @param warehouse warehouse index.
+     * @return observer of the stock table of the warehouse.
+     */
+    StockTable.ChangeObserver observer( int warehouse ) {
+        return ( ordinal, before, after ) -> changed( warehouse, ordinal, before, after );
+    }
+
+
+    /**
+     * Publish a stock change, waits while the ring is full. Changes are dropped
+     * after shutdown. Changes made by listeners (on the dispatcher thread) are
+     * queued without waiting.
+     *
+     * @param warehouse warehouse index.
+     * @param ordinal article ordinal.
+     * @param before units in stock before the change.
+     * @param after units in stock after the change.
+     */
+    void changed( int warehouse, int ordinal, int before, int after ) {
+        if( dispatcher == null || before == after || closed )
+            return;
+        if( Thread.currentThread() == dispatcher ) {
+            reentrant.add( new Change( idOf.apply( ordinal ), ordinal, warehouseOf.apply( warehouse ), before, after ) );
+            return;
+        }
+        long seq;
+        int spins = 0;
+        do {
+            seq = tail.get();
+            while( seq - head >= capacity ) {	// full: backpressure
+                if( closed )
+                    return;		// dispatcher stopped, slots are never freed
+                if( ++spins < 100 ) Thread.onSpinWait();
+                else if( spins < 200 ) Thread.yield();
+                else LockSupport.parkNanos( 50_000 );
+                seq = tail.get();
+            }
+        } while( ! tail.compareAndSet( seq, seq + 1 ) );
+        int i = (int)( seq & mask );
+        changes[i] = ( (long)ordinal << 32 ) | ( after & 0xffffffffL );
+        previous[i] = before;
+        warehouses[i] = warehouse;
+        published.set( i, seq );	// slot data is visible before the sequence, ordered before reading parked
+        if( parked ) {
+            LockSupport.unpark( dispatcher );
+        }
+    }
+
+
+    /**
+     * Stop dispatcher thread, remaining and further changes are not delivered.
+     */
+    synchronized void shutdown() {
+        closed = true;
+        Thread t = dispatcher;
+        if( t != null ) {
+            t.interrupt();
+        }
+    }
+
+
+    /*
+     * Dispatcher loop: drain up to MAX_BATCH published changes, deliver them to
+     * listeners, park when idle until a producer publishes.
+     */
+    private void dispatch() {
+        List<StockChange> batch = new ArrayList<StockChange>( MAX_BATCH );
+        int idle = 0;
+        while( ! Thread.currentThread().isInterrupted() ) {
+            long seq = head;
+            while( batch.size() < MAX_BATCH ) {
+                int i = (int)( seq & mask );
+                if( published.get( i ) != seq )
+                    break;
+                long c = changes[i];
+                int ordinal = (int)( c >>> 32 );
+                batch.add( new Change( idOf.apply( ordinal ), ordinal, warehouseOf.apply( warehouses[i] ),
+                        previous[i], (int)c ) );
+                seq++;
+            }
+            head = seq;	// free slots for producers
+            if( batch.isEmpty() ) {
+                if( ++idle < 100 ) {
+                    Thread.onSpinWait();
+                } else {
+                    parked = true;
+                    if( published.get( (int)( seq & mask ) ) != seq )	// re-checked after parked is set
+                        LockSupport.park( this );
+                    parked = false;
+                }
+                continue;
+            }
+            idle = 0;
+            deliver( batch );
+            batch = new ArrayList<StockChange>( MAX_BATCH );	// listeners may keep the batch
+            while( ! reentrant.isEmpty() ) {		// changes made by listeners, may add more
+                while( batch.size() < MAX_BATCH && ! reentrant.isEmpty() ) {
+                    batch.add( reentrant.poll() );
+                }
+                deliver( batch );
+                batch = new ArrayList<StockChange>( MAX_BATCH );
+            }
+        }
+    }
+
+
+    private void deliver( List<StockChange> batch ) {
+        for( StockListener listener : listeners ) {
+            try {
+                listener.onStockChanged( batch );
+                for( StockChange change : batch ) {
+                    Integer threshold = thresholds.get( ((Change) change).ordinal );
+                    if( threshold != null && change.getPreviousUnits() > threshold
+                            && change.getUnitsInStock() <= threshold ) {
+                        listener.onLowStock( change, threshold );
+                    }
+                }
+            } catch( RuntimeException e ) {
+                LOG.log( System.Logger.Level.WARNING, "stock listener failed: " + listener, e );
+            }
+        }
+    }
+
+
+    /**
+     * Immutable stock change delivered to listeners.
+     */
+    private static class Change implements StockChange {
+        private final String id;
+        private final int ordinal;
+        private final String warehouse;
+        private final int before;
+        private final int after;
+
+        Change( String id, int ordinal, String warehouse, int before, int after ) {
+            this.id = id;
+            this.ordinal = ordinal;
+            this.warehouse = warehouse;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public String getArticleId() {
+            return id;
+        }
+
+        @Override
+        public String getWarehouse() {
+            return warehouse;
+        }
+
+        @Override
+        public int getPreviousUnits() {
+            return before;
+        }
+
+        @Override
+        public int getUnitsInStock() {
+            return after;
+        }
+
+        @Override
+        public String toString() {
+            return id + "@" + warehouse + ": " + before + " -> " + after;
+        }
+    }
+}
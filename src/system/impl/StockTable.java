@@ -0,0 +1,1165 @@
+package system.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Units in stock of articles stored as dense int counters indexed by article
+ * ordinals (4 bytes per article), plus units reserved for pending orders that
+ * are not available for other orders. Writers lock one of {@value #STRIPES} lock
+ * stripes (stripe = ordinal mod {@value #STRIPES}). Multi-article operations
+ * lock all affected stripes in ascending stripe order, which excludes deadlocks.
+ * <p>
+ * Stripes are StampedLocks. Readers of a single counter do not lock, readers
+ * that need a consistent view of several counters (units and reserved units,
+ * all articles of an order) read optimistically and validate the stamps of the
+ * stripes read, they only fall back to read locks when a writer interfered.
+ * Read-heavy workloads therefore do not write to shared lock state at all.
+ * StampedLocks are not reentrant, methods called with stripes locked use the
+ * unvalidated helpers.
+ * <p>
+ * Changes of units in stock are reported to an optional observer after the
+ * stripes were unlocked, so observers never extend lock hold times and may
+ * call back into the table.
+ * <p>
+ * The table also keeps a running value (unit price * units in stock) per value
+ * class (e.g. currency and tax). Every change of units adjusts the adder of its
+ * class under the stripe lock, so reading the value is O(1) and repricing an
+ * article (under the same lock) never races with stock changes.
+ * <p>
+ * Articles whose stripe is repeatedly contended by fills are promoted to hot
+ * articles (at most {@value #MAX_HOT}): their available units move into a
+ * {@link HotCounter} with striped sub-counters. Fills of a single hot article
+ * take units with compareAndSet and do not lock at all, multi-article fills
+ * take hot units first and put them back if other articles are short (all or
+ * none). Units reserved for a hot article are taken out of its sub-counters, so
+ * units in stock are sub-counters plus reserved units. Values of hot articles
+ * are computed when queried instead of being kept in the adders. Hot articles
+ * with fewer than {@value #HOT_CONTENTION} takes per window are demoted: their
+ * counter is closed and its units move back into the table, lock-free fills
+ * that find the counter closed fill from the table under the stripe lock.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class StockTable {
+
+    /**
+     * number of lock stripes, stripes of a multi-article operation fit into one long bit mask.
+     */
+    static final int STRIPES = 64;
+
+    /**
+     * contended fills of an article within one window (about one second) that promote the article to hot.
+     */
+    static final int HOT_CONTENTION = 256;
+
+    /**
+     * maximum number of hot articles, sub-counters of hot articles.
+     */
+    static final int MAX_HOT = 16;
+    private static final int HOT_STRIPES = Math.min( 64, 2 * Runtime.getRuntime().availableProcessors() );
+
+    /**
+     * length of a contention window in nanoseconds (about one second).
+     */
+    private static final long WINDOW_NANOS = 1L << 30;
+
+    /**
+     * lock stripes guarding writes to counters.
+     */
+    private final StampedLock[] stripes = new StampedLock[STRIPES];
+
+    /**
+     * units in stock by ordinal, replaced when capacity grows (with all stripes locked).
+     */
+    private volatile AtomicIntegerArray units = new AtomicIntegerArray( 16 );
+
+    /**
+     * units reserved by ordinal, same length as units, replaced together with units.
+     */
+    private volatile AtomicIntegerArray reserved = new AtomicIntegerArray( 16 );
+
+    /**
+     * unit prices and value classes by ordinal, written under stripe locks, replaced together with units.
+     */
+    private volatile long[] prices = new long[16];
+    private volatile int[] classes = new int[16];
+
+    /**
+     * running values (unit price * units in stock) by value class, hot articles excluded.
+     */
+    private final LongAdder[] values;
+
+    /**
+     * sub-counters of hot articles by ordinal (null: not hot) and ordinals of hot
+     * articles, replaced together with units.
+     */
+    private volatile AtomicReferenceArray<HotCounter> hot = new AtomicReferenceArray<HotCounter>( 16 );
+    private volatile int[] hotOrdinals = new int[0];
+
+    /**
+     * contended fills by ordinal in the current window: window in the upper, count in the lower 32 bits.
+     */
+    private volatile AtomicLongArray contention = new AtomicLongArray( 16 );
+
+    /**
+     * time of the last check of hot articles for demotion (System.nanoTime()).
+     */
+    private final AtomicLong cooled = new AtomicLong( System.nanoTime() );
+
+    /**
+     * observer of changes of units in stock, null: changes are not reported.
+     */
+    private volatile ChangeObserver observer = null;
+
+
+    /**
+     * Observer of changes of units in stock.
+     */
+    interface ChangeObserver {
+
+        /**
+         * Called after units in stock of an article changed, outside of locks.
+         *
+         * @param ordinal article ordinal.
+         * @param before units in stock before the change.
+         * @param after units in stock after the change.
+         */
+        void changed( int ordinal, int before, int after );
+    }
+
+
+    StockTable( int valueClasses ) {
+        for( int i = 0; i < STRIPES; i++ ) {
+            stripes[i] = new StampedLock();
+        }
+        values = new LongAdder[Math.max( valueClasses, 1 )];
+        for( int i = 0; i < values.length; i++ ) {
+            values[i] = new LongAdder();
+        }
+    }
+
+
+    /**
+     * Set observer of changes of units in stock.
+     *
+     * @param observer observer, null to stop reporting changes.
+     */
+    void setObserver( ChangeObserver observer ) {
+        this.observer = observer;
+    }
+
+
+    /**
+     * Set unit price and value class of an article, moves the value of its units
+     * in stock from the old to the new price and class.
+     *
+     * @param ordinal article ordinal.
+     * @param unitPrice unit price.
+     * @param valueClass value class, {@code 0 <= valueClass < valueClasses}.
+     */
+    void setPrice( int ordinal, long unitPrice, int valueClass ) {
+        StampedLock lock = stripes[ordinal & ( STRIPES - 1 )];
+        long stamp = lock.writeLock();
+        try {
+            long[] p = prices;
+            int[] c = classes;
+            if( hot.get( ordinal ) == null ) {	// value of hot articles is computed when queried
+                long u = units.get( ordinal );
+                values[c[ordinal]].add( - u * p[ordinal] );
+                values[valueClass].add( u * unitPrice );
+            }
+            p[ordinal] = unitPrice;
+            c[ordinal] = valueClass;
+        } finally {
+            lock.unlockWrite( stamp );
+        }
+    }
+
+
+    /**
+     * Return running value of units in stock of a value class in O(1) (plus
+     * the values of at most {@value #MAX_HOT} hot articles).
+     *
+     * @param valueClass value class.
+     * @return sum of unit price * units in stock of articles of the class.
+     */
+    long value( int valueClass ) {
+        long value = values[valueClass].sum();
+        for( int ordinal : hotOrdinals ) {
+            if( classes[ordinal] == valueClass ) {
+                value += prices[ordinal] * get( ordinal );
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * Return units in stock without locking.
+     *
+     * @param ordinal article ordinal.
+     * @return units in stock.
+     */
+    int get( int ordinal ) {
+        HotCounter h = hot.get( ordinal );
+        if( h != null ) {
+            return (int)Math.min( h.sum() + reserved.get( ordinal ), Integer.MAX_VALUE );
+        }
+        return units.get( ordinal );
+    }
+
+
+    /**
+     * Return units in stock that are not reserved (available-to-promise) without locking.
+     *
+     * @param ordinal article ordinal.
+     * @return units available.
+     */
+    int available( int ordinal ) {
+        StampedLock lock = stripes[ordinal & ( STRIPES - 1 )];
+        long stamp = lock.tryOptimisticRead();
+        int available = unreserved( ordinal );
+        if( ! lock.validate( stamp ) ) {
+            stamp = lock.readLock();
+            try {
+                available = unreserved( ordinal );
+            } finally {
+                lock.unlockRead( stamp );
+            }
+        }
+        return available;
+    }
+
+
+    /**
+     * Set units in stock. Units of a hot article are adjusted towards the value,
+     * concurrent lock-free fills count as filled after the update.
+     *
+     * @param ordinal article ordinal.
+     * @param value units in stock.
+     * @return units in stock before.
+     */
+    int set( int ordinal, int value ) {
+        StampedLock lock = stripes[ordinal & ( STRIPES - 1 )];
+        long stamp = lock.writeLock();
+        int before;
+        try {
+            HotCounter h = hot.get( ordinal );
+            if( h != null ) {
+                before = get( ordinal );
+                h.adjust( Math.max( 0, value - reserved.get( ordinal ) ) );
+            } else {
+                before = units.getAndSet( ordinal, value );
+                revalue( ordinal, (long)value - before );
+            }
+        } finally {
+            lock.unlockWrite( stamp );
+        }
+        ChangeObserver o = observer;
+        if( o != null ) {
+            o.changed( ordinal, before, value );
+        }
+        return before;
+    }
+
+
+    /**
+     * Set or change units in stock of several articles in one atomic step. The
+     * stripes of all articles are locked once, all resulting units are checked
+     * before any counter changes, so the batch is applied completely or not at all.
+     * Negative changes of hot articles are taken from their sub-counters first
+     * and put back when a concurrent lock-free fill took the units meanwhile.
+     *
+     * @param ordinals article ordinals (distinct).
+     * @param values units in stock, or changes of units if delta is true.
+     * @param delta true if values are changes of units.
+     * @return units in stock before by index, or null if units of an article would be {@code < 0} or overflow (no change).
+     */
+    int[] apply( int[] ordinals, int[] values, boolean delta ) {
+        int n = ordinals.length;
+        long mask = 0;
+        for( int ordinal : ordinals ) {
+            mask |= 1L << ( ordinal & ( STRIPES - 1 ) );
+        }
+        int[] before = new int[n];
+        int[] after = new int[n];
+        lock( mask );
+        try {
+            for( int i = 0; i < n; i++ ) {
+                before[i] = get( ordinals[i] );
+                long a = delta? (long)before[i] + values[i] : values[i];
+                if( a < 0 || a > Integer.MAX_VALUE )
+                    return null;
+                after[i] = (int)a;
+            }
+            AtomicReferenceArray<HotCounter> h = hot;
+            int taken = 0;
+            for( ; delta && taken < n; taken++ ) {	// hot units may be taken concurrently: take first
+                HotCounter c = h.get( ordinals[taken] );
+                if( c != null && values[taken] < 0 && ! c.tryTake( - (long)values[taken] ) )
+                    break;
+            }
+            if( delta && taken < n ) {
+                for( int i = 0; i < taken; i++ ) {
+                    HotCounter c = h.get( ordinals[i] );
+                    if( c != null && values[i] < 0 ) c.add( - (long)values[i] );
+                }
+                return null;
+            }
+            AtomicIntegerArray u = units;
+            for( int i = 0; i < n; i++ ) {
+                int ordinal = ordinals[i];
+                HotCounter c = h.get( ordinal );
+                if( c == null ) {
+                    u.set( ordinal, after[i] );
+                    revalue( ordinal, (long)after[i] - before[i] );
+                } else if( ! delta ) {
+                    c.adjust( Math.max( 0, after[i] - reserved.get( ordinal ) ) );
+                } else if( values[i] > 0 ) {
+                    c.add( values[i] );
+                }
+            }
+        } finally {
+            unlock( mask );
+        }
+        ChangeObserver o = observer;
+        if( o != null ) {
+            for( int i = 0; i < n; i++ ) {
+                o.changed( ordinals[i], before[i], after[i] );
+            }
+        }
+        return before;
+    }
+
+
+    /**
+     * Check that all demanded units are available and deduct them in one atomic
+     * step. Demands of a single hot article are taken without locking. Detects
+     * contended stripes and promotes articles that are contended repeatedly,
+     * demotes hot articles that cooled down.
+     *
+     * @param demand units per ordinal (merged, sorted).
+     * @return true if units were deducted, false if stock was insufficient (no change).
+     */
+    boolean take( Demand demand ) {
+        if( hotOrdinals.length > 0 ) {
+            coolDown();
+        }
+        if( demand.size == 1 ) {
+            HotCounter h = hot.get( demand.ordinals[0] );
+            if( h != null ) {
+                if( h.tryTake( demand.units[0] ) ) {
+                    ChangeObserver o = observer;
+                    if( o != null ) {
+                        int after = get( demand.ordinals[0] );
+                        o.changed( demand.ordinals[0], after + demand.units[0], after );
+                    }
+                    return true;
+                }
+                if( ! h.isClosed() )
+                    return false;
+                // demoted meanwhile: take from the table under the stripe lock
+            }
+        }
+        long mask = demand.stripeMask();
+        ChangeObserver o = observer;
+        int[] after = o != null? demand.after() : null;
+        boolean taken = false;
+        boolean contended = lockDetectContention( mask );
+        try {
+            if( fits( demand ) && takeHot( demand ) ) {
+                deduct( demand, after );
+                taken = true;
+            }
+        } finally {
+            unlock( mask );
+        }
+        if( contended ) {
+            contended( demand );
+        }
+        if( taken && after != null ) {
+            for( int i = 0; i < demand.size; i++ ) {
+                o.changed( demand.ordinals[i], after[i] + demand.units[i], after[i] );
+            }
+        }
+        return taken;
+    }
+
+
+    /**
+     * Decide for a batch of demands in sequence which demands can be taken from
+     * available stock and deduct the units of all taken demands in one pass per
+     * article. The batch is atomic: the stripes of all demands are locked once
+     * (units of hot articles are taken per demand while the stripes are locked).
+     *
+     * @param demands demands in the order they are served.
+     * @return taken flags, indexed like demands.
+     */
+    boolean[] takeAll( List<Demand> demands ) {
+        boolean[] taken = new boolean[demands.size()];
+        int n = 0;
+        long mask = 0;
+        for( Demand d : demands ) {
+            n += d.size;
+            mask |= d.stripeMask();
+        }
+        // distinct ordinals of all demands, sorted for binary search
+        int[] ordinals = new int[n];
+        n = 0;
+        for( Demand d : demands ) {
+            System.arraycopy( d.ordinals, 0, ordinals, n, d.size );
+            n += d.size;
+        }
+        Arrays.sort( ordinals );
+        int distinct = 0;
+        for( int i = 0; i < n; i++ ) {
+            if( distinct == 0 || ordinals[distinct - 1] != ordinals[i] )
+                ordinals[distinct++] = ordinals[i];
+        }
+        int[] remaining = new int[distinct];
+        int[] deducted = new int[distinct];
+        int[] after = new int[distinct];
+        //
+        lock( mask );
+        try {
+            AtomicReferenceArray<HotCounter> h = hot;
+            for( int i = 0; i < distinct; i++ ) {
+                remaining[i] = h.get( ordinals[i] ) == null? unreserved( ordinals[i] ) : Integer.MAX_VALUE;
+            }
+            for( int k = 0; k < taken.length; k++ ) {
+                Demand d = demands.get( k );
+                boolean fillable = true;
+                for( int i = 0; i < d.size && fillable; i++ ) {
+                    fillable = d.units[i] <= remaining[Arrays.binarySearch( ordinals, 0, distinct, d.ordinals[i] )];
+                }
+                if( fillable && takeHot( d ) ) {
+                    for( int i = 0; i < d.size; i++ ) {
+                        int j = Arrays.binarySearch( ordinals, 0, distinct, d.ordinals[i] );
+                        remaining[j] -= d.units[i];
+                        deducted[j] += d.units[i];
+                    }
+                    taken[k] = true;
+                }
+            }
+            AtomicIntegerArray u = units;
+            for( int i = 0; i < distinct; i++ ) {
+                if( deducted[i] != 0 ) {
+                    if( h.get( ordinals[i] ) == null ) {
+                        u.set( ordinals[i], u.get( ordinals[i] ) - deducted[i] );
+                        revalue( ordinals[i], - deducted[i] );
+                    }
+                    after[i] = get( ordinals[i] );
+                }
+            }
+        } finally {
+            unlock( mask );
+        }
+        ChangeObserver o = observer;
+        if( o != null ) {
+            for( int i = 0; i < distinct; i++ ) {
+                if( deducted[i] != 0 ) {
+                    o.changed( ordinals[i], after[i] + deducted[i], after[i] );
+                }
+            }
+        }
+        return taken;
+    }
+
+
+    /**
+     * Check that demanded units are available in all tables and deduct them in
+     * one atomic step (all or none). Tables are locked in array order, tables
+     * must therefore always be passed in the same order.
+     *
+     * @param tables tables (partitions) to take from.
+     * @param demands demand per table (merged, sorted), null: nothing taken from the table.
+     * @return true if units were deducted, false if stock was insufficient (no change).
+     */
+    static boolean take( StockTable[] tables, Demand[] demands ) {
+        long[] masks = new long[tables.length];
+        int locked = 0;
+        boolean fits = true;
+        int[][] after = new int[tables.length][];
+        try {
+            for( ; locked < tables.length; locked++ ) {
+                if( demands[locked] != null ) {
+                    masks[locked] = demands[locked].stripeMask();
+                    tables[locked].lock( masks[locked] );
+                }
+            }
+            for( int p = 0; p < tables.length && fits; p++ ) {
+                fits = demands[p] == null || tables[p].fits( demands[p] );
+            }
+            for( int p = 0; p < tables.length && fits; p++ ) {
+                if( demands[p] != null && ! tables[p].takeHot( demands[p] ) ) {
+                    while( --p >= 0 ) {	// put back hot units taken from previous tables
+                        if( demands[p] != null ) {
+                            tables[p].returnHot( demands[p] );
+                        }
+                    }
+                    fits = false;
+                }
+            }
+            if( ! fits )
+                return false;
+            for( int p = 0; p < tables.length; p++ ) {
+                if( demands[p] != null ) {
+                    after[p] = new int[demands[p].size];
+                    tables[p].deduct( demands[p], after[p] );
+                }
+            }
+        } finally {
+            while( --locked >= 0 ) {
+                tables[locked].unlock( masks[locked] );
+            }
+        }
+        for( int p = 0; p < tables.length; p++ ) {
+            ChangeObserver o = tables[p].observer;
+            Demand d = demands[p];
+            if( o != null && d != null ) {
+                for( int i = 0; i < d.size; i++ ) {
+                    o.changed( d.ordinals[i], after[p][i] + d.units[i], after[p][i] );
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Check that all demanded units are available and reserve them in one atomic
+     * step. Units reserved for hot articles are taken out of their sub-counters.
+     *
+     * @param demand units per ordinal (merged, sorted).
+     * @return true if units were reserved, false if stock was insufficient (no change).
+     */
+    boolean reserve( Demand demand ) {
+        long mask = demand.stripeMask();
+        lock( mask );
+        try {
+            if( ! fits( demand ) || ! takeHot( demand ) )
+                return false;
+            addReserved( demand );
+            return true;
+        } finally {
+            unlock( mask );
+        }
+    }
+
+
+    /**
+     * Check that demanded units are available in all tables and reserve them in
+     * one atomic step (all or none). Tables are locked in array order as by take().
+     *
+     * @param tables tables (partitions) to reserve in.
+     * @param demands demand per table (merged, sorted), null: nothing reserved in the table.
+     * @return true if units were reserved, false if stock was insufficient (no change).
+     */
+    static boolean reserve( StockTable[] tables, Demand[] demands ) {
+        long[] masks = new long[tables.length];
+        int locked = 0;
+        try {
+            for( ; locked < tables.length; locked++ ) {
+                if( demands[locked] != null ) {
+                    masks[locked] = demands[locked].stripeMask();
+                    tables[locked].lock( masks[locked] );
+                }
+            }
+            for( int p = 0; p < tables.length; p++ ) {
+                if( demands[p] != null && ! tables[p].fits( demands[p] ) )
+                    return false;
+            }
+            for( int p = 0; p < tables.length; p++ ) {
+                if( demands[p] != null && ! tables[p].takeHot( demands[p] ) ) {
+                    while( --p >= 0 ) {	// put back hot units taken from previous tables
+                        if( demands[p] != null ) {
+                            tables[p].returnHot( demands[p] );
+                        }
+                    }
+                    return false;
+                }
+            }
+            for( int p = 0; p < tables.length; p++ ) {
+                if( demands[p] != null ) {
+                    tables[p].addReserved( demands[p] );
+                }
+            }
+            return true;
+        } finally {
+            while( --locked >= 0 ) {
+                tables[locked].unlock( masks[locked] );
+            }
+        }
+    }
+
+
+    /**
+     * Deduct reserved units from stock and reservations in one atomic step. Fails
+     * if stock was updated below the reserved units in the meantime, the
+     * reservation is released in this case. Units reserved for hot articles are
+     * always in stock.
+     *
+     * @param demand reserved units per ordinal.
+     * @return true if reserved units were deducted from stock.
+     */
+    boolean commit( Demand demand ) {
+        long mask = demand.stripeMask();
+        ChangeObserver o = observer;
+        int[] after = o != null? demand.after() : null;
+        boolean inStock;
+        lock( mask );
+        try {
+            inStock = inStock( demand );
+            commitReserved( demand, inStock, after );
+        } finally {
+            unlock( mask );
+        }
+        if( after != null && inStock ) {
+            for( int i = 0; i < demand.size; i++ ) {
+                o.changed( demand.ordinals[i], after[i] + demand.units[i], after[i] );
+            }
+        }
+        return inStock;
+    }
+
+
+    /**
+     * Deduct reserved units in all tables in one atomic step, as commit(). Fails
+     * if stock of one table was updated below the reserved units, the reservation
+     * is released in all tables in this case.
+     *
+     * @param tables tables (partitions) units were reserved in.
+     * @param demands reserved units per table, null: nothing reserved in the table.
+     * @return true if reserved units were deducted from stock.
+     */
+    static boolean commit( StockTable[] tables, Demand[] demands ) {
+        long[] masks = new long[tables.length];
+        int[][] after = new int[tables.length][];
+        boolean inStock = true;
+        int locked = 0;
+        try {
+            for( ; locked < tables.length; locked++ ) {
+                if( demands[locked] != null ) {
+                    masks[locked] = demands[locked].stripeMask();
+                    tables[locked].lock( masks[locked] );
+                }
+            }
+            for( int p = 0; p < tables.length && inStock; p++ ) {
+                inStock = demands[p] == null || tables[p].inStock( demands[p] );
+            }
+            for( int p = 0; p < tables.length; p++ ) {
+                if( demands[p] != null ) {
+                    after[p] = new int[demands[p].size];
+                    tables[p].commitReserved( demands[p], inStock, after[p] );
+                }
+            }
+        } finally {
+            while( --locked >= 0 ) {
+                tables[locked].unlock( masks[locked] );
+            }
+        }
+        for( int p = 0; p < tables.length && inStock; p++ ) {
+            ChangeObserver o = tables[p].observer;
+            Demand d = demands[p];
+            if( o != null && d != null ) {
+                for( int i = 0; i < d.size; i++ ) {
+                    o.changed( d.ordinals[i], after[p][i] + d.units[i], after[p][i] );
+                }
+            }
+        }
+        return inStock;
+    }
+
+
+    /**
+     * Return reserved units to available stock.
+     *
+     * @param demand reserved units per ordinal.
+     */
+    void release( Demand demand ) {
+        long mask = demand.stripeMask();
+        lock( mask );
+        try {
+            AtomicIntegerArray r = reserved;
+            for( int i = 0; i < demand.size; i++ ) {
+                r.set( demand.ordinals[i], r.get( demand.ordinals[i] ) - demand.units[i] );
+            }
+            returnHot( demand );
+        } finally {
+            unlock( mask );
+        }
+    }
+
+
+    /**
+     * Check that all demanded units are available (in stock and not reserved) on
+     * a consistent view of all demanded articles. Reads optimistically and only
+     * takes read locks when a writer changed one of the stripes during the read.
+     *
+     * @param demand units per ordinal (per-thread scratch demand).
+     * @return true if all demanded units are available.
+     */
+    boolean isAvailable( Demand demand ) {
+        long mask = demand.stripeMask();
+        long[] stamps = demand.stamps();
+        boolean valid = true;
+        for( long m = mask; m != 0 && valid; m &= m - 1 ) {
+            int i = Long.numberOfTrailingZeros( m );
+            stamps[i] = stripes[i].tryOptimisticRead();
+            valid = stamps[i] != 0;
+        }
+        if( valid ) {
+            boolean fits = fits( demand );
+            for( long m = mask; m != 0 && valid; m &= m - 1 ) {
+                int i = Long.numberOfTrailingZeros( m );
+                valid = stripes[i].validate( stamps[i] );
+            }
+            if( valid )
+                return fits;
+        }
+        // a writer interfered, read under read locks
+        for( long m = mask; m != 0; m &= m - 1 ) {
+            int i = Long.numberOfTrailingZeros( m );
+            stamps[i] = stripes[i].readLock();
+        }
+        try {
+            return fits( demand );
+        } finally {
+            for( long m = mask; m != 0; m &= m - 1 ) {
+                int i = Long.numberOfTrailingZeros( m );
+                stripes[i].unlockRead( stamps[i] );
+            }
+        }
+    }
+
+
+    /*
+     * Check that all demanded units are available, without locking or validation
+     * (units of hot articles are checked again when they are taken).
+     */
+    private boolean fits( Demand demand ) {
+        for( int i = 0; i < demand.size; i++ ) {
+            if( demand.units[i] > unreserved( demand.ordinals[i] ) )
+                return false;
+        }
+        return true;
+    }
+
+
+    /*
+     * Take demanded units of hot articles, all or none, caller holds the stripe locks.
+     */
+    private boolean takeHot( Demand demand ) {
+        AtomicReferenceArray<HotCounter> h = hot;
+        for( int i = 0; i < demand.size; i++ ) {
+            HotCounter c = h.get( demand.ordinals[i] );
+            if( c != null && ! c.tryTake( demand.units[i] ) ) {
+                while( --i >= 0 ) {	// compensate units taken before
+                    c = h.get( demand.ordinals[i] );
+                    if( c != null ) {
+                        c.add( demand.units[i] );
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /*
+     * Add demanded units to reserved units, caller holds the stripe locks.
+     */
+    private void addReserved( Demand demand ) {
+        AtomicIntegerArray r = reserved;
+        for( int i = 0; i < demand.size; i++ ) {
+            r.set( demand.ordinals[i], r.get( demand.ordinals[i] ) + demand.units[i] );
+        }
+    }
+
+
+    /*
+     * Check that reserved units are still in stock (units reserved for hot
+     * articles always are), caller holds the stripe locks.
+     */
+    private boolean inStock( Demand demand ) {
+        AtomicIntegerArray u = units;
+        AtomicReferenceArray<HotCounter> h = hot;
+        for( int i = 0; i < demand.size; i++ ) {
+            if( h.get( demand.ordinals[i] ) == null && demand.units[i] > u.get( demand.ordinals[i] ) )
+                return false;
+        }
+        return true;
+    }
+
+
+    /*
+     * Remove reserved units and deduct them from stock if in stock, otherwise
+     * return them to hot sub-counters. Records units after the change, caller
+     * holds the stripe locks.
+     */
+    private void commitReserved( Demand demand, boolean inStock, int[] after ) {
+        AtomicIntegerArray u = units;
+        AtomicIntegerArray r = reserved;
+        AtomicReferenceArray<HotCounter> h = hot;
+        for( int i = 0; i < demand.size; i++ ) {
+            int ordinal = demand.ordinals[i];
+            r.set( ordinal, r.get( ordinal ) - demand.units[i] );
+            HotCounter c = h.get( ordinal );
+            if( c != null ) {
+                if( ! inStock ) {
+                    c.add( demand.units[i] );	// released
+                }
+            } else if( inStock ) {
+                u.set( ordinal, u.get( ordinal ) - demand.units[i] );
+                revalue( ordinal, - demand.units[i] );
+            }
+            if( after != null ) after[i] = get( ordinal );
+        }
+    }
+
+
+    /*
+     * Put back demanded units of hot articles, caller holds the stripe locks.
+     */
+    private void returnHot( Demand demand ) {
+        AtomicReferenceArray<HotCounter> h = hot;
+        for( int i = 0; i < demand.size; i++ ) {
+            HotCounter c = h.get( demand.ordinals[i] );
+            if( c != null ) {
+                c.add( demand.units[i] );
+            }
+        }
+    }
+
+
+    /*
+     * Deduct demanded units of articles that are not hot (hot units were taken
+     * before), record units after the change, caller holds the stripe locks.
+     */
+    private void deduct( Demand demand, int[] after ) {
+        AtomicIntegerArray u = units;
+        AtomicReferenceArray<HotCounter> h = hot;
+        for( int i = 0; i < demand.size; i++ ) {
+            int ordinal = demand.ordinals[i];
+            if( h.get( ordinal ) == null ) {
+                u.set( ordinal, u.get( ordinal ) - demand.units[i] );
+                revalue( ordinal, - demand.units[i] );
+            }
+            if( after != null ) after[i] = get( ordinal );
+        }
+    }
+
+
+    /*
+     * Adjust running value by changed units, caller holds the stripe lock.
+     */
+    private void revalue( int ordinal, long deltaUnits ) {
+        values[classes[ordinal]].add( deltaUnits * prices[ordinal] );
+    }
+
+
+    /*
+     * Units in stock minus units reserved, without locking or validation.
+     */
+    private int unreserved( int ordinal ) {
+        HotCounter h = hot.get( ordinal );
+        if( h != null ) {
+            return (int)Math.min( h.sum(), Integer.MAX_VALUE );
+        }
+        AtomicIntegerArray r = reserved;
+        return units.get( ordinal ) - r.get( ordinal );
+    }
+
+
+    /*
+     * Count a contended fill for the articles of a demand, promote articles
+     * contended HOT_CONTENTION times within one window.
+     */
+    private void contended( Demand demand ) {
+        long window = System.nanoTime() >>> 30;	// about one second
+        AtomicLongArray c = contention;
+        for( int i = 0; i < demand.size; i++ ) {
+            int ordinal = demand.ordinals[i];
+            if( hot.get( ordinal ) != null || hotOrdinals.length >= MAX_HOT )
+                continue;
+            long v, next;
+            do {
+                v = c.get( ordinal );
+                next = ( v >>> 32 ) == ( window & 0xffffffffL )? v + 1 : ( window << 32 ) | 1;
+            } while( ! c.compareAndSet( ordinal, v, next ) );
+            if( (int)next == HOT_CONTENTION ) {
+                promote( ordinal );
+            }
+        }
+    }
+
+
+    /*
+     * Move available units of an article into striped sub-counters.
+     */
+    private void promote( int ordinal ) {
+        StampedLock lock = stripes[ordinal & ( STRIPES - 1 )];
+        long stamp = lock.writeLock();
+        try {
+            if( hot.get( ordinal ) != null || ! addHotOrdinal( ordinal ) )
+                return;
+            int u = units.get( ordinal );
+            HotCounter h = new HotCounter( HOT_STRIPES, Math.max( 0, u - reserved.get( ordinal ) ) );
+            revalue( ordinal, - u );	// value of hot articles is computed when queried
+            units.set( ordinal, 0 );
+            hot.set( ordinal, h );
+        } finally {
+            lock.unlockWrite( stamp );
+        }
+    }
+
+
+    /*
+     * Demote hot articles that had fewer than HOT_CONTENTION takes per window
+     * since the last check, at most one check per window.
+     */
+    private void coolDown() {
+        long last = cooled.get();
+        long now = System.nanoTime();
+        if( now - last < WINDOW_NANOS || ! cooled.compareAndSet( last, now ) )
+            return;
+        for( int ordinal : hotOrdinals ) {
+            HotCounter h = hot.get( ordinal );
+            if( h == null )
+                continue;
+            long takes = h.takes();
+            long since = Math.max( last, h.created() );
+            if( now - since >= WINDOW_NANOS && takes * WINDOW_NANOS < HOT_CONTENTION * ( now - since ) ) {
+                demote( ordinal );
+            }
+        }
+    }
+
+
+    /*
+     * Close sub-counters of a hot article and move its units back into the table.
+     */
+    private void demote( int ordinal ) {
+        StampedLock lock = stripes[ordinal & ( STRIPES - 1 )];
+        long stamp = lock.writeLock();
+        try {
+            HotCounter h = hot.get( ordinal );
+            if( h == null )
+                return;
+            int u = (int)Math.min( h.close() + reserved.get( ordinal ), Integer.MAX_VALUE );
+            units.set( ordinal, u );
+            revalue( ordinal, u );
+            hot.set( ordinal, null );
+            removeHotOrdinal( ordinal );
+        } finally {
+            lock.unlockWrite( stamp );
+        }
+    }
+
+
+    /*
+     * Add ordinal to hot ordinals unless MAX_HOT articles are hot. Promotions and
+     * demotions of articles in different stripes replace the array one at a time.
+     */
+    private synchronized boolean addHotOrdinal( int ordinal ) {
+        if( hotOrdinals.length >= MAX_HOT )
+            return false;
+        int[] o = Arrays.copyOf( hotOrdinals, hotOrdinals.length + 1 );
+        o[o.length - 1] = ordinal;
+        hotOrdinals = o;
+        return true;
+    }
+
+
+    private synchronized void removeHotOrdinal( int ordinal ) {
+        int[] o = new int[hotOrdinals.length - 1];
+        int i = 0;
+        for( int hotOrdinal : hotOrdinals ) {
+            if( hotOrdinal != ordinal ) o[i++] = hotOrdinal;
+        }
+        hotOrdinals = o;
+    }
+
+
+    /**
+     * Grow counters to hold at least capacity ordinals.
+     *
+     * @param capacity number of ordinals.
+     */
+    void ensureCapacity( int capacity ) {
+        if( capacity <= units.length() )
+            return;
+        lock( -1L );	// all stripes, no writer may update the old counters while copying
+        try {
+            if( capacity > units.length() ) {
+                int length = Math.max( capacity, units.length() * 2 );
+                AtomicReferenceArray<HotCounter> h = new AtomicReferenceArray<HotCounter>( length );
+                for( int i = 0; i < hot.length(); i++ ) {
+                    h.set( i, hot.get( i ) );
+                }
+                hot = h;
+                contention = new AtomicLongArray( length );
+                reserved = grow( reserved, length );	// reserved first, readers read reserved before units
+                units = grow( units, length );
+                prices = Arrays.copyOf( prices, length );
+                classes = Arrays.copyOf( classes, length );
+            }
+        } finally {
+            unlock( -1L );
+        }
+    }
+
+
+    private static AtomicIntegerArray grow( AtomicIntegerArray old, int length ) {
+        AtomicIntegerArray grown = new AtomicIntegerArray( length );
+        for( int i = 0; i < old.length(); i++ ) {
+            grown.set( i, old.get( i ) );
+        }
+        return grown;
+    }
+
+
+    /*
+     * Lock stripes of mask in ascending order.
+     */
+    void lock( long mask ) {
+        for( long m = mask; m != 0; m &= m - 1 ) {
+            stripes[Long.numberOfTrailingZeros( m )].asWriteLock().lock();
+        }
+    }
+
+
+    /*
+     * Lock stripes of mask in ascending order, returns true if a stripe was held by another thread.
+     */
+    private boolean lockDetectContention( long mask ) {
+        boolean contended = false;
+        for( long m = mask; m != 0; m &= m - 1 ) {
+            StampedLock stripe = stripes[Long.numberOfTrailingZeros( m )];
+            if( stripe.tryWriteLock() == 0 ) {
+                contended = true;
+                stripe.writeLock();
+            }
+        }
+        return contended;
+    }
+
+
+    void unlock( long mask ) {
+        for( long m = mask; m != 0; m &= m - 1 ) {
+            stripes[Long.numberOfTrailingZeros( m )].asWriteLock().unlock();
+        }
+    }
+
+
+    /**
+     * Units demanded per article ordinal, merged and sorted by ordinal. Instances
+     * are reused per thread to keep fills allocation-free.
+     */
+    static class Demand {
+        int[] ordinals = new int[8];
+        int[] units = new int[8];
+        int size = 0;
+        private long[] packed = new long[8];
+        private int count = 0;
+        private long[] stamps = null;	// allocated for scratch demands only
+        private int[] after = null;	// allocated when changes are observed
+
+        /**
+         * Reset to empty demand.
+         */
+        Demand clear() {
+            size = 0;
+            count = 0;
+            return this;
+        }
+
+        /**
+         * Add units demanded for an ordinal, call merge() after the last add().
+         */
+        void add( int ordinal, int units ) {
+            if( count == packed.length ) {
+                packed = Arrays.copyOf( packed, count * 2 );
+            }
+            packed[count++] = ( (long)ordinal << 32 ) | ( units & 0xffffffffL );
+        }
+
+        /**
+         * Sort by ordinal and sum units of the same ordinal.
+         */
+        Demand merge() {
+            Arrays.sort( packed, 0, count );
+            if( ordinals.length < count ) {
+                ordinals = new int[packed.length];
+                units = new int[packed.length];
+            }
+            size = 0;
+            for( int i = 0; i < count; i++ ) {
+                int ordinal = (int)( packed[i] >>> 32 );
+                int u = (int)packed[i];
+                if( size > 0 && ordinals[size - 1] == ordinal ) {
+                    long sum = (long)units[size - 1] + u;
+                    units[size - 1] = (int)Math.min( sum, Integer.MAX_VALUE );
+                } else {
+                    ordinals[size] = ordinal;
+                    units[size++] = u;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Lock stamps by stripe for optimistic reads.
+         */
+        long[] stamps() {
+            if( stamps == null ) {
+                stamps = new long[STRIPES];
+            }
+            return stamps;
+        }
+
+        /**
+         * Units in stock after a change by index, recorded under lock to report changes after unlocking.
+         */
+        int[] after() {
+            if( after == null || after.length < size ) {
+                after = new int[ordinals.length];
+            }
+            return after;
+        }
+
+        /**
+         * Return a copy that is not shared with other threads.
+         */
+        Demand copy() {
+            Demand c = new Demand();
+            c.ordinals = Arrays.copyOf( ordinals, size );
+            c.units = Arrays.copyOf( units, size );
+            c.size = size;
+            return c;
+        }
+
+        /**
+         * Bit mask of lock stripes of all ordinals.
+         */
+        long stripeMask() {
+            long mask = 0;
+            for( int i = 0; i < size; i++ ) {
+                mask |= 1L << ( ordinals[i] & ( STRIPES - 1 ) );
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package system.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel that collects items when their deadline has passed.
+ * Scheduling is O(1) and only locks one slot. The wheel is advanced by a
+ * single thread, which visits only the slots of elapsed ticks. Items with
+ * deadlines beyond one rotation stay in their slot for further rotations.
+ * Cancelled items are not removed but skipped by the consumer when they
+ * expire (lazy cancellation).
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+class TimerWheel<T> {
+
+    /**
+     * duration of one tick in milliseconds.
+     */
+    private final long tickMillis;
+
+    /**
+     * slots of linked items, length is a power of two.
+     */
+    private final Slot<T>[] slots;
+
+    /**
+     * last tick that was fully processed, set under the lock of its slot.
+     */
+    private volatile long processed;
+
+
+    TimerWheel( long tickMillis, int slotCount, long now ) {
+        if( tickMillis <= 0 || slotCount <= 0 )
+            throw new IllegalArgumentException( "illegal tick: " + tickMillis + ", slots: " + slotCount );
+        this.tickMillis = tickMillis;
+        int n = Integer.highestOneBit( slotCount - 1 ) << 1;
+        this.slots = newSlots( Math.max( n, 1 ) );
+        for( int i = 0; i < slots.length; i++ ) {
+            slots[i] = new Slot<T>();
+        }
+        this.processed = now / tickMillis;
+    }
+
+
+    /**
+     * Schedule item to expire at deadline.
+     *
+     * @param item item to schedule.
+     * @param deadline expiry time in milliseconds.
+     */
+    void schedule( T item, long deadline ) {
+        while( true ) {
+            long tick = Math.max( deadline / tickMillis, processed + 1 );
+            Slot<T> slot = slots[(int)( tick & ( slots.length - 1 ) )];
+            synchronized( slot ) {
+                // re-checked under the slot lock: if advance() has processed the tick
+                // meanwhile, the item would wait for a full rotation in this slot
+                if( tick > processed ) {
+                    slot.head = new Node<T>( item, tick, slot.head );
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Advance wheel to now and pass all expired items to a consumer. Must only
+     * be called by one thread at a time.
+     *
+     * @param now current time in milliseconds.
+     * @param expired consumer of expired items.
+     * @return number of expired items.
+     */
+    int advance( long now, Consumer<T> expired ) {
+        long target = now / tickMillis;
+        int count = 0;
+        List<T> due = new ArrayList<T>();
+        for( long tick = processed + 1; tick <= target; tick++ ) {
+            Slot<T> slot = slots[(int)( tick & ( slots.length - 1 ) )];
+            synchronized( slot ) {
+                Node<T> prev = null;
+                for( Node<T> node = slot.head; node != null; node = node.next ) {
+                    if( node.tick <= tick ) {
+                        due.add( node.item );
+                        if( prev == null ) slot.head = node.next;
+                        else prev.next = node.next;
+                    } else {
+                        prev = node;
+                    }
+                }
+                processed = tick;
+            }
+            due.forEach( expired );
+            count += due.size();
+            due.clear();
+        }
+        return count;
+    }
+
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <T> Slot<T>[] newSlots( int n ) {
+        return new Slot[n];
+    }
+
+
+    private static class Slot<T> {
+        private Node<T> head;
+    }
+
+
+    private static class Node<T> {
+        private final T item;
+        private final long tick;
+        private Node<T> next;
+
+        Node( T item, long tick, Node<T> next ) {
+            this.item = item;
+            this.tick = tick;
+            this.next = next;
+        }
+    }
+}
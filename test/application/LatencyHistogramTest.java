@@ -0,0 +1,95 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of percentiles of the log-linear latency histogram.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals( 0, h.percentile( 50 ) );		// empty
+        assertEquals( 0, h.mean() );
+        for( int v = 0; v < 100; v++ ) {
+            h.record( v );
+        }
+        h.record( -5 );		// counts as 0
+        assertEquals( 101, h.count() );
+        assertEquals( 99, h.max() );
+        assertEquals( 0, h.percentile( 0 ) );
+        assertEquals( 49, h.percentile( 50 ) );
+        assertEquals( 98, h.percentile( 99 ) );
+        assertEquals( 99, h.percentile( 100 ) );
+        assertEquals( 49, h.mean() );
+    }
+
+
+    @Test
+    public void percentilesAreWithinRelativeError() {
+        SplittableRandom random = new SplittableRandom( 42 );
+        long[] values = new long[100_000];
+        LatencyHistogram h = new LatencyHistogram();
+        for( int i = 0; i < values.length; i++ ) {
+            values[i] = 1000 + random.nextLong( 10_000_000_000L );	// 1us .. 10s
+            h.record( values[i] );
+        }
+        Arrays.sort( values );
+        for( double p : new double[] { 1, 10, 50, 90, 99, 99.9, 99.99, 100 } ) {
+            long exact = values[(int)Math.ceil( values.length * p / 100.0 ) - 1];
+            long reported = h.percentile( p );
+            assertTrue( Math.abs( reported - exact ) <= exact * 0.016, p + ": " + reported + " vs " + exact );
+        }
+        assertEquals( values[values.length - 1], h.max() );
+    }
+
+
+    @Test
+    public void addMergesHistograms() {
+        LatencyHistogram a = new LatencyHistogram(), b = new LatencyHistogram();
+        for( int v = 0; v < 50; v++ ) {
+            a.record( v );
+            b.record( v + 50 );
+        }
+        b.record( 1_000_000 );
+        assertEquals( a, a.add( b ) );
+        assertEquals( 101, a.count() );
+        assertEquals( 1_000_000, a.max() );
+        assertEquals( 50, a.percentile( 50 ) );
+        assertEquals( 51, b.count() );		// b unchanged
+        a.clear();
+        assertEquals( 0, a.count() );
+        assertEquals( 0, a.max() );
+    }
+
+
+    @Test
+    public void correctionAddsMissingRequests() {
+        LatencyHistogram h = new LatencyHistogram();
+        for( int i = 0; i < 99; i++ ) {
+            h.record( 100 );
+        }
+        h.record( 10_000 );		// stalled: 9 requests were not sent
+        assertEquals( 100, h.corrected( 0 ).count() );
+        assertEquals( 100, h.corrected( 20_000 ).count() );
+        LatencyHistogram c = h.corrected( 1000 );
+        assertEquals( 109, c.count() );
+        assertEquals( h.max(), c.max() );
+        assertEquals( 100, h.percentile( 99 ) );
+        assertTrue( c.percentile( 99 ) > 5000 );
+        assertEquals( 100, h.count() );		// original unchanged
+    }
+}
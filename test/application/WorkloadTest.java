@@ -0,0 +1,145 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of generated, recorded and replayed order streams.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class WorkloadTest {
+
+    private static final long[] customers = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+    private static final String[] articles = { "SKU-1", "SKU-2", "SKU-3", "SKU-4", "SKU-5" };
+
+
+    @Test
+    public void sameSeedGeneratesSameStream() {
+        Workload a = generate( 7, 1.0, 100.0, false );
+        Workload b = generate( 7, 1.0, 100.0, false );
+        assertEquals( 1000, a.entries().size() );
+        for( int i = 0; i < 1000; i++ ) {
+            assertEntry( a.entries().get( i ), b.entries().get( i ), 1 );
+        }
+        assertNotEquals( lines( a ), lines( generate( 8, 1.0, 100.0, false ) ) );
+    }
+
+
+    @Test
+    public void itemsAreWithinBounds() {
+        for( Workload.Entry e : generate( 1, 0.0, 100.0, false ).entries() ) {
+            assertTrue( e.articleIds.length >= 1 && e.articleIds.length <= 3 );
+            assertEquals( e.articleIds.length, e.units.length );
+            for( int units : e.units ) {
+                assertTrue( units >= 1 && units <= 5 );
+            }
+            assertTrue( e.customerId >= 1 && e.customerId <= 10 );
+        }
+    }
+
+
+    @Test
+    public void skewFavorsTopRanks() {
+        int[] uniform = customerCounts( generate( 3, 0.0, 100.0, false ) );
+        int[] skewed = customerCounts( generate( 3, 1.5, 100.0, false ) );
+        assertTrue( skewed[0] > 4 * skewed[9] );
+        assertTrue( uniform[0] < 2 * uniform[9] );
+        assertTrue( skewed[0] > 2 * uniform[0] );
+    }
+
+
+    @Test
+    public void arrivalsFollowTheRate() {
+        List<Workload.Entry> fixed = generate( 5, 1.0, 1000.0, false ).entries();
+        for( int i = 0; i < fixed.size(); i++ ) {
+            assertEquals( i * 1_000_000L, fixed.get( i ).offsetNanos );	// 1ms apart
+        }
+        List<Workload.Entry> poisson = generate( 5, 1.0, 1000.0, true ).entries();
+        long span = poisson.get( poisson.size() - 1 ).offsetNanos;
+        assertTrue( span > 800_000_000L && span < 1_200_000_000L, "span: " + span );	// mean gap 1ms
+        boolean irregular = false;
+        for( int i = 1; i < poisson.size(); i++ ) {
+            long gap = poisson.get( i ).offsetNanos - poisson.get( i - 1 ).offsetNanos;
+            assertTrue( gap >= 0 );
+            irregular |= Math.abs( gap - 1_000_000L ) > 100_000L;
+        }
+        assertTrue( irregular );
+    }
+
+
+    @Test
+    public void recordedStreamIsReplayed( @TempDir Path dir ) throws Exception {
+        Workload recorded = generate( 11, 1.0, 250.0, true );
+        Path file = dir.resolve( "workload.txt" );
+        recorded.write( file );
+        Workload replayed = Workload.read( file );
+        assertEquals( recorded.entries().size(), replayed.entries().size() );
+        for( int i = 0; i < recorded.entries().size(); i++ ) {
+            assertEntry( recorded.entries().get( i ), replayed.entries().get( i ), 1000 );	// offsets in micros
+        }
+        assertEquals( Files.readAllLines( file ), lines( replayed ) );
+    }
+
+
+    @Test
+    public void malformedLinesAreRejected( @TempDir Path dir ) throws Exception {
+        Path file = dir.resolve( "workload.txt" );
+        Files.writeString( file, "0;1;SKU-1:2,SKU-2:1\n\n1000;2;SKU-1:x\n" );
+        IllegalArgumentException e = assertThrows( IllegalArgumentException.class, () -> Workload.read( file ) );
+        assertTrue( e.getMessage().contains( "line 3" ) );
+        Files.writeString( file, "0;1;SKU-1:2,SKU-2:1\n\n1000;2;SKU-3:1\n" );
+        assertEquals( 2, Workload.read( file ).entries().size() );		// blank lines skipped
+    }
+
+
+    /*
+     * 1000 orders of 1 to 3 items with 1 to 5 units each.
+     */
+    private static Workload generate( long seed, double skew, double rate, boolean poisson ) {
+        return Workload.generate( seed, 1000, customers, articles, skew, skew, 3, 5, rate, poisson );
+    }
+
+
+    private static void assertEntry( Workload.Entry expected, Workload.Entry actual, long offsetTolerance ) {
+        assertTrue( Math.abs( expected.offsetNanos - actual.offsetNanos ) < offsetTolerance );
+        assertEquals( expected.customerId, actual.customerId );
+        assertArrayEquals( expected.articleIds, actual.articleIds );
+        assertArrayEquals( expected.units, actual.units );
+    }
+
+
+    private static int[] customerCounts( Workload workload ) {
+        int[] counts = new int[customers.length];
+        workload.entries().forEach( e -> counts[(int)e.customerId - 1]++ );
+        return counts;
+    }
+
+
+    /*
+     * Lines of a stream as recorded by write().
+     */
+    private static List<String> lines( Workload workload ) {
+        return workload.entries().stream().map( e -> {
+            StringBuilder line = new StringBuilder().append( e.offsetNanos / 1000 ).append( ';' ).append( e.customerId ).append( ';' );
+            for( int k = 0; k < e.articleIds.length; k++ ) {
+                line.append( k > 0? "," : "" ).append( e.articleIds[k] ).append( ':' ).append( e.units[k] );
+            }
+            return line.toString();
+        }).toList();
+    }
+}
@@ -0,0 +1,110 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+
+/**
+ * Tests of the inverted article index with varint posting lists.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class ArticleIndexTest {
+
+    private ArticleIndex index;
+    private Article canon, nikon, lens, tripod;
+
+
+    @BeforeEach
+    public void setUp() {
+        index = new ArticleIndex();
+        canon = article( "SKU-1", "Canon PowerShot 18-55mm" );
+        nikon = article( "SKU-2", "Nikon Coolpix 18-200mm" );
+        lens = article( "SKU-3", "Canon Lens 70-200mm" );
+        tripod = article( "SKU-4", "Tripod, aluminium" );
+        for( Article a : List.of( canon, nikon, lens, tripod ) ) {
+            index.index( a );
+        }
+    }
+
+
+    @Test
+    public void andQueryMatchesAllTerms() {
+        assertEquals( List.of( canon ), index.search( "canon 18-55mm" ) );
+        assertEquals( List.of( canon, lens ), index.search( "canon" ) );
+        assertEquals( List.of(), index.search( "canon tripod" ) );
+    }
+
+
+    @Test
+    public void orQueryMatchesEitherGroup() {
+        assertEquals( List.of( canon, nikon, tripod ), index.search( "powershot OR nikon OR tripod" ) );
+        assertEquals( List.of( nikon, lens ), index.search( "canon 70-200mm OR 18-200mm" ) );
+    }
+
+
+    @Test
+    public void prefixQueryAndCaseInsensitivity() {
+        assertEquals( List.of( canon ), index.search( "POWER*" ) );
+        assertEquals( List.of( canon, nikon ), index.search( "18*" ) );
+        assertEquals( List.of( nikon, lens ), index.search( "200MM" ) );	// part of a hyphenated term
+        assertEquals( List.of(), index.search( "zoom*" ) );
+    }
+
+
+    @Test
+    public void largeGapsRoundTrip() {
+        List<Article> expected = new ArrayList<Article>();
+        for( int i = 0; i < 20000; i++ ) {
+            String descr = "item " + i;
+            if( i % 997 == 0 || i == 19999 ) {	// gaps need two and three varint bytes
+                descr += " rare";
+            }
+            Article a = article( "GEN-" + i, descr );
+            index.index( a );
+            if( descr.endsWith( "rare" ) ) {
+                expected.add( a );
+            }
+        }
+        assertEquals( expected, index.search( "rare" ) );
+        assertEquals( 20000, index.search( "item" ).size() );
+    }
+
+
+    @Test
+    public void reindexReplacesTerms() {
+        int terms = index.termCount();
+        index.index( article( "SKU-4", "Tripod, carbon" ) );
+        assertEquals( List.of(), index.search( "aluminium" ) );
+        assertEquals( 1, index.search( "carbon" ).size() );
+        assertEquals( "Tripod, carbon", index.search( "tripod" ).get( 0 ).getDescription() );
+        assertEquals( terms, index.termCount() );
+        //
+        index.index( canon );	// unchanged description keeps its postings
+        assertEquals( List.of( canon, lens ), index.search( "canon" ) );
+    }
+
+
+    @Test
+    public void tokenizeSplitsHyphenatedTerms() {
+        assertEquals( List.of( "18-55mm", "18", "55mm", "f3.5" ),
+            new ArrayList<String>( ArticleIndex.tokenize( "-18-55mm, F3.5." ) ) );
+        assertTrue( index.search( null ).isEmpty() );
+    }
+
+
+    private static Article article( String id, String description ) {
+        return new Article( description, 100 ).setId( id );
+    }
+}
@@ -0,0 +1,88 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import datamodel.Customer;
+
+/**
+ * Tests of the segmented LRU read-through cache.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class CachingRepositoryImplTest {
+
+    private RepositoryImpl<Customer> backend;
+    private CachingRepositoryImpl<Customer> cache;
+
+
+    @BeforeEach
+    public void setUp() {
+        backend = new RepositoryImpl<Customer>();
+        for( long id = 1; id <= 100; id++ ) {
+            backend.save( new Customer( "Customer " + id ).setId( id ) );
+        }
+        cache = new CachingRepositoryImpl<Customer>( backend, 10 );	// 8 protected, 2 probation
+    }
+
+
+    @Test
+    public void secondLookupIsHit() {
+        assertTrue( cache.findById( 1 ).isPresent() );
+        assertTrue( cache.findById( 1 ).isPresent() );
+        assertEquals( 1, cache.getMissCount() );
+        assertEquals( 1, cache.getHitCount() );
+    }
+
+
+    @Test
+    public void scanDoesNotEvictProtectedEntities() {
+        for( long id = 1; id <= 8; id++ ) {
+            cache.findById( id );
+            cache.findById( id );	// second lookup promotes to protected
+        }
+        for( long id = 50; id < 100; id++ ) {	// one-time lookups pass through probation
+            cache.findById( id );
+        }
+        long misses = cache.getMissCount();
+        for( long id = 1; id <= 8; id++ ) {
+            assertTrue( cache.findById( id ).isPresent() );
+        }
+        assertEquals( misses, cache.getMissCount() );
+        assertTrue( cache.getEvictionCount() >= 48 );
+    }
+
+
+    @Test
+    public void saveReplacesCachedEntity() {
+        cache.findById( 7 );
+        Customer replaced = new Customer( "Replaced Customer" ).setId( 7 );
+        cache.save( replaced );
+        assertSame( replaced, cache.findById( 7 ).get() );
+        assertSame( replaced, backend.findById( 7 ).get() );
+    }
+
+
+    @Test
+    public void missingEntityIsNotCached() {
+        assertTrue( cache.findById( 1000 ).isEmpty() );
+        backend.save( new Customer( "Late Customer" ).setId( 1000 ) );
+        assertTrue( cache.findById( 1000 ).isPresent() );
+    }
+
+
+    @Test
+    public void illegalArguments() {
+        assertThrows( IllegalArgumentException.class, () -> new CachingRepositoryImpl<Customer>( null, 10 ) );
+        assertThrows( IllegalArgumentException.class, () -> new CachingRepositoryImpl<Customer>( backend, 0 ) );
+    }
+}
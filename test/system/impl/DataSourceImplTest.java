@@ -0,0 +1,93 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import datamodel.Article;
+
+/**
+ * Tests of the import of stock feeds in CSV and JSON format.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class DataSourceImplTest {
+
+    @TempDir
+    File dir;
+
+    private DataSourceImpl dataSource;
+    private InventoryManagerImpl inventory;
+
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DataSourceImpl();
+        inventory = InventoryManagerImpl.getInstance( new RepositoryImpl<Article>() );
+        for( int i = 0; i < 3; i++ ) {
+            inventory.save( new Article( "Article " + i, 100 ).setId( "SKU-" + i ) );
+            inventory.update( "SKU-" + i, 10 );
+        }
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        inventory.shutdown();
+    }
+
+
+    @Test
+    public void csvSnapshotAndDelta() throws Exception {
+        assertEquals( 2, dataSource.importStockFeed( file( "snapshot.csv", "#snapshot\nSKU-0, 4\n\nSKU-1,10\nSKU-2,0\n" ), inventory ) );
+        assertEquals( 4, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-2" ) );
+        assertEquals( 1, dataSource.importStockFeed( file( "delta.csv", "#delta\nSKU-0,-4\n" ), inventory ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-0" ) );
+    }
+
+
+    @Test
+    public void jsonFeedWithWarehouse() throws Exception {
+        inventory.addWarehouse( "north" );
+        String json = "{ \"mode\": \"delta\", \"warehouse\": \"north\", \"comment\": [ 1, 2 ],\n"
+                + "  \"stock\": [ { \"id\": \"SKU-0\", \"units\": 5 }, { \"units\": 7, \"id\": \"SKU-1\" } ] }";
+        assertEquals( 2, dataSource.importStockFeed( file( "feed.json", json ), inventory ) );
+        assertEquals( 5, inventory.getUnitsInStock( "SKU-0", "north" ) );
+        assertEquals( 17, inventory.getUnitsInStock( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void malformedFeedsChangeNothing() throws Exception {
+        assertThrows( IllegalArgumentException.class, () -> dataSource.importStockFeed( file( "a.csv", "SKU-0,1\n" ), inventory ) );
+        assertThrows( IllegalArgumentException.class, () -> dataSource.importStockFeed( file( "b.csv", "#snapshot\nSKU-0,1\nSKU-1\n" ), inventory ) );
+        assertThrows( IllegalArgumentException.class, () -> dataSource.importStockFeed( file( "c.csv", "#snapshot\nSKU-0,1\nSKU-0,2\n" ), inventory ) );
+        assertThrows( IllegalArgumentException.class, () -> dataSource.importStockFeed( file( "d.csv", "#delta\nSKU-0,1\nSKU-1,-11\n" ), inventory ) );
+        assertThrows( IllegalArgumentException.class, () -> dataSource.importStockFeed(
+                file( "e.json", "{ \"mode\": \"delta\", \"stock\": [ { \"id\": \"SKU-0\" } ] }" ), inventory ) );
+        assertThrows( IllegalArgumentException.class, () -> dataSource.importStockFeed(
+                file( "f.json", "{ \"mode\": \"snapshot\", \"stock\": [ { \"id\": \"SKU-0\", \"units\": 1 }, " ), inventory ) );	// bad syntax
+        for( int i = 0; i < 3; i++ ) {
+            assertEquals( 10, inventory.getUnitsInStock( "SKU-" + i ) );
+        }
+    }
+
+
+    private String file( String name, String content ) throws Exception {
+        File file = new File( dir, name );
+        Files.writeString( file.toPath(), content );
+        return file.getPath();
+    }
+}
@@ -0,0 +1,92 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+
+/**
+ * Tests of article lookups through the minimal perfect hash of the frozen catalog.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class FrozenCatalogTest {
+
+    @Test
+    public void allIdsAreFoundWithTheirOrdinal() {
+        List<Article> articles = articles( "SKU-", 100_000 );
+        FrozenCatalog catalog = new FrozenCatalog( articles );
+        assertEquals( 100_000, catalog.size() );
+        for( int i = 0; i < articles.size(); i++ ) {
+            assertEquals( i, catalog.ordinal( articles.get( i ).getId() ) );
+            assertSame( articles.get( i ), catalog.article( articles.get( i ).getId() ) );
+        }
+    }
+
+
+    @Test
+    public void missesAreNotFound() {
+        FrozenCatalog catalog = new FrozenCatalog( articles( "SKU-", 10_000 ) );
+        for( int i = 10_000; i < 110_000; i++ ) {
+            assertEquals( -1, catalog.ordinal( "SKU-" + i ) );
+        }
+        for( String id : new String[] { "", "SKU-", "SKU-1 ", "SKU-01", "sku-1", "SKU-1\u0000", "X" } ) {
+            assertEquals( -1, catalog.ordinal( id ), id );
+            assertNull( catalog.article( id ) );
+        }
+    }
+
+
+    @Test
+    public void smallCatalogs() {
+        FrozenCatalog empty = new FrozenCatalog( List.of() );
+        assertEquals( 0, empty.size() );
+        assertEquals( -1, empty.ordinal( "SKU-1" ) );
+        assertNull( empty.article( "SKU-1" ) );
+        //
+        List<Article> articles = articles( "", 0 );
+        articles.add( new Article( "Aa", 1 ).setId( "Aa" ) );		// equal String.hashCode()
+        articles.add( new Article( "BB", 1 ).setId( "BB" ) );
+        articles.add( new Article( "A", 1 ).setId( "A" ) );
+        FrozenCatalog catalog = new FrozenCatalog( articles );
+        for( int i = 0; i < articles.size(); i++ ) {
+            assertEquals( i, catalog.ordinal( articles.get( i ).getId() ) );
+        }
+        assertEquals( -1, catalog.ordinal( "AB" ) );
+        //
+        FrozenCatalog one = new FrozenCatalog( articles( "SKU-", 1 ) );
+        assertEquals( 0, one.ordinal( "SKU-0" ) );
+        assertEquals( -1, one.ordinal( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void illegalArticlesAreRejected() {
+        assertThrows( IllegalArgumentException.class, () -> new FrozenCatalog( Arrays.asList( (Article) null ) ) );
+        assertThrows( IllegalArgumentException.class, () -> new FrozenCatalog( List.of( new Article( "No id", 1 ) ) ) );
+        List<Article> duplicates = articles( "SKU-", 100 );
+        duplicates.add( new Article( "Again", 1 ).setId( "SKU-42" ) );
+        assertThrows( IllegalArgumentException.class, () -> new FrozenCatalog( duplicates ) );
+    }
+
+
+    private static List<Article> articles( String prefix, int n ) {
+        List<Article> articles = new ArrayList<Article>( n );
+        for( int i = 0; i < n; i++ ) {
+            articles.add( new Article( "Article " + i, 100 ).setId( prefix + i ) );
+        }
+        return articles;
+    }
+}
@@ -0,0 +1,180 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of striped sub-counters of hot articles and of their promotion and
+ * demotion in the stock table.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class HotCounterTest {
+
+    @Test
+    public void takesStealFromOtherStripes() {
+        HotCounter counter = new HotCounter( 8, 8 );	// one unit per stripe
+        assertEquals( 8, counter.sum() );
+        assertFalse( counter.tryTake( 9 ) );
+        assertEquals( 8, counter.sum() );		// all or nothing
+        assertTrue( counter.tryTake( 8 ) );
+        assertEquals( 0, counter.sum() );
+        assertFalse( counter.tryTake( 1 ) );
+        counter.add( 3 );
+        assertTrue( counter.tryTake( 3 ) );
+        assertEquals( 2, counter.takes() );
+        assertEquals( 0, counter.takes() );		// reset by takes()
+    }
+
+
+    @Test
+    public void adjustMovesTowardsTarget() {
+        HotCounter counter = new HotCounter( 4, 10 );
+        counter.adjust( 25 );
+        assertEquals( 25, counter.sum() );
+        counter.adjust( 7 );
+        assertEquals( 7, counter.sum() );
+        counter.adjust( 0 );
+        assertEquals( 0, counter.sum() );
+    }
+
+
+    @Test
+    public void closedCounterRefusesTakes() {
+        HotCounter counter = new HotCounter( 4, 10 );
+        assertTrue( counter.tryTake( 4 ) );
+        assertEquals( 6, counter.close() );
+        assertTrue( counter.isClosed() );
+        assertFalse( counter.tryTake( 1 ) );
+        assertEquals( 0, counter.sum() );
+    }
+
+
+    @Test
+    public void concurrentTakesFailOnlyWhenUnitsAreGone() throws Exception {
+        long units = 100_000;
+        HotCounter counter = new HotCounter( 4, units );
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            List<Future<Long>> taken = new ArrayList<Future<Long>>();
+            for( int t = 0; t < threads; t++ ) {
+                taken.add( executor.submit( () -> {
+                    long n = 0;
+                    while( counter.tryTake( 10 ) ) {
+                        n += 10;
+                    }
+                    while( counter.tryTake( 1 ) ) {		// fails only when no unit is left
+                        n++;
+                    }
+                    return n;
+                }));
+            }
+            long sum = 0;
+            for( Future<Long> f : taken ) {
+                sum += f.get( 1, TimeUnit.MINUTES );
+            }
+            assertEquals( units, sum );
+            assertEquals( 0, counter.sum() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void hotArticlesKeepUnitsAndValue() throws Exception {
+        StockTable table = new StockTable( 1 );
+        table.ensureCapacity( 100 );
+        table.setPrice( 1, 100, 0 );
+        table.setPrice( 2, 50, 0 );
+        table.set( 1, 1000 );
+        table.set( 2, 10 );
+        StockTable.Demand reserved = demand( 1, 100, 0, 0 );
+        assertTrue( table.reserve( reserved ) );
+        promote( table, 1 );
+        assertEquals( 1000, table.get( 1 ) );
+        assertEquals( 900, table.available( 1 ) );
+        assertEquals( 100_500, table.value( 0 ) );
+        //
+        for( int i = 0; i < 100; i++ ) {
+            assertTrue( table.take( demand( 1, 1, 0, 0 ) ) );		// lock-free
+        }
+        assertFalse( table.take( demand( 1, 5, 2, 11 ) ) );		// all or none with a hot article
+        assertTrue( table.take( demand( 1, 5, 2, 10 ) ) );
+        assertEquals( 895, table.get( 1 ) );
+        assertEquals( 795, table.available( 1 ) );
+        assertTrue( table.commit( reserved ) );
+        assertEquals( 795, table.get( 1 ) );
+        assertEquals( 79_500, table.value( 0 ) );
+        table.set( 1, 50 );
+        assertEquals( 50, table.get( 1 ) );
+        assertEquals( 1, hotOrdinals( table ).length );
+    }
+
+
+    @Test
+    public void idleHotArticlesAreDemoted() throws Exception {
+        StockTable table = new StockTable( 1 );
+        table.ensureCapacity( 100 );
+        table.setPrice( 1, 100, 0 );
+        table.set( 1, 40 );
+        promote( table, 1 );
+        assertTrue( table.take( demand( 1, 1, 0, 0 ) ) );
+        for( int i = 0; i < 60 && hotOrdinals( table ).length > 0; i++ ) {	// checked once per window (about one second)
+            Thread.sleep( 100 );
+            assertTrue( table.take( demand( 1, 0, 0, 0 ) ) );
+        }
+        assertEquals( 0, hotOrdinals( table ).length );
+        assertEquals( 39, table.get( 1 ) );
+        assertEquals( 3900, table.value( 0 ) );
+        assertTrue( table.take( demand( 1, 39, 0, 0 ) ) );
+        assertEquals( 0, table.get( 1 ) );
+    }
+
+
+    /*
+     * Demand of one or two articles, units 0 for the second article: none.
+     */
+    private static StockTable.Demand demand( int ordinal, int units, int ordinal2, int units2 ) {
+        StockTable.Demand d = new StockTable.Demand().clear();
+        d.add( ordinal, units );
+        if( units2 > 0 ) {
+            d.add( ordinal2, units2 );
+        }
+        return d.merge();
+    }
+
+
+    /*
+     * Promote article as if its stripe was contended repeatedly.
+     */
+    private static void promote( StockTable table, int ordinal ) throws Exception {
+        Method promote = StockTable.class.getDeclaredMethod( "promote", int.class );
+        promote.setAccessible( true );
+        promote.invoke( table, ordinal );
+    }
+
+
+    private static int[] hotOrdinals( StockTable table ) throws Exception {
+        Field hot = StockTable.class.getDeclaredField( "hotOrdinals" );
+        hot.setAccessible( true );
+        return (int[]) hot.get( table );
+    }
+}
@@ -0,0 +1,160 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.OrderBuilder.Outcome;
+
+/**
+ * Tests of the asynchronous order intake pipeline.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class IntakePipelineTest {
+
+    private InventoryManagerImpl inventory;
+    private Customer eric;
+    private Article pencil, pen;
+    private final List<Order> saved = Collections.synchronizedList( new ArrayList<Order>() );
+    private final List<Order> rejected = Collections.synchronizedList( new ArrayList<Order>() );
+
+
+    @BeforeEach
+    public void setUp() {
+        inventory = InventoryManagerImpl.getInstance( new RepositoryImpl<Article>() );
+        eric = new Customer( "Eric Meyer" ).setId( 1 );
+        pencil = inventory.save( new Article( "Pencil", 100 ).setId( "SKU-1" ) );
+        pen = inventory.save( new Article( "Pen", 200 ).setId( "SKU-2" ) );
+        inventory.update( "SKU-1", 10_000 );
+        inventory.update( "SKU-2", 10 );
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        inventory.shutdown();
+    }
+
+
+    @Test
+    public void shutdownDrainsSubmittedOrders() throws Exception {
+        IntakePipeline pipeline = pipeline( 4, 8 );
+        List<CompletableFuture<Outcome>> outcomes = Collections.synchronizedList( new ArrayList<CompletableFuture<Outcome>>() );
+        List<Thread> producers = new ArrayList<Thread>();
+        for( int p = 0; p < 4; p++ ) {
+            producers.add( new Thread( () -> {
+                for( int k = 0; k < 500; k++ ) {
+                    outcomes.add( pipeline.submit( new Order( eric ).addItem( pencil, 2 ) ) );
+                }
+            }));
+        }
+        producers.forEach( Thread::start );
+        for( Thread t : producers ) {
+            t.join();
+        }
+        pipeline.shutdown();		// returns when all stages are drained
+        assertEquals( 2000, outcomes.size() );
+        for( CompletableFuture<Outcome> outcome : outcomes ) {
+            assertTrue( outcome.isDone() );
+            assertEquals( Outcome.FILLED, outcome.get() );
+        }
+        assertEquals( 2000, new HashSet<Order>( saved ).size() );
+        assertEquals( 6000, inventory.getUnitsInStock( "SKU-1" ) );
+        assertThrows( IllegalStateException.class, () -> pipeline.submit( new Order( eric ).addItem( pencil, 1 ) ) );
+    }
+
+
+    @Test
+    public void outcomesOfInvalidAndShortOrders() throws Exception {
+        IntakePipeline pipeline = pipeline( 16, 4 );
+        Order empty = new Order( eric );
+        Order unknown = new Order( eric ).addItem( new Article( "Unknown", 1 ).setId( "SKU-X" ), 1 );
+        Order filled = new Order( eric ).addItem( pen, 8 );
+        Order shortOf = new Order( eric ).addItem( pen, 5 );
+        assertEquals( Outcome.INVALID, outcome( pipeline.submit( empty ) ) );
+        assertEquals( Outcome.INVALID, outcome( pipeline.submit( unknown ) ) );
+        assertEquals( Outcome.FILLED, outcome( pipeline.submit( filled ) ) );
+        assertEquals( Outcome.BACKORDERED, outcome( pipeline.submit( shortOf ) ) );
+        assertEquals( List.of( empty, unknown ), rejected );
+        assertEquals( List.of( filled ), saved );
+        //
+        inventory.update( "SKU-2", 5 );		// backorder is filled and saved
+        assertEquals( List.of( filled, shortOf ), saved );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-2" ) );
+        pipeline.shutdown();
+    }
+
+
+    @Test
+    public void failedSavesCompleteExceptionally() throws Exception {
+        IntakePipeline pipeline = new IntakePipeline( inventory, saved::add,
+                orders -> { throw new IllegalStateException( "store unavailable" ); },
+                rejected::add, 4, 1, 1, 1, 4 );
+        Order order = new Order( eric ).addItem( pencil, 1 );
+        CompletableFuture<Outcome> outcome = pipeline.submit( order );
+        ExecutionException e = assertThrows( ExecutionException.class, () -> outcome.get( 10, TimeUnit.SECONDS ) );
+        assertTrue( e.getCause() instanceof IllegalStateException );
+        assertEquals( List.of( order ), rejected );
+        pipeline.shutdown();
+    }
+
+
+    @Test
+    public void fullQueuesBlockSubmit() throws Exception {
+        CountDownLatch release = new CountDownLatch( 1 );
+        IntakePipeline pipeline = new IntakePipeline( inventory, saved::add, orders -> {
+                    try {
+                        release.await();		// persistence stalls
+                    } catch( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                    saved.addAll( orders );
+                }, rejected::add, 1, 1, 1, 1, 1 );
+        Thread producer = new Thread( () -> {
+            for( int k = 0; k < 20; k++ ) {
+                pipeline.submit( new Order( eric ).addItem( pencil, 1 ) );
+            }
+        });
+        producer.start();
+        producer.join( 500 );
+        assertTrue( producer.isAlive() );		// blocked by backpressure
+        assertTrue( saved.isEmpty() );
+        release.countDown();
+        producer.join( 10_000 );
+        assertFalse( producer.isAlive() );
+        pipeline.shutdown();
+        assertEquals( 20, saved.size() );
+    }
+
+
+    private IntakePipeline pipeline( int capacity, int batchSize ) {
+        return new IntakePipeline( inventory, saved::add, saved::addAll, rejected::add, capacity, 2, 2, 2, batchSize );
+    }
+
+
+    private static Outcome outcome( CompletableFuture<Outcome> outcome ) throws Exception {
+        return outcome.get( 10, TimeUnit.SECONDS );
+    }
+}
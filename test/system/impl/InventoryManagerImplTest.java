@@ -0,0 +1,489 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+import datamodel.Currency;
+import datamodel.Customer;
+import datamodel.Order;
+import datamodel.TAX;
+import system.InventoryManager;
+import system.InventoryManager.FillPolicy;
+import system.InventoryManager.Reservation;
+import system.InventoryManager.SortedBy;
+
+/**
+ * Tests of the InventoryManager implementation.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class InventoryManagerImplTest {
+
+    private InventoryManagerImpl inventory;
+    private Customer eric;
+    private Article[] articles;
+
+
+    @BeforeEach
+    public void setUp() {
+        inventory = InventoryManagerImpl.getInstance( new RepositoryImpl<Article>() );
+        eric = new Customer( "Eric Meyer" ).setId( 1 );
+        articles = new Article[130];	// ordinals of several lock stripes
+        for( int i = 0; i < articles.length; i++ ) {
+            articles[i] = inventory.save( new Article( "Article " + i, 100 + i ).setId( "SKU-" + i ) );
+            inventory.update( articles[i].getId(), 10 );
+        }
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        inventory.shutdown();
+    }
+
+
+    @Test
+    public void fillIsAllOrNone() {
+        assertTrue( inventory.fill( order( 0, 4, 1, 6 ) ) );
+        assertEquals( 6, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 4, inventory.getUnitsInStock( "SKU-1" ) );
+        assertFalse( inventory.fill( order( 0, 2, 1, 5 ) ) );	// SKU-1 short
+        assertEquals( 6, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 4, inventory.getUnitsInStock( "SKU-1" ) );
+        assertTrue( inventory.fill( order( 1, 2, 1, 2 ) ) );	// items of the same article add up
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-1" ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.fill( null ) );
+    }
+
+
+    @Test
+    public void concurrentFillsNeverOversell() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            List<Future<Integer>> filled = new ArrayList<Future<Integer>>();
+            for( int t = 0; t < threads; t++ ) {
+                filled.add( executor.submit( () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int n = 0;
+                    for( int k = 0; k < 2000; k++ ) {
+                        // two articles in random order, same or different stripes
+                        int a = random.nextInt( articles.length );
+                        int b = random.nextBoolean()? ( a + 64 ) % articles.length : random.nextInt( articles.length );
+                        if( a != b && inventory.fill( order( a, 1, b, 1 ) ) )
+                            n++;
+                    }
+                    return n;
+                }));
+            }
+            int orders = 0;
+            for( Future<Integer> f : filled ) {
+                orders += f.get( 1, TimeUnit.MINUTES );		// a deadlock times out
+            }
+            long units = 0;
+            for( Article a : articles ) {
+                int u = inventory.getUnitsInStock( a.getId() );
+                assertTrue( u >= 0 );
+                units += u;
+            }
+            assertEquals( articles.length * 10L - 2L * orders, units );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void reservedUnitsAreNotAvailable() {
+        Reservation r = inventory.reserve( order( 0, 4, 1, 6 ), Duration.ofMinutes( 1 ) ).get();
+        assertTrue( r.isActive() );
+        assertEquals( 10, inventory.getUnitsInStock( "SKU-1" ) );
+        assertEquals( 4, inventory.getUnitsAvailable( "SKU-1" ) );
+        assertFalse( inventory.fill( order( 1, 5, 2, 1 ) ) );
+        assertFalse( inventory.reserve( order( 1, 5, 2, 1 ), Duration.ofMinutes( 1 ) ).isPresent() );
+        //
+        assertTrue( inventory.commit( r ) );
+        assertFalse( r.isActive() );
+        assertEquals( 4, inventory.getUnitsInStock( "SKU-1" ) );
+        assertEquals( 4, inventory.getUnitsAvailable( "SKU-1" ) );
+        assertFalse( inventory.commit( r ) );
+        assertFalse( inventory.release( r ) );
+    }
+
+
+    @Test
+    public void releaseReturnsUnits() {
+        Reservation r = inventory.reserve( order( 0, 4, 1, 6 ), Duration.ofMinutes( 1 ) ).get();
+        assertTrue( inventory.release( r ) );
+        assertEquals( 10, inventory.getUnitsAvailable( "SKU-0" ) );
+        assertEquals( 10, inventory.getUnitsAvailable( "SKU-1" ) );
+        assertFalse( inventory.commit( r ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.reserve( order( 0, 1, 1, 1 ), Duration.ofMillis( -1 ) ) );
+    }
+
+
+    @Test
+    public void expiredReservationsAreReleased() throws Exception {
+        Reservation r = inventory.reserve( order( 0, 4, 1, 6 ), Duration.ofMillis( 1 ) ).get();
+        for( int i = 0; i < 100 && inventory.getUnitsAvailable( "SKU-1" ) < 10; i++ ) {	// timer runs every 100ms
+            Thread.sleep( 50 );
+        }
+        assertFalse( r.isActive() );
+        assertEquals( 10, inventory.getUnitsAvailable( "SKU-0" ) );
+        assertEquals( 10, inventory.getUnitsAvailable( "SKU-1" ) );
+        assertFalse( inventory.commit( r ) );
+        assertEquals( 10, inventory.getUnitsInStock( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void updateBelowReservedUnitsFailsCommit() {
+        Reservation r = inventory.reserve( order( 0, 4, 1, 6 ), Duration.ofMinutes( 1 ) ).get();
+        inventory.update( "SKU-1", 5 );
+        assertFalse( inventory.commit( r ) );
+        assertEquals( 10, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 10, inventory.getUnitsAvailable( "SKU-0" ) );
+        assertEquals( 5, inventory.getUnitsAvailable( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void fillAllUnderPolicies() {
+        List<Order> backlog = List.of( order( 0, 6 ), order( 0, 3 ), order( 0, 3 ), order( 0, 3 ) );
+        assertEquals( List.of( true, true, false, false ), outcomes( backlog, FillPolicy.FIFO ) );
+        assertEquals( 1, inventory.getUnitsInStock( "SKU-0" ) );
+        //
+        inventory.update( "SKU-0", 10 );
+        assertEquals( List.of( false, true, true, true ), outcomes( backlog, FillPolicy.MAX_ORDERS ) );
+        assertEquals( 1, inventory.getUnitsInStock( "SKU-0" ) );
+        //
+        inventory.update( "SKU-0", 10 );
+        inventory.update( "SKU-129", 10 );	// highest unit price
+        backlog = List.of( order( 0, 6 ), order( 129, 5 ).addItem( articles[0], 5 ), order( 0, 4 ) );
+        assertEquals( List.of( false, true, true ), outcomes( backlog, FillPolicy.MAX_VALUE ) );
+        assertEquals( 1, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 5, inventory.getUnitsInStock( "SKU-129" ) );
+    }
+
+
+    @Test
+    public void fillAllSkipsUnknownArticles() {
+        Order unknown = new Order( eric ).addItem( new Article( "Unknown", 1 ).setId( "SKU-X" ), 1 );
+        Order known = order( 1, 10 );
+        Map<Order,Boolean> filled = inventory.fillAll( List.of( unknown, known ), FillPolicy.FIFO );
+        assertEquals( List.of( unknown, known ), new ArrayList<Order>( filled.keySet() ) );
+        assertEquals( List.of( false, true ), new ArrayList<Boolean>( filled.values() ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-1" ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.fillAll( List.of( known ), null ) );
+    }
+
+
+    @Test
+    public void limitedPrintSelectsFirstArticlesBySortOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for( Article a : articles ) {
+            inventory.update( a.getId(), random.nextInt( 20 ) );	// ties in units
+        }
+        for( SortedBy sortedBy : SortedBy.values() ) {
+            for( boolean descending : new boolean[] { false, true } ) {
+                List<String> all = ids( inventory.printInventory( sortedBy, descending, null ) );
+                assertEquals( articles.length, all.size() );
+                assertEquals( all.subList( 0, 5 ), ids( inventory.printInventory( sortedBy, descending, 5 ) ) );
+                assertEquals( all, ids( inventory.printInventory( sortedBy, descending, Integer.MAX_VALUE ) ) );
+                assertEquals( List.of(), ids( inventory.printInventory( sortedBy, descending, 0 ) ) );
+            }
+        }
+        assertThrows( IllegalArgumentException.class, () -> inventory.printInventory( SortedBy.BY_UNITS, false, -1 ) );
+    }
+
+
+    @Test
+    public void equalKeysKeepRepositoryOrder() {
+        assertEquals( List.of( "SKU-0", "SKU-1", "SKU-2" ), ids( inventory.printInventory( SortedBy.BY_UNITS, false, 3 ) ) );
+        assertEquals( List.of( "SKU-0", "SKU-1", "SKU-2" ), ids( inventory.printInventory( SortedBy.BY_UNITS, true, 3 ) ) );
+        assertEquals( List.of( "SKU-129", "SKU-128" ), ids( inventory.printInventory( SortedBy.BY_PRICE, true, 2 ) ) );
+        assertEquals( List.of( "SKU-0", "SKU-1" ), ids( inventory.printInventory( null, false, 2 ) ) );
+    }
+
+
+    @Test
+    public void streamedReportEqualsPrintedTable() throws Exception {
+        inventory.update( "SKU-7", 0 );
+        for( SortedBy sortedBy : new SortedBy[] { null, SortedBy.BY_VALUE } ) {
+            String table = inventory.printInventory( sortedBy, true, 50 ).toString();
+            StringWriter out = new StringWriter();
+            inventory.printInventory( out, sortedBy, true, 50 );
+            assertEquals( table, out.toString() );
+            //
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WritableByteChannel channel = Channels.newChannel( bytes );
+            inventory.printInventory( channel, sortedBy, true, 50 );
+            assertTrue( channel.isOpen() );
+            assertEquals( table, bytes.toString( StandardCharsets.UTF_8 ) );
+        }
+        assertThrows( IllegalArgumentException.class, () -> inventory.printInventory( (Writer) null, null, false, null ) );
+    }
+
+
+    @Test
+    public void streamedReportPropagatesWriteErrors() {
+        StringBuilder written = new StringBuilder();
+        Writer failing = new Writer() {
+            @Override
+            public void write( char[] buf, int off, int len ) throws IOException {
+                if( written.length() + len > 1000 )
+                    throw new IOException( "disk full" );
+                written.append( buf, off, len );
+            }
+            @Override
+            public void flush() { }
+            @Override
+            public void close() { }
+        };
+        assertThrows( IOException.class, () -> inventory.printInventory( failing, null, false, null ) );
+        assertTrue( written.length() > 0 );		// rows were written before the error
+    }
+
+
+    @Test
+    public void inventoryValueFollowsStockAndPriceChanges() {
+        assertEquals( value(), inventory.getInventoryValue( Currency.EUR ) );
+        assertTrue( inventory.fill( order( 0, 4, 1, 6 ) ) );
+        inventory.update( "SKU-2", 0 );
+        inventory.updateAll( Map.of( "SKU-3", 5, "SKU-4", -2 ), true );
+        assertEquals( value(), inventory.getInventoryValue( Currency.EUR ) );
+        //
+        inventory.save( articles[5].setUnitPrice( 1000 ) );
+        inventory.save( articles[6].setCurrency( Currency.USD ) );
+        inventory.save( articles[7].setTax( TAX.GER_VAT_REDUCED ) );
+        long eur = value() - 10 * articles[6].getUnitPrice();
+        assertEquals( eur, inventory.getInventoryValue( Currency.EUR ) );
+        assertEquals( 10 * articles[6].getUnitPrice(), inventory.getInventoryValue( Currency.USD ) );
+        assertEquals( 10 * articles[7].getUnitPrice(), inventory.getInventoryValue( Currency.EUR, TAX.GER_VAT_REDUCED ) );
+        assertEquals( eur - 10 * articles[7].getUnitPrice(), inventory.getInventoryValue( Currency.EUR, TAX.GER_VAT ) );
+        assertEquals( 0, inventory.getInventoryValue( Currency.GBP ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.getInventoryValue( null ) );
+    }
+
+
+    @Test
+    public void fillsAreRoutedToWarehouses() {
+        inventory.addWarehouse( "north" );
+        inventory.addWarehouse( "south" );
+        assertEquals( List.of( InventoryManager.DEFAULT_WAREHOUSE, "north", "south" ), inventory.getWarehouses() );
+        inventory.update( "SKU-0", "north", 20 );
+        inventory.update( "SKU-1", "north", 20 );
+        inventory.update( "SKU-0", "south", 5 );
+        assertEquals( 35, inventory.getUnitsInStock( "SKU-0" ) );
+        //
+        // default warehouse (lowest cost) cannot fill all items, north can
+        Map<String,Map<Article,Integer>> shipped = inventory.fillRouted( order( 0, 12, 1, 2 ) ).get();
+        assertEquals( Map.of( "north", Map.of( articles[0], 12, articles[1], 2 ) ), shipped );
+        // no single warehouse can fill, items are split in order of costs
+        shipped = inventory.fillRouted( order( 0, 20, 1, 1 ) ).get();
+        assertEquals( Map.of( InventoryManager.DEFAULT_WAREHOUSE, Map.of( articles[0], 10, articles[1], 1 ),
+            "north", Map.of( articles[0], 8 ), "south", Map.of( articles[0], 2 ) ), shipped );
+        assertEquals( 3, inventory.getUnitsInStock( "SKU-0" ) );
+        assertFalse( inventory.fillRouted( order( 0, 4, 1, 1 ) ).isPresent() );
+        assertEquals( 3, inventory.getUnitsInStock( "SKU-0", "south" ) );
+        //
+        inventory.setRoutingCost( ( warehouse, article, units ) -> warehouse.equals( "south" )? 0 : 1 );
+        assertEquals( Map.of( "south", Map.of( articles[0], 3 ) ), inventory.fillRouted( order( 0, 3 ) ).get() );
+        assertThrows( IllegalArgumentException.class, () -> inventory.addWarehouse( "north" ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.update( "SKU-0", "west", 1 ) );
+    }
+
+
+    @Test
+    public void warehousesFillReserveAndSumConsistently() {
+        inventory.addWarehouse( "north" );
+        inventory.update( "SKU-0", "north", 10 );
+        assertTrue( inventory.isFillable( order( 0, 15 ) ) );
+        Reservation r = inventory.reserve( order( 0, 15 ), Duration.ofMinutes( 1 ) ).get();
+        assertEquals( 5, inventory.getUnitsAvailable( "SKU-0" ) );
+        assertFalse( inventory.isFillable( order( 0, 6 ) ) );
+        assertTrue( inventory.commit( r ) );
+        assertEquals( 5, inventory.getUnitsInStock( "SKU-0" ) );
+        //
+        Map<Order,Boolean> filled = inventory.fillAll( List.of( order( 0, 4 ), order( 0, 2 ), order( 0, 1 ) ), FillPolicy.FIFO );
+        assertEquals( List.of( true, false, true ), new ArrayList<Boolean>( filled.values() ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-0" ) );
+        //
+        inventory.update( "SKU-1", Integer.MAX_VALUE );
+        inventory.update( "SKU-1", "north", Integer.MAX_VALUE );
+        assertEquals( Integer.MAX_VALUE, inventory.getUnitsInStock( "SKU-1" ) );
+        assertEquals( Integer.MAX_VALUE, inventory.getUnitsAvailable( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void backordersFillOnReplenishment() {
+        List<Order> filled = new ArrayList<Order>();
+        Order now = order( 0, 4 );
+        assertTrue( inventory.backorder( now, filled::add ) );
+        assertEquals( List.of( now ), filled );
+        //
+        Order first = order( 0, 5 ), second = order( 0, 3 ), third = order( 0, 2 );
+        inventory.update( "SKU-0", 0 );
+        assertFalse( inventory.backorder( first, filled::add ) );
+        assertFalse( inventory.backorder( second, filled::add ) );
+        assertFalse( inventory.backorder( third, filled::add ) );
+        assertEquals( 3, inventory.countBackorders() );
+        inventory.update( "SKU-1", 20 );		// other article, nothing to fill
+        assertEquals( List.of( now ), filled );
+        //
+        inventory.update( "SKU-0", 7 );		// FIFO: first fits, second is skipped, third fits
+        assertEquals( List.of( now, first, third ), filled );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 1, inventory.countBackorders() );
+        inventory.update( "SKU-0", 3 );
+        assertEquals( List.of( now, first, third, second ), filled );
+        assertEquals( 0, inventory.countBackorders() );
+    }
+
+
+    @Test
+    public void backordersWaitForAllArticles() {
+        List<Order> filled = new ArrayList<Order>();
+        inventory.update( "SKU-0", 0 );
+        inventory.update( "SKU-1", 0 );
+        inventory.setBackorderPolicy( FillPolicy.MAX_ORDERS );
+        Order large = order( 0, 5, 1, 5 ), small = order( 0, 2, 1, 2 );
+        inventory.backorder( large, filled::add );
+        inventory.backorder( small, filled::add );
+        inventory.update( "SKU-0", 5 );
+        assertEquals( List.of(), filled );		// still short of SKU-1
+        inventory.update( "SKU-1", 5 );
+        assertEquals( List.of( small ), filled );		// fewest units first
+        assertEquals( 1, inventory.countBackorders() );
+        assertThrows( IllegalArgumentException.class, () -> inventory.backorder( order( 0, 1 ), null ) );
+    }
+
+
+    @Test
+    public void stockFeedIsAppliedAtomically() {
+        assertEquals( 2, inventory.updateAll( Map.of( "SKU-0", 5, "SKU-1", 10, "SKU-2", 0 ), false ) );
+        assertEquals( 5, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-2" ) );
+        assertEquals( 2, inventory.updateAll( Map.of( "SKU-0", -5, "SKU-1", 3 ), true ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-0" ) );
+        assertEquals( 13, inventory.getUnitsInStock( "SKU-1" ) );
+        //
+        assertThrows( IllegalArgumentException.class, () -> inventory.updateAll( Map.of( "SKU-1", 1, "SKU-2", -1 ), true ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.updateAll( Map.of( "SKU-1", 1, "SKU-X", 1 ), true ) );
+        assertThrows( IllegalArgumentException.class, () -> inventory.updateAll( Map.of( "SKU-1", 1, "SKU-3", -1 ), false ) );
+        assertEquals( 13, inventory.getUnitsInStock( "SKU-1" ) );		// rejected feeds change nothing
+        //
+        inventory.addWarehouse( "north" );
+        inventory.updateAll( "north", Map.of( "SKU-1", 7 ), false );
+        assertEquals( 7, inventory.getUnitsInStock( "SKU-1", "north" ) );
+        assertEquals( 20, inventory.getUnitsInStock( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void stockFeedReplenishesBackorders() {
+        List<Order> filled = new ArrayList<Order>();
+        inventory.updateAll( Map.of( "SKU-0", 0, "SKU-1", 0 ), false );
+        Order waiting = order( 0, 2, 1, 2 );
+        inventory.backorder( waiting, filled::add );
+        inventory.updateAll( Map.of( "SKU-0", 2, "SKU-1", 2 ), true );
+        assertEquals( List.of( waiting ), filled );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-0" ) );
+    }
+
+
+    @Test
+    public void frozenCatalogAnswersLookups() {
+        inventory.freeze();
+        for( Article a : articles ) {
+            assertSame( a, inventory.findById( a.getId() ).get() );
+        }
+        assertTrue( inventory.findById( "SKU-130" ).isEmpty() );
+        assertTrue( inventory.findById( null ).isEmpty() );
+        List<Article> found = new ArrayList<Article>();
+        inventory.findAllById( List.of( "SKU-7", "SKU-X", "SKU-3" ) ).forEach( found::add );
+        assertEquals( List.of( articles[7], articles[3] ), found );
+        assertTrue( inventory.fill( order( 7, 4 ) ) );
+        assertEquals( 6, inventory.getUnitsInStock( "SKU-7" ) );
+        //
+        Article added = inventory.save( new Article( "Added", 500 ).setId( "SKU-130" ) );	// drops the catalog
+        assertSame( added, inventory.findById( "SKU-130" ).get() );
+        inventory.update( "SKU-130", 3 );
+        inventory.freeze();
+        assertSame( added, inventory.findById( "SKU-130" ).get() );
+        assertSame( articles[129], inventory.findById( "SKU-129" ).get() );
+        assertTrue( inventory.fill( order( 7, 1 ).addItem( added, 3 ) ) );
+        assertEquals( 0, inventory.getUnitsInStock( "SKU-130" ) );
+    }
+
+
+    /*
+     * Value of the inventory recomputed from all articles.
+     */
+    private long value() {
+        long value = 0;
+        for( Article a : articles ) {
+            value += a.getUnitPrice() * inventory.getUnitsInStock( a.getId() );
+        }
+        return value;
+    }
+
+
+    /*
+     * Article ids of the rows of a printed inventory table.
+     */
+    private static List<String> ids( CharSequence table ) {
+        List<String> ids = new ArrayList<String>();
+        for( String line : table.toString().split( "\n" ) ) {
+            if( line.startsWith( "|SKU-" ) ) {
+                ids.add( line.substring( 1, line.indexOf( '|', 1 ) ).trim() );
+            }
+        }
+        return ids;
+    }
+
+
+    private List<Boolean> outcomes( List<Order> orders, FillPolicy policy ) {
+        return new ArrayList<Boolean>( inventory.fillAll( orders, policy ).values() );
+    }
+
+
+    private Order order( int a, int units ) {
+        return new Order( eric ).addItem( articles[a], units );
+    }
+
+
+    private Order order( int a, int unitsA, int b, int unitsB ) {
+        return new Order( eric ).addItem( articles[a], unitsA ).addItem( articles[b], unitsB );
+    }
+}
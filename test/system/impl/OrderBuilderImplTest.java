@@ -0,0 +1,175 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.OrderBuilder;
+import system.OrderBuilder.Outcome;
+import system.RTE;
+import system.RTE.Runtime;
+
+/**
+ * Tests of OrderBuilder instances owned by Runtime instances.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class OrderBuilderImplTest {
+
+    private Runtime first, second;
+
+
+    @BeforeEach
+    public void setUp() {
+        first = launch();
+        second = launch();
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        first.shutdown( null );
+        second.shutdown( null );
+    }
+
+
+    @Test
+    public void ordersAreSavedToTheRepositoriesOfTheirRuntime() {
+        OrderBuilder builder = first.getOrderBuilder();
+        assertNotSame( builder, second.getOrderBuilder() );
+        Order order = order( first, "O-1", 4 );
+        assertTrue( builder.accept( order ) );
+        assertSame( order, first.getOrderRepository().findById( "O-1" ).get() );
+        assertTrue( second.getOrderRepository().findById( "O-1" ).isEmpty() );
+        assertEquals( 6, first.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+        assertEquals( 10, second.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+        //
+        assertEquals( 1, second.getOrderBuilder().acceptAll( List.of( order( second, "O-1", 10 ) ) ) );
+        assertEquals( 0, second.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+        assertEquals( 1, first.getOrderRepository().count() );
+        assertEquals( 1, second.getOrderRepository().count() );
+    }
+
+
+    @Test
+    public void runtimeReturnsOneBuilder() throws Exception {
+        OrderBuilder builder = first.getOrderBuilder();
+        assertSame( builder, first.getOrderBuilder() );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<OrderBuilder>> builders = new ArrayList<Future<OrderBuilder>>();
+            for( int k = 0; k < 16; k++ ) {
+                builders.add( executor.submit( () -> first.getOrderBuilder() ) );
+            }
+            for( Future<OrderBuilder> f : builders ) {
+                assertSame( builder, f.get( 10, TimeUnit.SECONDS ) );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void filledOrdersAreSavedWhenBatchFails() {
+        OrderBuilder builder = first.getOrderBuilder();
+        Order a = order( first, "O-1", 2 ), b = order( first, "O-2", 3 );
+        Order unknown = order( first, "O-3", 1 ).addItem( new Article( "Unknown", 1 ).setId( "SKU-X" ), 1 );
+        assertThrows( IllegalArgumentException.class, () -> builder.acceptAll( List.of( a, b, unknown ) ) );
+        assertSame( a, first.getOrderRepository().findById( "O-1" ).get() );
+        assertSame( b, first.getOrderRepository().findById( "O-2" ).get() );
+        assertTrue( first.getOrderRepository().findById( "O-3" ).isEmpty() );
+        assertEquals( 5, first.getInventoryManager().getUnitsInStock( "SKU-1" ) );	// units of saved orders only
+        assertTrue( builder.accept( order( first, "O-3", 1 ) ) );		// claim was released
+        assertEquals( 3, first.getOrderRepository().count() );
+    }
+
+    @Test
+    public void duplicateOrdersAreNotFilledTwice() {
+        OrderBuilder builder = first.getOrderBuilder();
+        assertTrue( builder.accept( order( first, "O-1", 2 ) ) );
+        assertFalse( builder.accept( order( first, "O-1", 2 ) ) );		// redelivered
+        assertEquals( 1, builder.acceptAll( List.of( order( first, "O-1", 2 ), order( first, "O-2", 3 ), order( first, "O-2", 3 ) ) ) );
+        assertEquals( 5, first.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+        assertEquals( 2, first.getOrderRepository().count() );
+    }
+
+
+    @Test
+    public void pendingBackordersAreDuplicates() {
+        OrderBuilder builder = first.getOrderBuilder();
+        Order backorder = order( first, "O-1", 15 );
+        assertFalse( builder.accept( backorder ) );		// parked
+        assertFalse( builder.accept( order( first, "O-1", 15 ) ) );		// not parked again
+        first.getInventoryManager().update( "SKU-1", 20 );
+        assertSame( backorder, first.getOrderRepository().findById( "O-1" ).get() );
+        assertEquals( 5, first.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+        assertFalse( builder.accept( order( first, "O-1", 1 ) ) );		// saved before
+        assertEquals( 5, first.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+        assertEquals( 1, first.getOrderRepository().count() );
+    }
+
+
+    @Test
+    public void submittedDuplicatesCompleteAsDuplicate() throws Exception {
+        OrderBuilder builder = first.getOrderBuilder();
+        assertEquals( Outcome.FILLED, builder.submit( order( first, "O-1", 2 ) ).get( 10, TimeUnit.SECONDS ) );
+        assertEquals( Outcome.DUPLICATE, builder.submit( order( first, "O-1", 2 ) ).get( 10, TimeUnit.SECONDS ) );
+        assertFalse( builder.accept( order( first, "O-1", 2 ) ) );
+        assertEquals( 8, first.getInventoryManager().getUnitsInStock( "SKU-1" ) );
+    }
+
+
+    @Test
+    public void ordersWithoutIdAreAssignedNewIds() {
+        OrderBuilder builder = first.getOrderBuilder();
+        Order a = order( first, null, 1 ), b = order( first, null, 1 );
+        assertTrue( builder.accept( a ) );
+        assertTrue( builder.accept( b ) );
+        assertNotNull( a.getId() );
+        assertNotEquals( a.getId(), b.getId() );
+        assertEquals( 2, first.getOrderRepository().count() );
+    }
+
+
+    /*
+     * Launch Runtime with one customer and one article with 10 units in stock.
+     */
+    private static Runtime launch() {
+        return RTE.getInstance().create( config -> { } ).launch( ( config, rt ) -> {
+            rt.getCustomerRepository().save( new Customer( "Eric Meyer" ).setId( 892474 ) );
+            rt.getInventoryManager().save( new Article( "Pencil", 100 ).setId( "SKU-1" ) );
+            rt.getInventoryManager().update( "SKU-1", 10 );
+        });
+    }
+
+
+    private static Order order( Runtime rt, String id, int units ) {
+        Customer eric = rt.getCustomerRepository().findById( 892474 ).get();
+        Article pencil = rt.getInventoryManager().findById( "SKU-1" ).get();
+        return new Order( eric ).setId( id ).addItem( pencil, units );
+    }
+}
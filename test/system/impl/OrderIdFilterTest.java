@@ -0,0 +1,105 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the rotating Bloom filter of recently accepted order ids.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class OrderIdFilterTest {
+
+    @Test
+    public void addedIdsAreAlwaysFound() {
+        OrderIdFilter filter = new OrderIdFilter( 10_000, 0.01, 60_000 );
+        for( int i = 0; i < 10_000; i++ ) {
+            filter.add( "O-" + i );
+        }
+        for( int i = 0; i < 10_000; i++ ) {
+            assertTrue( filter.mightContain( "O-" + i ) );
+        }
+    }
+
+
+    @Test
+    public void falsePositivesAreRare() {
+        OrderIdFilter filter = new OrderIdFilter( 10_000, 0.01, 60_000 );
+        for( int i = 0; i < 10_000; i++ ) {
+            filter.add( "O-" + i );
+        }
+        int hits = 0;
+        for( int i = 10_000; i < 110_000; i++ ) {
+            hits += filter.mightContain( "O-" + i )? 1 : 0;
+        }
+        assertTrue( hits < 2000, "false positives: " + hits );		// expected about 1000
+    }
+
+
+    @Test
+    public void idsAreForgottenAfterTwoWindows() throws Exception {
+        OrderIdFilter filter = new OrderIdFilter( 1000, 0.01, 200 );
+        filter.add( "A" );
+        Thread.sleep( 250 );
+        filter.add( "B" );		// rotates: A in previous generation
+        assertTrue( filter.mightContain( "A" ) );
+        assertTrue( filter.mightContain( "B" ) );
+        Thread.sleep( 250 );
+        filter.add( "C" );		// rotates: A dropped
+        assertFalse( filter.mightContain( "A" ) );
+        assertTrue( filter.mightContain( "B" ) );
+        assertTrue( filter.mightContain( "C" ) );
+    }
+
+
+    @Test
+    public void longIdleTimeForgetsBothWindows() throws Exception {
+        OrderIdFilter filter = new OrderIdFilter( 1000, 0.01, 100 );
+        filter.add( "A" );
+        Thread.sleep( 250 );
+        filter.add( "B" );
+        assertFalse( filter.mightContain( "A" ) );
+        assertTrue( filter.mightContain( "B" ) );
+    }
+
+
+    @Test
+    public void concurrentAddsAreNotLost() throws Exception {
+        OrderIdFilter filter = new OrderIdFilter( 80_000, 0.01, 60_000 );
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int t = 0; t < 8; t++ ) {
+            int offset = t * 10_000;
+            threads.add( new Thread( () -> {
+                for( int i = 0; i < 10_000; i++ ) {
+                    filter.add( "O-" + ( offset + i ) );
+                }
+            }));
+        }
+        threads.forEach( Thread::start );
+        for( Thread t : threads ) {
+            t.join();
+        }
+        for( int i = 0; i < 80_000; i++ ) {
+            assertTrue( filter.mightContain( "O-" + i ) );
+        }
+    }
+
+
+    @Test
+    public void illegalArgumentsAreRejected() {
+        assertThrows( IllegalArgumentException.class, () -> new OrderIdFilter( 0, 0.01, 1000 ) );
+        assertThrows( IllegalArgumentException.class, () -> new OrderIdFilter( 100, 0, 1000 ) );
+        assertThrows( IllegalArgumentException.class, () -> new OrderIdFilter( 100, 1, 1000 ) );
+        assertThrows( IllegalArgumentException.class, () -> new OrderIdFilter( 100, 0.01, 0 ) );
+    }
+}
@@ -0,0 +1,126 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of Snowflake-type order ids.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class OrderIdGeneratorImplTest {
+
+    @Test
+    public void idsIncreaseAndEncodeNodeAndTime() {
+        OrderIdGeneratorImpl generator = new OrderIdGeneratorImpl( 517 );
+        assertEquals( 517, generator.getNodeId() );
+        long start = System.currentTimeMillis() - OrderIdGeneratorImpl.EPOCH;
+        long prev = 0;
+        for( int i = 0; i < 1_000_000; i++ ) {		// more than 4096 ids per millisecond
+            long id = generator.next();
+            assertTrue( id > prev );
+            assertEquals( 517, ( id >>> 12 ) & OrderIdGeneratorImpl.MAX_NODE_ID );
+            prev = id;
+        }
+        long millis = prev >>> 22;
+        assertTrue( millis >= start && millis < System.currentTimeMillis() - OrderIdGeneratorImpl.EPOCH + 1000 );
+    }
+
+
+    @Test
+    public void idsAreNumericStrings() {
+        OrderIdGeneratorImpl generator = new OrderIdGeneratorImpl( 0 );
+        String prev = generator.nextId();
+        for( int i = 0; i < 1000; i++ ) {
+            String id = generator.nextId();
+            assertTrue( id.matches( "[0-9]{16,19}" ), id );
+            assertTrue( Long.parseLong( id ) > Long.parseLong( prev ) );
+            prev = id;
+        }
+    }
+
+
+    @Test
+    public void concurrentIdsAreUnique() throws Exception {
+        OrderIdGeneratorImpl generator = new OrderIdGeneratorImpl( 1 );
+        int threads = 8, n = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            Set<Long> ids = new HashSet<Long>();
+            Future<?>[] futures = new Future<?>[threads];
+            long[][] drawn = new long[threads][n];
+            for( int t = 0; t < threads; t++ ) {
+                long[] own = drawn[t];
+                futures[t] = executor.submit( () -> {
+                    for( int i = 0; i < n; i++ ) {
+                        own[i] = generator.next();
+                    }
+                });
+            }
+            for( int t = 0; t < threads; t++ ) {
+                futures[t].get( 1, TimeUnit.MINUTES );
+                for( int i = 0; i < n; i++ ) {
+                    assertTrue( i == 0 || drawn[t][i] > drawn[t][i - 1] );		// increasing per thread
+                    ids.add( drawn[t][i] );
+                }
+            }
+            assertEquals( threads * n, ids.size() );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void nodesDrawDisjointIds() {
+        OrderIdGeneratorImpl a = new OrderIdGeneratorImpl( 2 ), b = new OrderIdGeneratorImpl( 3 );
+        Set<Long> ids = new HashSet<Long>();
+        for( int i = 0; i < 100_000; i++ ) {
+            ids.add( a.next() );
+            ids.add( b.next() );
+        }
+        assertEquals( 200_000, ids.size() );
+    }
+
+
+    @Test
+    public void idsIncreaseWhenClockIsBehind() throws Exception {
+        OrderIdGeneratorImpl generator = new OrderIdGeneratorImpl( 5 );
+        long ahead = ( System.currentTimeMillis() - OrderIdGeneratorImpl.EPOCH + 60_000 ) << 22 | 5L << 12;
+        last( generator ).set( ahead );		// as if the clock was set back by a minute
+        long id = generator.next();
+        assertEquals( ahead + 1, id );
+        assertEquals( 5, ( id >>> 12 ) & OrderIdGeneratorImpl.MAX_NODE_ID );
+    }
+
+
+    @Test
+    public void illegalNodeIdsAreRejected() {
+        assertThrows( IllegalArgumentException.class, () -> new OrderIdGeneratorImpl( -1 ) );
+        assertThrows( IllegalArgumentException.class, () -> new OrderIdGeneratorImpl( OrderIdGeneratorImpl.MAX_NODE_ID + 1 ) );
+        assertEquals( 1023, new OrderIdGeneratorImpl( 1023 ).getNodeId() );
+    }
+
+
+    private static AtomicLong last( OrderIdGeneratorImpl generator ) throws Exception {
+        Field last = OrderIdGeneratorImpl.class.getDeclaredField( "last" );
+        last.setAccessible( true );
+        return (AtomicLong) last.get( generator );
+    }
+}
@@ -0,0 +1,151 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.OrderBuilder;
+
+/**
+ * Tests of the HTTP order endpoint with an OrderBuilder whose outcome is
+ * selected by the first letter of the order id.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class OrderServerTest {
+
+    private InventoryManagerImpl inventory;
+    private OrderServer server;
+    private HttpClient client;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        RepositoryImpl<Customer> customers = new RepositoryImpl<Customer>();
+        customers.save( new Customer( "Eric Meyer" ).setId( 892474 ) );
+        inventory = InventoryManagerImpl.getInstance( new RepositoryImpl<Article>() );
+        inventory.save( new Article( "Pencil", 100 ).setId( "SKU-1" ) );
+        inventory.save( new Article( "Pen", 200 ).setId( "SKU-2" ) );
+        inventory.update( "SKU-1", 10 );
+        server = new OrderServer( 0, 16, 4, customers, inventory, new Outcomes() );
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+        inventory.shutdown();
+    }
+
+
+    @Test
+    public void outcomesMapToStatus() throws Exception {
+        assertEquals( 201, post( order( "F-1" ) ).statusCode() );
+        assertEquals( 202, post( order( "B-1" ) ).statusCode() );
+        assertEquals( 409, post( order( "D-1" ) ).statusCode() );
+        assertEquals( 422, post( order( "I-1" ) ).statusCode() );
+        assertEquals( 503, post( order( "X-1" ) ).statusCode() );	// intake failed
+        assertEquals( "{\"id\":\"F-2\",\"status\":\"filled\"}", post( order( "F-2" ) ).body() );
+    }
+
+
+    @Test
+    public void malformedOrdersAreRejected() throws Exception {
+        assertEquals( 400, post( "{\"id\": \"F-1\", \"customer\": 1, \"items\": [{\"article\": \"SKU-1\", \"units\": 1}]}" ).statusCode() );
+        assertEquals( 400, post( "{\"id\": \"F-1\", \"customer\": 892474, \"items\": [{\"article\": \"SKU-9\", \"units\": 1}]}" ).statusCode() );
+        assertEquals( 400, post( "{\"id\": \"F-1\", \"customer\": 892474, \"items\": [{\"article\": \"SKU-1\", \"units\": 0}]}" ).statusCode() );
+        assertEquals( 400, post( "{\"id\": \"F-1\", \"customer\": 892474, \"items\": []}" ).statusCode() );
+        assertEquals( 400, post( "{\"id\": \"F-1\", " ).statusCode() );
+        assertEquals( 400, post( "[]" ).statusCode() );
+        HttpResponse<String> get = client.send( HttpRequest.newBuilder( uri( "/orders" ) ).GET().build(),
+                HttpResponse.BodyHandlers.ofString() );
+        assertEquals( 405, get.statusCode() );
+    }
+
+
+    @Test
+    public void stockQueries() throws Exception {
+        HttpResponse<String> one = get( "/inventory/SKU-1" );
+        assertEquals( 200, one.statusCode() );
+        assertEquals( "{\"id\":\"SKU-1\",\"unitsInStock\":10,\"unitsAvailable\":10}", one.body() );
+        assertEquals( 404, get( "/inventory/SKU-9" ).statusCode() );
+        HttpResponse<String> all = get( "/inventory" );
+        assertEquals( 200, all.statusCode() );
+        assertTrue( all.body().startsWith( "[{\"id\":\"SKU-1\"" ) );
+        assertTrue( all.body().endsWith( "{\"id\":\"SKU-2\",\"unitsInStock\":0,\"unitsAvailable\":0}]" ) );
+    }
+
+
+    private HttpResponse<String> post( String body ) throws Exception {
+        return client.send( HttpRequest.newBuilder( uri( "/orders" ) )
+                .POST( HttpRequest.BodyPublishers.ofString( body ) ).build(), HttpResponse.BodyHandlers.ofString() );
+    }
+
+
+    private HttpResponse<String> get( String path ) throws Exception {
+        return client.send( HttpRequest.newBuilder( uri( path ) ).GET().build(), HttpResponse.BodyHandlers.ofString() );
+    }
+
+
+    private URI uri( String path ) {
+        return URI.create( "http://localhost:" + server.getPort() + path );
+    }
+
+
+    private static String order( String id ) {
+        return "{\"id\": \"" + id + "\", \"customer\": 892474, \"items\": [{\"article\": \"SKU-1\", \"units\": 2}]}";
+    }
+
+
+    /*
+     * Completes submitted orders asynchronously with the outcome named by the first letter of their id.
+     */
+    private static class Outcomes implements OrderBuilder {
+
+        @Override
+        public CompletableFuture<Outcome> submit( Order order ) {
+            return CompletableFuture.supplyAsync( () -> {
+                switch( order.getId().charAt( 0 ) ) {
+                case 'F': return Outcome.FILLED;
+                case 'B': return Outcome.BACKORDERED;
+                case 'D': return Outcome.DUPLICATE;
+                case 'I': return Outcome.INVALID;
+                default: throw new IllegalStateException( "intake failed" );
+                }
+            });
+        }
+
+        @Override
+        public boolean accept( Order order ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long acceptAll( Iterable<Order> orders ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OrderBuilder build() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+import system.OrderStatistics.CustomerStatistics;
+
+/**
+ * Tests of order statistics recorded from the save path of the order store.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class OrderStatisticsImplTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    File archiveDir;
+
+    private RepositoryImpl<Customer> customers;
+    private RepositoryImpl<Article> articles;
+    private OrderStoreImpl store;
+    private OrderStatisticsImpl statistics;
+    private Customer eric, anne, tim;
+    private Article pencil;
+
+
+    @BeforeEach
+    public void setUp() {
+        customers = new RepositoryImpl<Customer>();
+        articles = new RepositoryImpl<Article>();
+        eric = customers.save( new Customer( "Eric Meyer" ).setId( 1 ) );
+        anne = customers.save( new Customer( "Anne Bayer" ).setId( 2 ) );
+        tim = customers.save( new Customer( "Tim Schulz" ).setId( 3 ) );
+        pencil = articles.save( new Article( "Pencil", 100 ).setId( "SKU-1" ) );
+        store = new OrderStoreImpl( customers, articles, archiveDir.getPath(), 0 );
+        statistics = new OrderStatisticsImpl( new CalculatorImpl() );
+        store.onAdded( statistics::record );
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        store.shutdown();
+    }
+
+
+    @Test
+    public void aggregatesPerCustomer() {
+        store.save( order( "O-1", eric, 2 ) );
+        store.save( order( "O-2", eric, 3 ) );
+        store.save( order( "O-3", anne, 1 ) );
+        CustomerStatistics s = statistics.getCustomerStatistics( eric.getId() ).get();
+        assertEquals( 2, s.getOrderCount() );
+        assertEquals( 500, s.getTotalValue() );
+        assertEquals( 2, statistics.count() );
+        assertFalse( statistics.getCustomerStatistics( tim.getId() ).isPresent() );
+    }
+
+
+    @Test
+    public void topCustomersByValue() {
+        store.save( order( "O-1", eric, 1 ) );
+        store.save( order( "O-2", anne, 5 ) );
+        store.save( order( "O-3", tim, 3 ) );
+        store.save( order( "O-4", eric, 3 ) );	// eric moves up to second place
+        assertEquals( List.of( anne, eric ), customers( statistics.getTopCustomers( 2 ) ) );
+        assertEquals( List.of( anne, eric, tim ), customers( statistics.getTopCustomers( 10 ) ) );
+        assertEquals( List.of(), statistics.getTopCustomers( 0 ) );
+    }
+
+
+    @Test
+    public void resavedOrdersAreCountedOnce() {
+        Order o1 = order( "O-1", eric, 2 );
+        store.save( o1 );
+        store.save( o1 );
+        store.saveAll( List.of( o1, order( "O-2", eric, 1 ), o1 ) );
+        CustomerStatistics s = statistics.getCustomerStatistics( eric.getId() ).get();
+        assertEquals( 2, s.getOrderCount() );
+        assertEquals( 300, s.getTotalValue() );
+    }
+
+
+    @Test
+    public void resavedArchivedOrdersAreCountedOnce() throws Exception {
+        Order old = order( "O-1", eric, 2, System.currentTimeMillis() - 3 * DAY );
+        store.save( old );
+        assertEquals( 1, store.archive( new Date() ) );
+        store.save( old );
+        assertEquals( 1, statistics.getCustomerStatistics( eric.getId() ).get().getOrderCount() );
+    }
+
+
+    private Order order( String id, Customer customer, int units ) {
+        return order( id, customer, units, System.currentTimeMillis() );
+    }
+
+
+    private Order order( String id, Customer customer, int units, long creationDate ) {
+        return new Order( customer, creationDate ).setId( id ).addItem( pencil, units );
+    }
+
+
+    private static List<Customer> customers( List<CustomerStatistics> statistics ) {
+        return statistics.stream().map( CustomerStatistics::getCustomer ).collect( Collectors.toList() );
+    }
+}
@@ -0,0 +1,147 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import datamodel.Article;
+import datamodel.Customer;
+import datamodel.Order;
+
+/**
+ * Tests of the order store with day buckets and archive files.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class OrderStoreImplTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    File archiveDir;
+
+    private OrderStoreImpl store;
+    private Customer eric;
+    private Article pencil;
+    private long now;
+
+
+    @BeforeEach
+    public void setUp() {
+        RepositoryImpl<Customer> customers = new RepositoryImpl<Customer>();
+        RepositoryImpl<Article> articles = new RepositoryImpl<Article>();
+        eric = customers.save( new Customer( "Eric Meyer" ).setId( 1 ) );
+        pencil = articles.save( new Article( "Pencil", 100 ).setId( "SKU-1" ) );
+        store = new OrderStoreImpl( customers, articles, archiveDir.getPath(), 0 );
+        now = System.currentTimeMillis();
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        store.shutdown();
+    }
+
+
+    @Test
+    public void rangeQueryIsHalfOpen() {
+        Order o1 = store.save( order( "O-1", now - 2 * DAY ) );
+        Order o2 = store.save( order( "O-2", now - DAY ) );
+        Order o3 = store.save( order( "O-3", now ) );
+        assertEquals( List.of( o1, o2 ), list( store.findByCreationDate( new Date( now - 2 * DAY ), new Date( now ) ) ) );
+        assertEquals( List.of( o2, o3 ), list( store.findByCreationDate( new Date( now - DAY ), new Date( now + 1 ) ) ) );
+        assertEquals( List.of(), list( store.findByCreationDate( new Date( now ), new Date( now - DAY ) ) ) );
+        assertThrows( IllegalArgumentException.class, () -> store.findByCreationDate( null, new Date() ) );
+    }
+
+
+    @Test
+    public void resaveReplacesOrder() {
+        store.save( order( "O-1", now - DAY ) );
+        Order replaced = store.save( order( "O-1", now ) );	// same id, other day
+        assertEquals( 1, store.count() );
+        assertSame( replaced, store.findById( "O-1" ).get() );
+        assertEquals( List.of(), list( store.findByCreationDate( new Date( now - DAY ), new Date( now - 1 ) ) ) );
+    }
+
+
+    @Test
+    public void archivedOrdersAreFoundById() throws Exception {
+        Order old = store.save( order( "O-1", now - 3 * DAY ) );
+        store.save( order( "O-2", now - 3 * DAY ) );
+        Order hot = store.save( order( "O-3", now ) );
+        assertEquals( 2, store.archive( new Date( now - DAY ) ) );
+        assertEquals( 1, store.count() );
+        assertEquals( 2, store.countArchived() );
+        assertEquals( 1, archiveDir.list( ( dir, name ) -> name.endsWith( ".gz" ) ).length );
+        //
+        Order restored = store.findById( "O-1" ).get();
+        assertNotSame( old, restored );
+        assertEquals( old.getCreationDate(), restored.getCreationDate() );
+        assertEquals( eric, restored.getCustomer() );
+        assertEquals( pencil, restored.getItemsAsArray()[0].getArticle() );
+        assertEquals( 2, restored.getItemsAsArray()[0].getUnitsOrdered() );
+        assertFalse( store.findById( "O-4" ).isPresent() );
+        //
+        List<String> ids = List.of( "O-3", "O-4", "O-2", "O-1" );
+        List<String> found = new ArrayList<String>();
+        store.findAllById( ids ).forEach( order -> found.add( order.getId() ) );
+        assertEquals( List.of( "O-3", "O-2", "O-1" ), found );
+        assertSame( hot, store.findAllById( List.of( "O-3" ) ).iterator().next() );
+    }
+
+
+    @Test
+    public void rangeQueryReadsArchive() throws Exception {
+        store.save( order( "O-1", now - 3 * DAY ) );
+        store.save( order( "O-2", now ) );
+        store.archive( new Date( now - DAY ) );
+        store.save( order( "O-3", now - 3 * DAY ) );	// hot order of an archived day
+        List<String> found = new ArrayList<String>();
+        store.findByCreationDate( new Date( 0 ), new Date( now + 1 ) ).forEach( order -> found.add( order.getId() ) );
+        assertEquals( List.of( "O-1", "O-3", "O-2" ), found );
+    }
+
+
+    @Test
+    public void archiveRunsMergeDays() throws Exception {
+        store.save( order( "O-1", now - 3 * DAY ) );
+        assertEquals( 1, store.archive( new Date( now - DAY ) ) );
+        store.save( order( "O-2", now - 3 * DAY ) );
+        store.save( order( "O-1", now - 3 * DAY ) );	// replaces archived copy
+        assertEquals( 2, store.archive( new Date( now - DAY ) ) );
+        assertEquals( 0, store.count() );
+        assertEquals( 2, store.countArchived() );
+        assertTrue( store.findById( "O-2" ).isPresent() );
+        assertEquals( 0, store.archive( new Date( now - DAY ) ) );
+    }
+
+
+    private Order order( String id, long creationDate ) {
+        return new Order( eric, creationDate ).setId( id ).addItem( pencil, 2 );
+    }
+
+
+    private static List<Order> list( Iterable<Order> orders ) {
+        List<Order> list = new ArrayList<Order>();
+        orders.forEach( list::add );
+        return list;
+    }
+}
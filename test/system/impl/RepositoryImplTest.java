@@ -0,0 +1,84 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import datamodel.Article;
+
+/**
+ * Tests of the bulk operations saveAll() and findAllById() of repositories.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class RepositoryImplTest {
+
+    @Test
+    public void saveAllSkipsEntitiesWithoutId() {
+        RepositoryImpl<Article> repository = new RepositoryImpl<Article>( 3 );
+        Article a1 = new Article( "Pencil", 100 ).setId( "SKU-1" );
+        Article a2 = new Article( "Pen", 200 ).setId( "SKU-2" );
+        List<Article> saved = list( repository.saveAll( List.of( a1, new Article( "No id", 1 ), a2 ) ) );
+        assertEquals( List.of( a1, a2 ), saved );
+        assertEquals( 2, repository.count() );
+    }
+
+
+    @Test
+    public void findAllByIdKeepsOrderAndSkipsMissing() {
+        RepositoryImpl<Article> repository = new RepositoryImpl<Article>();
+        List<Article> articles = articles( 10 );
+        repository.saveAll( articles );
+        List<Article> found = list( repository.findAllById( List.of( "SKU-7", "SKU-99", "SKU-2", "SKU-7" ) ) );
+        assertEquals( List.of( articles.get( 7 ), articles.get( 2 ), articles.get( 7 ) ), found );
+    }
+
+
+    @Test
+    public void findAllViewSeesLaterSaves() {
+        RepositoryImpl<Article> repository = new RepositoryImpl<Article>( 1 );
+        Iterable<Article> all = repository.findAll();
+        repository.saveAll( articles( 100 ) );	// grows beyond the expected size
+        assertEquals( 100, list( all ).size() );
+    }
+
+
+    @Test
+    public void cachedSaveAllIteratesInputOnce() {
+        RepositoryImpl<Article> backend = new RepositoryImpl<Article>();
+        CachingRepositoryImpl<Article> cache = new CachingRepositoryImpl<Article>( backend, 10 );
+        List<Article> articles = articles( 5 );
+        Iterator<Article> once = articles.iterator();
+        Iterable<Article> oneShot = () -> once;	// a second iteration would be empty
+        assertEquals( articles, list( cache.saveAll( oneShot ) ) );
+        assertEquals( 5, backend.count() );
+        assertSame( articles.get( 3 ), cache.findById( "SKU-3" ).get() );
+        assertEquals( List.of( articles.get( 4 ), articles.get( 0 ) ),
+            list( cache.findAllById( List.of( "SKU-4", "SKU-0" ) ) ) );
+    }
+
+
+    private static List<Article> articles( int n ) {
+        List<Article> articles = new ArrayList<Article>( n );
+        for( int i = 0; i < n; i++ ) {
+            articles.add( new Article( "Article " + i, 100 + i ).setId( "SKU-" + i ) );
+        }
+        return articles;
+    }
+
+
+    private static <T> List<T> list( Iterable<T> iterable ) {
+        List<T> list = new ArrayList<T>();
+        iterable.forEach( list::add );
+        return list;
+    }
+}
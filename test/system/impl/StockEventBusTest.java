@@ -0,0 +1,189 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import system.InventoryManager.StockChange;
+import system.InventoryManager.StockListener;
+
+/**
+ * Tests of the ring buffer publishing stock changes to asynchronous listeners.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class StockEventBusTest {
+
+    private StockEventBus bus;
+    private Recorder recorder;
+
+
+    @BeforeEach
+    public void setUp() {
+        bus = new StockEventBus( 8, ordinal -> "SKU-" + ordinal, w -> "W" + w );	// small ring: producers wait
+        recorder = new Recorder();
+    }
+
+
+    @AfterEach
+    public void tearDown() {
+        bus.shutdown();
+    }
+
+
+    @Test
+    public void changesAreDeliveredInOrderPerProducer() throws Exception {
+        bus.addListener( recorder );
+        int producers = 4, changes = 5000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int p = 0; p < producers; p++ ) {
+            int ordinal = p;
+            threads.add( new Thread( () -> {
+                for( int k = 0; k < changes; k++ ) {
+                    bus.changed( 0, ordinal, k, k + 1 );
+                }
+            }));
+        }
+        threads.forEach( Thread::start );
+        for( Thread t : threads ) {
+            t.join();
+        }
+        List<StockChange> received = recorder.await( producers * changes );
+        int[] next = new int[producers];
+        for( StockChange c : received ) {
+            int ordinal = Integer.parseInt( c.getArticleId().substring( 4 ) );
+            assertEquals( next[ordinal], c.getPreviousUnits() );
+            assertEquals( ++next[ordinal], c.getUnitsInStock() );
+            assertEquals( "W0", c.getWarehouse() );
+        }
+    }
+
+
+    @Test
+    public void lowStockIsReportedWhenThresholdIsCrossed() throws Exception {
+        bus.setThreshold( 1, 5 );
+        bus.addListener( recorder );
+        bus.changed( 0, 1, 10, 6 );
+        bus.changed( 0, 1, 6, 5 );		// crosses
+        bus.changed( 0, 1, 5, 2 );		// already below
+        bus.changed( 0, 1, 2, 8 );
+        bus.changed( 1, 1, 8, 0 );		// crosses again
+        bus.changed( 0, 2, 8, 0 );		// no threshold
+        bus.changed( 0, 1, 3, 3 );		// no change, not published
+        recorder.await( 6 );
+        assertEquals( List.of( "SKU-1@W0: 6 -> 5", "SKU-1@W1: 8 -> 0" ), recorder.awaitLowStock( 2 ) );
+    }
+
+
+    @Test
+    public void failingListenerDoesNotStopDelivery() throws Exception {
+        bus.addListener( changes -> { throw new IllegalStateException( "listener fails" ); } );
+        bus.addListener( recorder );
+        for( int k = 0; k < 100; k++ ) {
+            bus.changed( 0, 1, k, k + 1 );
+        }
+        assertEquals( 100, recorder.await( 100 ).size() );
+    }
+
+
+    @Test
+    public void listenersMayChangeStock() throws Exception {
+        bus.setThreshold( 1, 5 );
+        bus.addListener( new StockListener() {
+            @Override
+            public void onStockChanged( List<StockChange> changes ) { }
+
+            @Override
+            public void onLowStock( StockChange change, int threshold ) {
+                for( int k = 0; k < 50; k++ ) {		// more changes than the ring holds
+                    bus.changed( 0, 2, k, k + 1 );
+                }
+            }
+        });
+        bus.addListener( recorder );
+        bus.changed( 0, 1, 10, 5 );
+        List<StockChange> received = recorder.await( 51 );
+        assertEquals( "SKU-1@W0: 10 -> 5", received.get( 0 ).toString() );
+        for( int k = 0; k < 50; k++ ) {
+            assertEquals( "SKU-2@W0: " + k + " -> " + ( k + 1 ), received.get( k + 1 ).toString() );
+        }
+        bus.changed( 0, 1, 5, 6 );		// dispatcher still drains the ring
+        recorder.await( 52 );
+    }
+
+    @Test
+    public void shutdownReleasesBlockedProducers() throws Exception {
+        CountDownLatch blocked = new CountDownLatch( 1 );
+        bus.addListener( changes -> {
+            blocked.countDown();
+            try {
+                Thread.sleep( Long.MAX_VALUE );		// dispatcher stuck until shutdown
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread producer = new Thread( () -> {
+            for( int k = 0; k < 1000; k++ ) {	// fills the ring and waits
+                bus.changed( 0, 1, k, k + 1 );
+            }
+        });
+        producer.start();
+        assertTrue( blocked.await( 10, TimeUnit.SECONDS ) );
+        producer.join( 200 );
+        assertTrue( producer.isAlive() );
+        bus.shutdown();
+        producer.join( 10_000 );
+        assertFalse( producer.isAlive() );
+    }
+
+
+    /*
+     * Listener collecting changes and low-stock alerts.
+     */
+    private static class Recorder implements StockListener {
+        private final List<StockChange> changes = new ArrayList<StockChange>();
+        private final List<String> lowStock = new ArrayList<String>();
+
+        @Override
+        public synchronized void onStockChanged( List<StockChange> batch ) {
+            changes.addAll( batch );
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onLowStock( StockChange change, int threshold ) {
+            lowStock.add( change.toString() );
+            notifyAll();
+        }
+
+        synchronized List<StockChange> await( int n ) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while( changes.size() < n && System.currentTimeMillis() < deadline ) {
+                wait( 100 );
+            }
+            assertEquals( n, changes.size() );
+            return new ArrayList<StockChange>( changes );
+        }
+
+        synchronized List<String> awaitLowStock( int n ) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while( lowStock.size() < n && System.currentTimeMillis() < deadline ) {
+                wait( 100 );
+            }
+            return new ArrayList<String>( lowStock );
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the striped table of stock counters.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class StockTableTest {
+
+    private StockTable table;
+
+
+    @BeforeEach
+    public void setUp() {
+        table = new StockTable( 1 );
+        table.ensureCapacity( 200 );
+    }
+
+
+    @Test
+    public void countersSurviveGrowth() {
+        for( int ordinal = 0; ordinal < 200; ordinal++ ) {
+            table.set( ordinal, ordinal * 3 );
+        }
+        table.ensureCapacity( 10000 );
+        for( int ordinal = 0; ordinal < 200; ordinal++ ) {
+            assertEquals( ordinal * 3, table.get( ordinal ) );
+        }
+        assertEquals( 0, table.get( 9999 ) );
+        assertEquals( 597, table.set( 199, 5 ) );	// returns units before
+    }
+
+
+    @Test
+    public void applyIsAllOrNone() {
+        table.set( 1, 10 );
+        table.set( 65, 10 );	// same stripe as 1
+        assertArrayEquals( new int[] { 10, 10, 0 }, table.apply( new int[] { 1, 65, 2 }, new int[] { -3, 5, 7 }, true ) );
+        assertEquals( 7, table.get( 1 ) );
+        assertEquals( 15, table.get( 65 ) );
+        assertEquals( 7, table.get( 2 ) );
+        //
+        assertNull( table.apply( new int[] { 1, 2 }, new int[] { 1, -8 }, true ) );		// negative
+        assertNull( table.apply( new int[] { 1, 2 }, new int[] { 1, Integer.MAX_VALUE }, true ) );	// overflow
+        assertEquals( 7, table.get( 1 ) );
+        assertEquals( 7, table.get( 2 ) );
+        //
+        table.apply( new int[] { 1, 2 }, new int[] { 0, 100 }, false );
+        assertEquals( 0, table.get( 1 ) );
+        assertEquals( 100, table.get( 2 ) );
+    }
+
+
+    @Test
+    public void demandsMergeByOrdinal() {
+        StockTable.Demand d = new StockTable.Demand().clear();
+        d.add( 65, 2 );
+        d.add( 1, 3 );
+        d.add( 65, 4 );
+        d.merge();
+        assertEquals( 2, d.size );
+        assertArrayEquals( new int[] { 1, 65 }, Arrays.copyOf( d.ordinals, d.size ) );
+        assertArrayEquals( new int[] { 3, 6 }, Arrays.copyOf( d.units, d.size ) );
+        assertEquals( 1L << 1, d.stripeMask() );
+        //
+        table.set( 1, 3 );
+        table.set( 65, 5 );
+        assertFalse( table.take( d ) );
+        table.set( 65, 6 );
+        assertTrue( table.take( d ) );
+        assertEquals( 0, table.get( 1 ) );
+        assertEquals( 0, table.get( 65 ) );
+    }
+
+
+    @Test
+    public void availabilityExcludesReservedUnits() {
+        table.set( 1, 10 );
+        StockTable.Demand d = demand( 1, 6 );
+        assertTrue( table.reserve( d ) );
+        assertEquals( 10, table.get( 1 ) );
+        assertEquals( 4, table.available( 1 ) );
+        assertFalse( table.isAvailable( demand( 1, 5 ) ) );
+        assertTrue( table.isAvailable( demand( 1, 4 ) ) );
+        table.release( d );
+        assertTrue( table.isAvailable( demand( 1, 10 ) ) );
+    }
+
+
+    @Test
+    public void optimisticReadsSeeConsistentState() throws Exception {
+        table.set( 1, 10 );		// units move between 1 and 2 (other stripe) in atomic steps
+        AtomicBoolean stop = new AtomicBoolean( false );
+        Thread writer = new Thread( () -> {
+            int[] ordinals = { 1, 2 };
+            for( int k = 0; ! stop.get(); k++ ) {
+                table.apply( ordinals, k % 2 == 0? new int[] { 0, 10 } : new int[] { 10, 0 }, false );
+            }
+        });
+        writer.start();
+        try {
+            StockTable.Demand both = new StockTable.Demand().clear();
+            both.add( 1, 1 );
+            both.add( 2, 1 );
+            both.merge();
+            for( int i = 0; i < 200000; i++ ) {
+                assertFalse( table.isAvailable( both ) );	// never both in stock
+            }
+        } finally {
+            stop.set( true );
+            writer.join();
+        }
+    }
+
+
+    private static StockTable.Demand demand( int ordinal, int units ) {
+        StockTable.Demand d = new StockTable.Demand().clear();
+        d.add( ordinal, units );
+        return d.merge();
+    }
+}
@@ -0,0 +1,73 @@
+package system.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the hashed timer wheel.
+ *
+ * @author fkate
+ * @since 0.1.2
+ * @version 0.1.2
+ *
+ */
+
+public class TimerWheelTest {
+
+    private TimerWheel<String> wheel;
+    private List<String> expired;
+
+
+    @BeforeEach
+    public void setUp() {
+        wheel = new TimerWheel<String>( 10, 8, 1000 );	// one rotation: 80ms
+        expired = new ArrayList<String>();
+    }
+
+
+    @Test
+    public void itemsExpireAtTheirDeadline() {
+        wheel.schedule( "b", 1050 );
+        wheel.schedule( "a", 1020 );
+        assertEquals( 0, wheel.advance( 1019, expired::add ) );
+        assertEquals( 1, wheel.advance( 1020, expired::add ) );
+        assertEquals( List.of( "a" ), expired );
+        assertEquals( 1, wheel.advance( 1100, expired::add ) );
+        assertEquals( List.of( "a", "b" ), expired );
+        assertEquals( 0, wheel.advance( 1200, expired::add ) );
+    }
+
+
+    @Test
+    public void itemsBeyondOneRotationWait() {
+        wheel.schedule( "late", 1250 );	// same slot as 1010, three rotations later
+        wheel.schedule( "early", 1010 );
+        assertEquals( 1, wheel.advance( 1249, expired::add ) );
+        assertEquals( List.of( "early" ), expired );
+        assertEquals( 1, wheel.advance( 1250, expired::add ) );
+        assertEquals( List.of( "early", "late" ), expired );
+    }
+
+
+    @Test
+    public void pastDeadlinesExpireWithNextTick() {
+        wheel.advance( 1100, expired::add );
+        wheel.schedule( "past", 900 );
+        assertEquals( 0, wheel.advance( 1109, expired::add ) );
+        assertEquals( 1, wheel.advance( 1110, expired::add ) );
+        assertEquals( List.of( "past" ), expired );
+    }
+
+
+    @Test
+    public void illegalArguments() {
+        assertThrows( IllegalArgumentException.class, () -> new TimerWheel<String>( 0, 8, 0 ) );
+        assertThrows( IllegalArgumentException.class, () -> new TimerWheel<String>( 10, 0, 0 ) );
+    }
+}